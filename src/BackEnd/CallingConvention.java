@@ -0,0 +1,60 @@
+package BackEnd;
+
+import Global.SymbolTable.Symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CallingConvention {
+    /**
+     * Registres per als arguments enters i caràcters, segons la seva posició
+     */
+    public static final List<String> INT_ARGUMENTS = List.of("$a0", "$a1", "$a2", "$a3");
+    /**
+     * Registres per als dos primers arguments reals
+     */
+    public static final List<String> FLOAT_ARGUMENTS = List.of("$f12", "$f14");
+
+    /**
+     * Registre de cada argument, o null si va a la pila
+     */
+    private final List<String> registers = new ArrayList<>();
+    /**
+     * Desplaçament de cada argument dins la zona d'arguments de la pila (-1 si va per registre)
+     */
+    private final List<Integer> stackOffsets = new ArrayList<>();
+    private final List<Boolean> floats = new ArrayList<>();
+    private int stackedCount;
+
+    /**
+     * Constructor de la classe CallingConvention. Un argument enter en les quatre primeres posicions va al
+     * $a de la seva posició i els dos primers arguments reals van a $f12 i $f14. La resta es guarden, per
+     * ordre, en una zona de la pila que la funció que crida reserva d'un cop: el primer queda a 0($sp) just
+     * abans del jal, que és 0($fp) per a la funció cridada.
+     *
+     * @param function Símbol de la funció cridada
+     */
+    public CallingConvention(Symbol function) {
+        List<Symbol> parameters = function != null && function.getParameters() != null ? function.getParameters() : List.of();
+        int floatCount = 0;
+        for (int i = 0; i < parameters.size(); i++) {
+            boolean isFloat = "flt".equals(parameters.get(i).getType());
+            String register = null;
+            if (isFloat && floatCount < FLOAT_ARGUMENTS.size()) register = FLOAT_ARGUMENTS.get(floatCount);
+            if (!isFloat && i < INT_ARGUMENTS.size()) register = INT_ARGUMENTS.get(i);
+            if (isFloat) floatCount++;
+
+            floats.add(isFloat);
+            registers.add(register);
+            stackOffsets.add(register == null ? 4 * stackedCount++ : -1);
+        }
+    }
+
+    /**
+     * Getters
+     */
+    public String getRegister(int index)    { return index < registers.size() ? registers.get(index) : null;  }
+    public int getStackOffset(int index)    { return index < stackOffsets.size() ? stackOffsets.get(index) : -1; }
+    public boolean isFloat(int index)       { return index < floats.size() && floats.get(index);                }
+    public int getStackedCount()            { return stackedCount;                                              }
+}
@@ -1,23 +1,90 @@
 package BackEnd;
 
+import BackEnd.Peephole.MIPSInstruction;
+import BackEnd.Peephole.PeepholeOptimizer;
+import BackEnd.Peephole.PeepholeRule;
+import BackEnd.RegisterAllocation.FloatRegisterAllocator;
+import BackEnd.RegisterAllocation.GraphColoringAllocator;
+import BackEnd.RegisterAllocation.LinearScanAllocator;
+import BackEnd.RegisterAllocation.RegisterAllocator;
+import BackEnd.RegisterAllocation.StackSlotAllocator;
+import BackEnd.Scheduling.DelaySlotFiller;
+import BackEnd.Selection.ExprTree;
+import BackEnd.Selection.InstructionSelector;
+import BackEnd.Selection.TreeBuilder;
+import BackEnd.Scheduling.ListScheduler;
 import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.CallGraph;
+import MiddleEnd.CFG.ControlFlowGraph;
+import MiddleEnd.Optimizer.ConstantFolder;
+import MiddleEnd.Optimizer.PurityAnalysis;
+import MiddleEnd.Optimizer.TypeInference;
 import Global.SymbolTable.Symbol;
 import Global.SymbolTable.SymbolTable;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.*;
 
 public class MIPSCodeGenerator {
+    /**
+     * Bits de la clau de les taules de memoització, repartits entre els arguments
+     */
+    private static final int MEMO_KEY_BITS = 10;
+
     private String currentFunction = null;
     private Symbol currentFunctionSym = null;
     private PrintWriter out;
     private Map<String,Integer> localOffset;
     private Map<String,String> varType;
     private Map<String,String> floatConstants;
+    private Map<String,String> registerOf;
+    private Map<String,String> fpuRegisterOf;
+    private List<String> savedRegisters;
     private int frameSize;
+    /**
+     * Mida que tindria el frame amb un slot de paraula per valor, i valors que viuen en un slot d'un byte
+     */
+    private int unsharedFrameSize;
+    private Set<String> byteSlots = Set.of();
+    /**
+     * Forma del frame de la funció actual: si desa $ra (no és una fulla), si adreça els slots des de $sp
+     * (i aleshores $fp és un registre assignable més) i quants bytes ocupen $ra i $fp al capdamunt
+     */
+    private boolean saveReturnAddress;
+    private boolean omitFramePointer;
+    private int frameHeader;
+    /**
+     * Valors amb registre propi durant el pròleg endarrerit: els paràmetres encara són als registres $a
+     */
+    private boolean beforePrologue;
+    /**
+     * Comparacions que, amb algun operand real, es fan a la FPU
+     */
+    private static final Set<String> FLOAT_COMPARISONS = Set.of("LOWER", "GREATER", "LOWER_EQUAL",
+            "GREATER_EQUAL", "EQUALS", "NOT_EQUAL");
+    /**
+     * Instruccions TAC que es poden executar sense frame: no criden ni fan servir els registres $a
+     */
+    private static final Set<String> FRAME_FREE_OPS = Set.of("label", "goto", "ifFalse", "return", "=",
+            "SUM", "SUB", "MULT", "DIV", "MOD", "ADDU", "BAND", "SHL", "SHR", "SHRU", "MULHI",
+            "<", ">", "<=", ">=", "==", "!=", "&&", "||", "NOT");
     private int paramCount;
+    /**
+     * On arriben els paràmetres de la funció actual i on van els arguments de la crida que es prepara
+     */
+    private CallingConvention parameters;
+    private CallingConvention arguments;
     private boolean commentTAC = false;
+    private boolean memoize = false;
+    private Set<String> memoized = Set.of();
+    private int memoKeyOffset;
+    private int optimizationLevel = 1;
+    private Set<PeepholeRule> peepholeRules = EnumSet.allOf(PeepholeRule.class);
+    private boolean noReorder = false;
+    private int floatCompareCount = 0;
+    private InstructionSelector selector;
 
     private final List<TACInstruction> TACCode;
     private final SymbolTable symbolTable;
@@ -31,8 +98,40 @@ public class MIPSCodeGenerator {
         this.commentTAC = commentTAC;
     }
 
+    /**
+     * Memoització de les funcions pures recursives d'un o dos arguments: cada funció té una taula a .data
+     * amb els resultats ja calculats per als arguments petits, que es consulta abans de crear el frame
+     */
+    public void setMemoize(boolean memoize) {
+        this.memoize = memoize;
+    }
+
+    /**
+     * Nivell d'optimització del backend: 0 guarda tots els valors a la pila, 1 fa servir l'assignador
+     * de registres lineal (compilació ràpida) i 2 l'assignador per coloració de grafs (builds de release)
+     */
+    public void setOptimizationLevel(int optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Regles de l'optimitzador de mirilla que s'apliquen al codi de cada funció (a partir del nivell 1)
+     */
+    public void setPeepholeRules(Set<PeepholeRule> peepholeRules) {
+        this.peepholeRules = peepholeRules;
+    }
+
+    /**
+     * Codi per a un assemblador en mode .set noreorder: cada salt va seguit de la instrucció del seu forat
+     * de retard, que s'omple amb una instrucció útil del mateix bloc quan n'hi ha
+     */
+    public void setNoReorder(boolean noReorder) {
+        this.noReorder = noReorder;
+    }
+
     public void generate() {
         Map<String,List<TACInstruction>> funcs = groupByFunction(TACCode);
+        memoized = memoize ? findMemoizable(funcs) : Set.of();
 
         floatConstants = new LinkedHashMap<>();
         int floatConstCount = 0;
@@ -62,30 +161,11 @@ public class MIPSCodeGenerator {
     }
 
     private Map<String,List<TACInstruction>> groupByFunction(List<TACInstruction> code) {
-        Map<String,List<TACInstruction>> map = new LinkedHashMap<>();
-        String currentFuncLabel = null;
-
-        for (TACInstruction ins : code) {
-
-            if ("label".equals(ins.getOp())) {
-                String lbl = ins.getResult();
-                if (lbl == null) continue;
-
-                if (!lbl.matches("^L\\d+$")) {
-                    currentFuncLabel = lbl;
-                    map.put(currentFuncLabel, new ArrayList<>());
-                }
-            }
-
-            if (currentFuncLabel != null) {
-                if (map.containsKey(currentFuncLabel)) {
-                    map.get(currentFuncLabel).add(ins);
-                } else {
-                    System.err.println("MIPSCodeGenerator: Instruction or label '" + ins + "' encountered before a function-defining label.");
-                }
-            }
+        Set<String> functionNames = new HashSet<>();
+        for (Symbol s : symbolTable.getGlobalScope().getSymbols().values()) {
+            if (s.isFunction()) functionNames.add(s.getName());
         }
-        return map;
+        return ControlFlowGraph.splitByFunction(code, functionNames);
     }
 
     private void emitData() {
@@ -94,13 +174,36 @@ public class MIPSCodeGenerator {
             out.printf("%s: .float %s\n", e.getValue(), e.getKey());
         }
         if (!floatConstants.isEmpty()) out.println();
+
+        // Parells {calculat, valor} per a cada clau
+        for (String fnName : memoized) {
+            out.printf("%s_memo: .word 0:%d\n", fnName, 2 << MEMO_KEY_BITS);
+        }
+        if (!memoized.isEmpty()) out.println();
+    }
+
+    /**
+     * Funcions que val la pena memoitzar: pures, recursives i amb un o dos arguments
+     */
+    private Set<String> findMemoizable(Map<String,List<TACInstruction>> funcs) {
+        PurityAnalysis purity = new PurityAnalysis(funcs, symbolTable);
+        CallGraph callGraph = new CallGraph(funcs);
+        Set<String> result = new LinkedHashSet<>();
+        for (String fnName : funcs.keySet()) {
+            Symbol symbol = symbolTable.getGlobalScope().lookupSymbol(fnName);
+            int arity = symbol != null && symbol.getParameters() != null ? symbol.getParameters().size() : 0;
+            if (purity.isPure(fnName) && callGraph.isRecursive(fnName) && arity >= 1 && arity <= 2) result.add(fnName);
+        }
+        return result;
     }
 
     private void emitText(Map<String,List<TACInstruction>> funcs) {
         out.println("\t.text");
+        if (noReorder) out.println("\t.set noreorder");
         out.println("\t.globl __start");
         out.println("__start:");
         out.println("\tjal main");
+        if (noReorder) out.println("\tnop");
         out.println();
 
         if (funcs.containsKey("main")) {
@@ -115,9 +218,32 @@ public class MIPSCodeGenerator {
         }
     }
 
+    /**
+     * Genera el codi d'una funció en un buffer, el passa per l'optimitzador de mirilla i l'escriu
+     */
     private void emitFunction(String fnName, List<TACInstruction> body) {
+        PrintWriter target = out;
+        StringWriter buffer = new StringWriter();
+        out = new PrintWriter(buffer);
+        generateFunction(fnName, body);
+        out.flush();
+        out = target;
+
+        List<MIPSInstruction> code = new ArrayList<>();
+        for (String line : buffer.toString().split("\n", -1)) code.add(MIPSInstruction.parse(line));
+        if (code.get(code.size() - 1).toString().isEmpty()) code.remove(code.size() - 1);
+        if (optimizationLevel > 0) {
+            new PeepholeOptimizer(peepholeRules).optimize(code);
+            new ListScheduler().schedule(code);
+        }
+        if (optimizationLevel > 0 || noReorder) new DelaySlotFiller(noReorder).fill(code);
+        for (MIPSInstruction ins : code) out.println(ins);
+    }
+
+    private void generateFunction(String fnName, List<TACInstruction> body) {
         this.currentFunction = fnName;
         this.currentFunctionSym = symbolTable.getGlobalScope().lookupSymbol(fnName);
+        this.parameters = new CallingConvention(currentFunctionSym);
 
         if (this.currentFunctionSym == null || !this.currentFunctionSym.isFunction()) {
             System.err.println("MIPS Gen Error: Function symbol not found for " + fnName);
@@ -126,31 +252,381 @@ public class MIPSCodeGenerator {
             setupFrame(body, this.currentFunctionSym);
         }
 
-        out.println(fnName + ":");
-        out.printf("\taddi $sp, $sp, -%d\n", frameSize);
-        out.printf("\tsw   $ra, %d($sp)\n", frameSize - 4);
-        out.printf("\tsw   $fp, %d($sp)\n", frameSize - 8);
-        out.printf("\taddi $fp, $sp, %d\n", frameSize);
-        out.println();
+        out.printf("%s:\t# frame: %d -> %d bytes\n", fnName, unsharedFrameSize, frameSize);
+        if (memoized.contains(fnName)) emitMemoLookup(fnName);
 
         paramCount = 0;
-        for (TACInstruction ins : body) {
-            if ("label".equals(ins.getOp()) && ins.getResult().equals(fnName)) continue;
+        Map<String,Integer> useCount = countUses(body);
+        selector = new InstructionSelector(out, new InstructionSelector.Operands() {
+            @Override
+            public String registerOf(String name) { return registerOf.get(name); }
+            @Override
+            public void load(String operand, String register) { loadOperandToGPR(operand, register); }
+            @Override
+            public void store(String name, String register) { storeGPRResult(name, register); }
+        });
+        int start = "label".equals(body.get(0).getOp()) && body.get(0).getResult().equals(fnName) ? 1 : 0;
+
+        // Shrink-wrapping: el tros inicial que no necessita el frame (els casos base que retornen de
+        // seguida) s'executa abans del pròleg; els salts que en surten passen per una còpia del pròleg
+        Map<String,String> deferred = new LinkedHashMap<>();
+        int prologueAt = frameFreePrefix(body, start, deferred);
+        Map<String,String> wrappers = new LinkedHashMap<>();
+        if (prologueAt > start) {
+            Map<String,String> saved = new HashMap<>();
+            for (Map.Entry<String,String> copy : deferred.entrySet()) {
+                saved.put(copy.getKey(), registerOf.put(copy.getKey(), copy.getValue()));
+            }
+            Set<String> prefixLabels = new HashSet<>();
+            for (int i = start; i < prologueAt; i++) {
+                if ("label".equals(body.get(i).getOp())) prefixLabels.add(body.get(i).getResult());
+            }
+            List<TACInstruction> prefix = new ArrayList<>();
+            for (int i = start; i < prologueAt; i++) {
+                TACInstruction ins = body.get(i);
+                boolean jump = "goto".equals(ins.getOp()) || "ifFalse".equals(ins.getOp());
+                if (jump && !prefixLabels.contains(ins.getResult())) {
+                    String wrapper = wrappers.computeIfAbsent(ins.getResult(), l -> fnName + "_wrap_" + l);
+                    ins = new TACInstruction(ins.getOp(), ins.getArg1(), ins.getArg2(), wrapper);
+                }
+                prefix.add(ins);
+            }
+
+            beforePrologue = true;
+            emitBody(prefix, 0, prefix.size(), useCount);
+            beforePrologue = false;
+            registerOf.putAll(saved);
+        }
+
+        emitPrologue(body, start, prologueAt, deferred.keySet());
+        out.println();
+        emitBody(body, prologueAt, body.size(), useCount);
+
+        // Si el cos només en surt amb crides en posició de cua, l'epíleg no s'executa mai
+        if (reachesExit(body, prologueAt)) {
+            out.println(fnName + "_exit:");
+            if (memoized.contains(fnName)) emitMemoStore(fnName);
+            emitFrameTeardown();
+
+            if ("main".equals(fnName)) {
+                out.println("\tli   $v0, 10");
+                out.println("\tsyscall");
+            } else {
+                out.println("\tjr   $ra");
+                out.println("\tnop");
+            }
+        }
+
+        for (Map.Entry<String,String> wrapper : wrappers.entrySet()) {
+            out.println(wrapper.getValue() + ":");
+            emitPrologue(body, start, prologueAt, deferred.keySet());
+            out.println("\tj    " + wrapper.getKey());
+        }
+    }
+
+    private void emitBody(List<TACInstruction> body, int from, int to, Map<String,Integer> useCount) {
+        List<TACInstruction> code = body.subList(from, to);
+        TreeBuilder trees = null;
+        if (optimizationLevel > 0) {
+            trees = new TreeBuilder(useCount, this::isSelectable, registerOf::containsKey, this::homeOf);
+            code = trees.build(code);
+        }
+        for (int i = 0; i < code.size(); i++) {
+            TACInstruction ins = code.get(i);
+            if ("param".equals(ins.getOp()) && paramCount == 0) arguments = conventionOf(nextCallee(code, i));
+            if (i + 1 < code.size() && emitTailCall(ins, code.get(i + 1))) {
+                i++;
+                continue;
+            }
+            ExprTree tree = trees != null ? trees.getTree(ins) : null;
+            if (tree != null) {
+                emitTree(tree);
+                continue;
+            }
+            if (i + 1 < code.size() && emitFusedBranch(ins, code.get(i + 1), useCount)) {
+                i++;
+                continue;
+            }
             emitInstruction(ins);
         }
+    }
+
+    /**
+     * Lloc on viu un valor: el seu registre, el desplaçament del seu slot o null (literals i paràmetres)
+     */
+    private Object homeOf(String name) {
+        if (registerOf.containsKey(name)) return registerOf.get(name);
+        if (fpuRegisterOf.containsKey(name)) return fpuRegisterOf.get(name);
+        return localOffset.get(name);
+    }
+
+    /**
+     * Emet un arbre d'expressió amb el selector d'instruccions en lloc de les plantilles per instrucció
+     */
+    private void emitTree(ExprTree tree) {
+        if (commentTAC) {
+            out.println();
+            for (TACInstruction covered : tree.getInstructions()) out.printf("\t# TAC: %s\n", covered);
+        }
+        selector.select(tree);
+    }
+
+    /**
+     * Indica si el selector pot cobrir la instrucció: una operació entera que té regles o una còpia entera
+     */
+    private boolean isSelectable(TACInstruction ins) {
+        String op = TreeBuilder.canonical(ins.getOp());
+        if (!"=".equals(op) && !InstructionSelector.covers(op)) return false;
+        for (String operand : ins.getUses()) {
+            if (isFloatValue(operand)) return false;
+        }
+        return ins.getDefinedName() == null || !isFloatValue(ins.getDefinedName());
+    }
+
+    private boolean isFloatValue(String operand) {
+        return "flt".equals(getVarOrLiteralType(operand)) || isFloatParameter(operand);
+    }
+
+    private static String nextCallee(List<TACInstruction> body, int from) {
+        for (int i = from; i < body.size(); i++) {
+            if ("call".equals(body.get(i).getOp())) return body.get(i).getArg1();
+        }
+        return null;
+    }
+
+    private CallingConvention conventionOf(String function) {
+        return new CallingConvention(function != null ? symbolTable.getGlobalScope().lookupSymbol(function) : null);
+    }
+
+    /**
+     * Reserva el frame, desa $ra (si la funció fa crides), $fp (si s'hi adreça el frame) i els registres
+     * preservats que es fan servir, i fa les còpies dels paràmetres que el shrink-wrapping ha endarrerit
+     */
+    private void emitPrologue(List<TACInstruction> body, int start, int prologueAt, Set<String> deferred) {
+        if (frameSize > 0) {
+            out.printf("\taddi $sp, $sp, -%d\n", frameSize);
+            if (saveReturnAddress) out.printf("\tsw   $ra, %d($sp)\n", frameSize - 4);
+            if (!omitFramePointer) {
+                out.printf("\tsw   $fp, %d($sp)\n", frameSize - 8);
+                out.printf("\taddi $fp, $sp, %d\n", frameSize);
+            }
+            for (int i = 0; i < savedRegisters.size(); i++) {
+                String register = savedRegisters.get(i);
+                out.printf("\t%-4s %s, %s\n", isFloatRegister(register) ? "swc1" : "sw", register, frameAddress(savedOffset(i)));
+            }
+        }
+        if (memoized.contains(currentFunction)) out.printf("\tsw   $t8, %s\n", frameAddress(memoKeyOffset));
+        for (int i = start; i < prologueAt; i++) {
+            if (deferred.contains(body.get(i).getDefinedName())) emitInstruction(body.get(i));
+        }
+    }
+
+    /**
+     * Adreça d'un slot del frame, donat el seu desplaçament respecte del valor de $fp a la funció
+     */
+    private String frameAddress(int offset) {
+        return omitFramePointer ? (frameSize + offset) + "($sp)" : offset + "($fp)";
+    }
+
+    private static boolean isFloatRegister(String register) {
+        return register.startsWith("$f") && !"$fp".equals(register);
+    }
+
+    private int savedOffset(int index) {
+        return -frameHeader - 4 - 4 * index;
+    }
+
+    /**
+     * Busca fins on pot arribar el codi abans del pròleg. Les còpies x = paramN del principi s'endarrereixen
+     * (x es llegeix directament de $a(N-1)) i després s'accepten instruccions sense crides que només facin
+     * servir registres temporals, sense trepitjar els $a dels paràmetres ni els registres on aniran les
+     * còpies. El tros s'acaba abans de qualsevol etiqueta on salti el codi de després del pròleg. Només val
+     * la pena si el tros inclou algun return.
+     *
+     * @param deferred S'omple amb les còpies endarrerides: variable -> registre d'argument
+     * @return Índex de la primera instrucció després del pròleg
+     */
+    private int frameFreePrefix(List<TACInstruction> body, int start, Map<String,String> deferred) {
+        if (optimizationLevel <= 0 || frameSize == 0 || "main".equals(currentFunction)
+                || memoized.contains(currentFunction)) return start;
+
+        int end = start;
+        while (end < body.size() && "=".equals(body.get(end).getOp()) && body.get(end).getArg1().matches("param\\d+")
+                && registerOf.containsKey(body.get(end).getResult())) {
+            String argumentReg = parameters.getRegister(Integer.parseInt(body.get(end).getArg1().substring(5)) - 1);
+            if (argumentReg == null || !argumentReg.startsWith("$a")) break;
+            deferred.put(body.get(end).getResult(), argumentReg);
+            end++;
+        }
+
+        Set<String> reserved = new HashSet<>(deferred.values());
+        for (String name : deferred.keySet()) reserved.add(registerOf.get(name));
+        for (; end < body.size(); end++) {
+            TACInstruction ins = body.get(end);
+            if (!FRAME_FREE_OPS.contains(ins.getOp())) break;
+
+            boolean frameFree = true;
+            for (String operand : ins.getUses()) {
+                if (ConstantFolder.isConstant(operand) || deferred.containsKey(operand)) continue;
+                if (!isScratchRegister(registerOf.get(operand))) frameFree = false;
+            }
+            String def = ins.getDefinedName();
+            if (def != null && (deferred.containsKey(def) || !isScratchRegister(registerOf.get(def))
+                    || reserved.contains(registerOf.get(def)))) {
+                frameFree = false;
+            }
+            if (!frameFree) break;
+        }
+
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            Map<String,Integer> labels = new HashMap<>();
+            for (int i = start; i < end; i++) {
+                if ("label".equals(body.get(i).getOp())) labels.put(body.get(i).getResult(), i);
+            }
+            for (int i = end; i < body.size() && !shrunk; i++) {
+                String op = body.get(i).getOp();
+                Integer target = labels.get(body.get(i).getResult());
+                if (("goto".equals(op) || "ifFalse".equals(op)) && target != null) {
+                    end = target;
+                    shrunk = true;
+                }
+            }
+        }
+
+        for (int i = start; i < end; i++) {
+            if ("return".equals(body.get(i).getOp())) return end;
+        }
+        deferred.clear();
+        return start;
+    }
+
+    /**
+     * Registres que no cal desar al pròleg
+     */
+    private static boolean isScratchRegister(String register) {
+        return register != null && !register.startsWith("$s") && !"$fp".equals(register);
+    }
+
+    /**
+     * Calcula la clau a $t8 a partir dels arguments ($t8 = -1 si algun no és a la taula) i, si el
+     * resultat ja s'havia calculat, el retorna sense crear el frame
+     */
+    private void emitMemoLookup(String fnName) {
+        int arity = currentFunctionSym.getParameters().size();
+        int bits = MEMO_KEY_BITS / arity;
+        out.println("\tli   $t8, -1");
+        for (int i = 0; i < arity; i++) {
+            // La comparació sense signe també descarta els arguments negatius
+            out.printf("\tsltiu $t9, $a%d, %d\n", i, 1 << bits);
+            out.printf("\tbeq  $t9, $zero, %s_memo_miss\n", fnName);
+        }
+        out.println(arity == 2 ? "\tsll  $t8, $a1, " + bits + "\n\taddu $t8, $t8, $a0" : "\tmove $t8, $a0");
+        out.println("\tsll  $t8, $t8, 3");
+        out.printf("\tlw   $t9, %s_memo($t8)\n", fnName);
+        out.printf("\tbeq  $t9, $zero, %s_memo_miss\n", fnName);
+        out.printf("\tlw   $v0, %s_memo+4($t8)\n", fnName);
+        out.println("\tjr   $ra");
+        out.println("\tnop");
+        out.println(fnName + "_memo_miss:");
+    }
+
+    /**
+     * Guarda el resultat a la taula, si els arguments hi tenien lloc
+     */
+    private void emitMemoStore(String fnName) {
+        out.printf("\tlw   $t8, %s\n", frameAddress(memoKeyOffset));
+        out.printf("\tbltz $t8, %s_memo_done\n", fnName);
+        out.println("\tli   $t9, 1");
+        out.printf("\tsw   $t9, %s_memo($t8)\n", fnName);
+        out.printf("\tsw   $v0, %s_memo+4($t8)\n", fnName);
+        out.println(fnName + "_memo_done:");
+    }
 
-        out.println(fnName + "_exit:");
+    /**
+     * Restaura $ra, $fp, els registres guardats i $sp tal com eren a l'entrada de la funció
+     */
+    private void emitFrameTeardown() {
+        if (frameSize == 0) return;
+        if (omitFramePointer) {
+            for (int i = 0; i < savedRegisters.size(); i++) {
+                String register = savedRegisters.get(i);
+                out.printf("\t%-4s %s, %s\n", isFloatRegister(register) ? "lwc1" : "lw", register, frameAddress(savedOffset(i)));
+            }
+            if (saveReturnAddress) out.printf("\tlw   $ra, %d($sp)\n", frameSize - 4);
+            out.printf("\taddi $sp, $sp, %d\n", frameSize);
+            return;
+        }
         out.println("\tmove $sp, $fp");
-        out.println("\tlw   $ra, -4($fp)");
+        if (saveReturnAddress) out.println("\tlw   $ra, -4($fp)");
+        for (int i = 0; i < savedRegisters.size(); i++) {
+            String register = savedRegisters.get(i);
+            out.printf("\t%-4s %s, %d($fp)\n", isFloatRegister(register) ? "lwc1" : "lw", register, savedOffset(i));
+        }
         out.println("\tlw   $fp, -8($fp)");
+    }
 
-        if ("main".equals(fnName)) {
-            out.println("\tli   $v0, 10");
-            out.println("\tsyscall");
-        } else {
-            out.println("\tjr   $ra");
-            out.println("\tnop");
+    /**
+     * Crida en posició de cua (call seguit del return del seu resultat): es desfà el frame i se salta a
+     * la funció cridada, que tornarà directament a qui ens ha cridat. Només si tots els arguments van
+     * per registres i el valor de retorn arriba pel mateix registre que hem de retornar.
+     *
+     * @return true si s'ha emès la crida
+     */
+    private boolean emitTailCall(TACInstruction call, TACInstruction ret) {
+        if (!isTailCall(call, ret)) return false;
+
+        if (commentTAC) out.printf("\n\t# TAC: %s (tail call)\n", call);
+        emitFrameTeardown();
+        out.println("\tj    " + call.getArg1());
+        out.println("\tnop");
+        paramCount = 0;
+        return true;
+    }
+
+    /**
+     * Indica si una crida seguida d'un return es pot emetre com un salt a la funció cridada
+     */
+    private boolean isTailCall(TACInstruction call, TACInstruction ret) {
+        if (optimizationLevel <= 0 || "main".equals(currentFunction) || memoized.contains(currentFunction)) return false;
+        if (!"call".equals(call.getOp()) || !"return".equals(ret.getOp())) return false;
+        if (conventionOf(call.getArg1()).getStackedCount() > 0) return false;
+        if (ret.getArg1() != null && !ret.getArg1().equals(call.getResult())) return false;
+
+        Symbol callee = symbolTable.getGlobalScope().lookupSymbol(call.getArg1());
+        if (callee == null || !callee.isFunction()) return false;
+        return ret.getArg1() == null
+                || (currentFunctionSym != null && callee.getReturnType().equals(currentFunctionSym.getReturnType()));
+    }
+
+    /**
+     * Indica si l'execució pot arribar a l'epíleg: algun return del cos que no acompanya una crida en
+     * posició de cua hi salta, i si el cos no acaba amb un salt hi cau
+     *
+     * @param from Primera instrucció després del pròleg
+     */
+    private boolean reachesExit(List<TACInstruction> body, int from) {
+        if (from >= body.size()) return true;
+        String last = body.get(body.size() - 1).getOp();
+        if (!"return".equals(last) && !"goto".equals(last)) return true;
+        for (int i = from; i < body.size(); i++) {
+            if (!"return".equals(body.get(i).getOp())) continue;
+            if (i == from || !isTailCall(body.get(i - 1), body.get(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indica si la funció fa alguna crida que torna a ella, és a dir, que no s'emet com un salt en
+     * posició de cua
+     */
+    private boolean makesCalls(List<TACInstruction> body) {
+        for (int i = 0; i < body.size(); i++) {
+            if (!"call".equals(body.get(i).getOp())) continue;
+            if (i + 1 == body.size() || !isTailCall(body.get(i), body.get(i + 1))) return true;
         }
+        return false;
     }
 
     private void emitInstruction(TACInstruction ins) {
@@ -180,33 +656,43 @@ public class MIPSCodeGenerator {
             this.currentFunctionSym = symbolTable.getGlobalScope().lookupSymbol(this.currentFunction);
         }
 
+        if (FLOAT_COMPARISONS.contains(op) && (isFloatValue(a1) || isFloatValue(a2))) {
+            emitFloatCompare(op, a1, a2, res);
+            return;
+        }
+
 
         switch (op) {
             case "label":
                 out.println(res + ":");
                 break;
 
-            case "param":
-                String paramType = getVarOrLiteralType(a1);
-                if ("flt".equals(paramType)) {
-                    loadOperandToFPU(a1, "$f12");
-                    out.println("\tmfc1 $t0, $f12  # Move float bits to GPR for param passing");
-                } else {
-                    loadOperandToGPR(a1, "$t0");
+            case "param": {
+                // Els arguments es carreguen directament al seu registre; els que no hi caben van a una
+                // zona de la pila que es reserva amb el primer param
+                int index = paramCount++;
+                if (index == 0 && arguments.getStackedCount() > 0) {
+                    out.printf("\taddi $sp, $sp, -%d\n", 4 * arguments.getStackedCount());
                 }
-                if (paramCount < 4) {
-                    out.printf("\tmove $a%d, $t0\n", paramCount);
+                String argumentReg = arguments.getRegister(index);
+                if (argumentReg != null && arguments.isFloat(index)) {
+                    loadOperandToFPU(a1, argumentReg);
+                } else if (argumentReg != null) {
+                    loadOperandToGPR(a1, argumentReg);
+                } else if (arguments.isFloat(index)) {
+                    loadOperandToFPU(a1, "$f16");
+                    out.printf("\tswc1 $f16, %d($sp)\n", arguments.getStackOffset(index));
                 } else {
-                    out.println("\taddi $sp, $sp, -4");
-                    out.println("\tsw   $t0, 0($sp)");
+                    out.printf("\tsw   %s, %d($sp)\n", gprOperand(a1, "$t8"), arguments.getStackOffset(index));
                 }
-                paramCount++;
                 break;
+            }
 
             case "call":
                 out.println("\tjal " + a1);
-                if (paramCount > 4) {
-                    out.printf("\taddi $sp, $sp, %d\n", (paramCount - 4) * 4);
+                int stacked = conventionOf(a1).getStackedCount();
+                if (stacked > 0) {
+                    out.printf("\taddi $sp, $sp, %d\n", 4 * stacked);
                 }
                 paramCount = 0;
 
@@ -220,8 +706,7 @@ public class MIPSCodeGenerator {
                     if ("flt".equals(funcActualReturnType)) {
                         storeFPUResult(res, "$f0");
                     } else {
-                        out.println("\tmove $t0, $v0");
-                        storeGPRResult(res, "$t0");
+                        storeGPRResult(res, "$v0");
                     }
                 }
                 break;
@@ -229,11 +714,16 @@ public class MIPSCodeGenerator {
             case "=":
                 String assignResType = getVarOrLiteralType(res);
                 if ("flt".equals(assignResType)) {
-                    loadOperandToFPU(a1, "$f16");
-                    storeFPUResult(res, "$f16");
+                    if (fpuRegisterOf.containsKey(res)) {
+                        loadOperandToFPU(a1, fpuRegisterOf.get(res));
+                    } else {
+                        loadOperandToFPU(a1, "$f16");
+                        storeFPUResult(res, "$f16");
+                    }
+                } else if (registerOf.containsKey(res)) {
+                    loadOperandToGPR(a1, registerOf.get(res));
                 } else {
-                    loadOperandToGPR(a1, "$t2");
-                    storeGPRResult(res, "$t2");
+                    storeGPRResult(res, gprOperand(a1, "$t8"));
                 }
                 break;
 
@@ -241,6 +731,7 @@ public class MIPSCodeGenerator {
             case "SUB":
             case "MULT":
             case "DIV":
+            case "MOD":
                 String typeResArith = getVarOrLiteralType(res);
                 String typeA1Arith = getVarOrLiteralType(a1);
                 String typeA2Arith = getVarOrLiteralType(a2);
@@ -248,8 +739,9 @@ public class MIPSCodeGenerator {
                 boolean isFloatOp = "flt".equals(typeResArith) || "flt".equals(typeA1Arith) || "flt".equals(typeA2Arith);
 
                 if (isFloatOp) {
-                    loadOperandToFPU(a1, "$f12");
-                    loadOperandToFPU(a2, "$f14");
+                    String f1 = fpuOperand(a1, "$f16");
+                    String f2 = fpuOperand(a2, "$f18");
+                    String dst = fpuTarget(res);
                     String fpuOp = "";
                     switch (op) {
                         case "SUM": fpuOp = "add.s"; break;
@@ -257,11 +749,12 @@ public class MIPSCodeGenerator {
                         case "MULT": fpuOp = "mul.s"; break;
                         case "DIV": fpuOp = "div.s"; break;
                     }
-                    out.printf("\t%s $f16, $f12, $f14\n", fpuOp);
-                    storeFPUResult(res, "$f16");
+                    out.printf("\t%s %s, %s, %s\n", fpuOp, dst, f1, f2);
+                    storeFPUResult(res, dst);
                 } else {
-                    loadOperandToGPR(a1, "$t0");
-                    loadOperandToGPR(a2, "$t1");
+                    String r1 = gprOperand(a1, "$t8");
+                    String r2 = gprOperand(a2, "$t9");
+                    String dst = gprTarget(res);
                     String gprOp = "";
                     switch (op) {
                         case "SUM": gprOp = "add"; break;
@@ -269,76 +762,89 @@ public class MIPSCodeGenerator {
                         case "MULT": gprOp = "mul"; break;
                         case "DIV": break;
                     }
-                    if ("DIV".equals(op)) {
-                        out.println("\tdiv  $t0, $t1");
-                        out.println("\tmflo $t2");
+                    if ("DIV".equals(op) || "MOD".equals(op)) {
+                        out.printf("\tdiv  %s, %s\n", r1, r2);
+                        out.printf("\t%s %s\n", "DIV".equals(op) ? "mflo" : "mfhi", dst);
                     } else {
-                        out.printf("\t%s  $t2, $t0, $t1\n", gprOp);
+                        out.printf("\t%s  %s, %s, %s\n", gprOp, dst, r1, r2);
                     }
-                    storeGPRResult(res, "$t2");
+                    storeGPRResult(res, dst);
                 }
                 break;
 
+            case "ADDU":
+            case "BAND": {
+                String r1 = gprOperand(a1, "$t8");
+                String r2 = gprOperand(a2, "$t9");
+                String dst = gprTarget(res);
+                out.printf("\t%-4s %s, %s, %s\n", "ADDU".equals(op) ? "addu" : "and", dst, r1, r2);
+                storeGPRResult(res, dst);
+                break;
+            }
+
+            case "SHL":
+            case "SHR":
+            case "SHRU": {
+                String mnemonic = "SHL".equals(op) ? "sll" : ("SHR".equals(op) ? "sra" : "srl");
+                String r1 = gprOperand(a1, "$t8");
+                String dst = gprTarget(res);
+                if (a2.matches("^\\d+$")) {
+                    out.printf("\t%-4s %s, %s, %s\n", mnemonic, dst, r1, a2);
+                } else {
+                    out.printf("\t%s %s, %s, %s\n", mnemonic + "v", dst, r1, gprOperand(a2, "$t9"));
+                }
+                storeGPRResult(res, dst);
+                break;
+            }
+
+            case "MULHI": {
+                String r1 = gprOperand(a1, "$t8");
+                String r2 = gprOperand(a2, "$t9");
+                String dst = gprTarget(res);
+                out.printf("\tmult %s, %s\n", r1, r2);
+                out.printf("\tmfhi %s\n", dst);
+                storeGPRResult(res, dst);
+                break;
+            }
+
             case "LOWER":
-                loadOperandToGPR(a1, "$t0");
-                loadOperandToGPR(a2, "$t1");
-                out.println("\tslt  $t2, $t0, $t1");
-                storeGPRResult(res, "$t2");
+                emitCompare("slt", a1, a2, res, false);
                 break;
 
             case "LOWER_EQUAL":
-                loadOperandToGPR(a1, "$t0");
-                loadOperandToGPR(a2, "$t1");
-                out.println("\tsle  $t2, $t0, $t1");
-                storeGPRResult(res, "$t2");
+                emitCompare("sle", a1, a2, res, false);
                 break;
 
-            case "NOT":
-                loadOperandToGPR(a1, "$t0");
-                out.println("\tseq  $t2, $t0, $zero");
-                storeGPRResult(res, "$t2");
+            case "NOT": {
+                String r1 = gprOperand(a1, "$t8");
+                String dst = gprTarget(res);
+                out.printf("\tseq  %s, %s, $zero\n", dst, r1);
+                storeGPRResult(res, dst);
                 break;
+            }
 
             case "AND":
-                loadOperandToGPR(a1, "$t0");
-                out.println("\tsne  $t0, $t0, $zero");
-                loadOperandToGPR(a2, "$t1");
-                out.println("\tsne  $t1, $t1, $zero");
-                out.println("\tand  $t2, $t0, $t1");
-                storeGPRResult(res, "$t2");
+                emitLogical("and", a1, a2, res);
                 break;
 
             case "GREATER":
-                loadOperandToGPR(a1, "$t0");
-                loadOperandToGPR(a2, "$t1");
-                out.println("\tslt  $t2, $t1, $t0");
-                storeGPRResult(res, "$t2");
+                emitCompare("slt", a1, a2, res, true);
                 break;
 
             case "GREATER_EQUAL":
-                loadOperandToGPR(a1, "$t0");
-                loadOperandToGPR(a2, "$t1");
-                out.println("\tsge  $t2, $t0, $t1");
-                storeGPRResult(res, "$t2");
+                emitCompare("sge", a1, a2, res, false);
                 break;
 
             case "EQUALS":
-                loadOperandToGPR(a1, "$t0");
-                loadOperandToGPR(a2, "$t1");
-                out.println("\tseq  $t2, $t0, $t1");
-                storeGPRResult(res, "$t2");
+                emitCompare("seq", a1, a2, res, false);
                 break;
 
             case "NOT_EQUAL":
-                loadOperandToGPR(a1, "$t0");
-                loadOperandToGPR(a2, "$t1");
-                out.println("\tsne  $t2, $t0, $t1");
-                storeGPRResult(res, "$t2");
+                emitCompare("sne", a1, a2, res, false);
                 break;
 
             case "ifFalse":
-                loadOperandToGPR(a1, "$t0");
-                out.println("\tbeq  $t0, $zero, " + res);
+                out.println("\tbeq  " + gprOperand(a1, "$t8") + ", $zero, " + res);
                 break;
 
             case "goto":
@@ -359,17 +865,13 @@ public class MIPSCodeGenerator {
                         loadOperandToGPR(returnValName, "$v0");
                     }
                 }
-                out.println("\tj   " + currentFunction + "_exit");
+                // Abans del pròleg no hi ha res a desfer
+                out.println(beforePrologue ? "\tjr   $ra" : "\tj   " + currentFunction + "_exit");
                 out.println("\tnop");
                 break;
 
             case "OR":
-                loadOperandToGPR(a1, "$t0");
-                out.println("\tsne  $t0, $t0, $zero");
-                loadOperandToGPR(a2, "$t1");
-                out.println("\tsne  $t1, $t1, $zero");
-                out.println("\tor   $t2, $t0, $t1");
-                storeGPRResult(res, "$t2");
+                emitLogical("or", a1, a2, res);
                 break;
 
             default:
@@ -378,6 +880,154 @@ public class MIPSCodeGenerator {
         }
     }
 
+    /**
+     * Compta quantes vegades es llegeix cada nom dins del cos de la funció
+     */
+    private Map<String,Integer> countUses(List<TACInstruction> body) {
+        Map<String,Integer> useCount = new HashMap<>();
+        for (TACInstruction ins : body) {
+            for (String u : ins.getUses()) useCount.merge(u, 1, Integer::sum);
+        }
+        return useCount;
+    }
+
+    /**
+     * Fusiona una comparació entera (o un NOT) amb l'ifFalse que la llegeix en un únic salt condicional
+     * amb la condició invertida, sense materialitzar el 0/1. Només es fa si el resultat de la comparació
+     * no es llegeix enlloc més.
+     *
+     * @return true si s'han emès totes dues instruccions com un sol salt
+     */
+    private boolean emitFusedBranch(TACInstruction condition, TACInstruction branch, Map<String,Integer> useCount) {
+        String flag = condition.getDefinedName();
+        if (flag == null || !"ifFalse".equals(branch.getOp()) || !flag.equals(branch.getArg1())) return false;
+        if (useCount.getOrDefault(flag, 0) != 1) return false;
+
+        String a1 = condition.getArg1();
+        String a2 = condition.getArg2();
+        String mnemonic;
+        switch (condition.getOp()) {
+            case "<":  case "LOWER":         mnemonic = "bge"; break;
+            case "<=": case "LOWER_EQUAL":   mnemonic = "bgt"; break;
+            case ">":  case "GREATER":       mnemonic = "ble"; break;
+            case ">=": case "GREATER_EQUAL": mnemonic = "blt"; break;
+            case "==": case "EQUALS":        mnemonic = "bne"; break;
+            case "!=": case "NOT_EQUAL":     mnemonic = "beq"; break;
+            case "NOT":                      mnemonic = "bne"; a2 = "0"; break;
+            default: return false;
+        }
+        boolean floatCompare = isFloatValue(a1) || isFloatValue(a2);
+        if (floatCompare && "NOT".equals(condition.getOp())) return false;
+
+        if (commentTAC) {
+            out.printf("\n\t# TAC: %s\n", condition);
+            out.printf("\t# TAC: %s\n", branch);
+        }
+        if (floatCompare) {
+            // ifFalse salta quan la condició no es compleix
+            boolean holdsWhenSet = emitFloatCondition(TreeBuilder.canonical(condition.getOp()), a1, a2);
+            out.printf("\t%s %s\n", holdsWhenSet ? "bc1f" : "bc1t", branch.getResult());
+            return true;
+        }
+        String r1 = gprOperand(a1, "$t8");
+        String r2 = gprOperand(a2, "$t9");
+        out.printf("\t%-4s %s, %s, %s\n", mnemonic, r1, r2, branch.getResult());
+        return true;
+    }
+
+    /**
+     * Comparació amb algun operand real: el 0/1 es treu del flag de condició de la FPU amb un salt curt
+     */
+    private void emitFloatCompare(String op, String a1, String a2, String res) {
+        boolean holdsWhenSet = emitFloatCondition(op, a1, a2);
+        String dst = gprTarget(res);
+        String done = currentFunction + "_fcmp" + (floatCompareCount++);
+        out.printf("\tli   %s, 1\n", dst);
+        out.printf("\t%s %s\n", holdsWhenSet ? "bc1t" : "bc1f", done);
+        out.printf("\tli   %s, 0\n", dst);
+        out.println(done + ":");
+        storeGPRResult(res, dst);
+    }
+
+    /**
+     * Emet el c.xx.s d'una comparació de reals. No hi ha c.ne.s: != fa servir c.eq.s amb el sentit invers.
+     *
+     * @param op Comparació, amb el nom canònic
+     * @return true si el flag queda a 1 quan la comparació es compleix, false si queda a 0
+     */
+    private boolean emitFloatCondition(String op, String a1, String a2) {
+        String f1 = fpuOperand(a1, "$f16");
+        String f2 = fpuOperand(a2, "$f18");
+        switch (op) {
+            case "LOWER":         out.printf("\tc.lt.s %s, %s\n", f1, f2); return true;
+            case "GREATER":       out.printf("\tc.lt.s %s, %s\n", f2, f1); return true;
+            case "LOWER_EQUAL":   out.printf("\tc.le.s %s, %s\n", f1, f2); return true;
+            case "GREATER_EQUAL": out.printf("\tc.le.s %s, %s\n", f2, f1); return true;
+            case "EQUALS":        out.printf("\tc.eq.s %s, %s\n", f1, f2); return true;
+            default:              out.printf("\tc.eq.s %s, %s\n", f1, f2); return false;
+        }
+    }
+
+    private void emitCompare(String mnemonic, String a1, String a2, String res, boolean swapped) {
+        String r1 = gprOperand(a1, "$t8");
+        String r2 = gprOperand(a2, "$t9");
+        String dst = gprTarget(res);
+        if (swapped) {
+            out.printf("\t%-4s %s, %s, %s\n", mnemonic, dst, r2, r1);
+        } else {
+            out.printf("\t%-4s %s, %s, %s\n", mnemonic, dst, r1, r2);
+        }
+        storeGPRResult(res, dst);
+    }
+
+    private void emitLogical(String mnemonic, String a1, String a2, String res) {
+        String r1 = gprOperand(a1, "$t8");
+        out.printf("\tsne  $t8, %s, $zero\n", r1);
+        String r2 = gprOperand(a2, "$t9");
+        out.printf("\tsne  $t9, %s, $zero\n", r2);
+        String dst = gprTarget(res);
+        out.printf("\t%-4s %s, $t8, $t9\n", mnemonic, dst);
+        storeGPRResult(res, dst);
+    }
+
+    /**
+     * Retorna el registre on es pot llegir un operand enter. Si el valor no té registre assignat,
+     * el carrega al registre de treball indicat.
+     */
+    private String gprOperand(String operand, String scratch) {
+        String register = registerOf.get(operand);
+        if (register != null) return register;
+        if ("0".equals(operand)) return "$zero";
+        loadOperandToGPR(operand, scratch);
+        return scratch;
+    }
+
+    /**
+     * Retorna el registre on s'ha de calcular un resultat enter ($t8 si el valor viu a la pila)
+     */
+    private String gprTarget(String varName) {
+        String register = registerOf.get(varName);
+        return register != null ? register : "$t8";
+    }
+
+    /**
+     * Registre de la FPU on es pot llegir un operand real. Si no en té, el carrega al registre de treball.
+     */
+    private String fpuOperand(String operand, String scratch) {
+        String register = fpuRegisterOf.get(operand);
+        if (register != null) return register;
+        loadOperandToFPU(operand, scratch);
+        return scratch;
+    }
+
+    /**
+     * Registre de la FPU on s'ha de calcular un resultat real ($f16 si el valor viu a la pila)
+     */
+    private String fpuTarget(String varName) {
+        String register = fpuRegisterOf.get(varName);
+        return register != null ? register : "$f16";
+    }
+
     private String getVarOrLiteralType(String operand) {
         if (operand == null) return "int";
 
@@ -387,7 +1037,7 @@ public class MIPSCodeGenerator {
         if (operand.matches("^-?\\d+$")) return "int";
         if (operand.matches("^'.'$")) return "chr";
 
-        Symbol s = symbolTable.lookupSymbol(operand);
+        Symbol s = lookupLocalSymbol(operand);
         if (s != null && !s.isFunction()) {
             varType.put(operand, s.getType());
             return s.getType();
@@ -395,25 +1045,42 @@ public class MIPSCodeGenerator {
         return "int";
     }
 
+    /**
+     * Busca una variable de la funció actual. Després de l'anàlisi semàntica el scope actual és el global,
+     * així que cal buscar-la als scopes de la funció.
+     */
+    private Symbol lookupLocalSymbol(String name) {
+        // Les versions SSA (x.3) tenen el tipus de la variable original
+        name = TypeInference.baseName(name);
+        Symbol s = currentFunction != null ? symbolTable.lookupFunctionSymbol(currentFunction, name) : null;
+        return s != null ? s : symbolTable.lookupSymbol(name);
+    }
+
     private void loadOperandToGPR(String operand, String targetGPR) {
         if (operand == null) {
             out.printf("\tli   %s, 0 # loadOperandToGPR: null operand\n", targetGPR);
             return;
         }
+        String register = registerOf.get(operand);
+        if (register != null) {
+            if (!register.equals(targetGPR)) out.printf("\tmove %s, %s\n", targetGPR, register);
+            return;
+        }
         String type = getVarOrLiteralType(operand);
 
-        if (operand.matches("param\\d+")) {
+        if (operand.matches("param\\d+") && !isFloatParameter(operand)) {
             int idx = Integer.parseInt(operand.substring(5)) - 1;
-            if (idx >= 0 && idx < 4) {
-                out.printf("\tmove %s, $a%d\n", targetGPR, idx);
+            String argumentReg = parameters.getRegister(idx);
+            if (argumentReg != null) {
+                if (!targetGPR.equals(argumentReg)) out.printf("\tmove %s, %s\n", targetGPR, argumentReg);
             } else {
-                out.printf("\tlw   %s, %d($fp) # Accessing stacked param %s\n", targetGPR, 8 + (idx - 4) * 4, operand);
+                out.printf("\tlw   %s, %d($fp) # Accessing stacked param %s\n", targetGPR, parameters.getStackOffset(idx), operand);
             }
         } else if (operand.matches("^-?\\d+$")) {
             out.printf("\tli   %s, %s\n", targetGPR, operand);
         } else if (operand.matches("^'.'$")) {
             out.printf("\tli   %s, %d\n", targetGPR, (int) operand.charAt(1));
-        } else if ("flt".equals(type)) {
+        } else if ("flt".equals(type) || isFloatParameter(operand)) {
             String tempFPR = "$f18";
             loadOperandToFPU(operand, tempFPR);
             out.printf("\tcvt.w.s %s, %s\n", tempFPR, tempFPR);
@@ -423,11 +1090,15 @@ public class MIPSCodeGenerator {
             if (offset == null) {
                 out.printf("\tli   %s, 0 # Error: %s not in localOffset\n", targetGPR, operand);
             } else {
-                out.printf("\tlw   %s, %d($fp)\n", targetGPR, offset);
+                out.printf("\t%-4s %s, %s\n", slotLoad(operand), targetGPR, frameAddress(offset));
             }
         }
     }
 
+    private boolean isFloatParameter(String operand) {
+        return operand.matches("param\\d+") && parameters.isFloat(Integer.parseInt(operand.substring(5)) - 1);
+    }
+
     private void loadOperandToFPU(String operand, String targetFPR) {
         if (operand == null) {
             out.printf("\tli   $t9, 0 # loadOperandToFPU: null operand\n");
@@ -435,9 +1106,22 @@ public class MIPSCodeGenerator {
             out.printf("\tcvt.s.w %s, %s\n", targetFPR, targetFPR);
             return;
         }
+        String register = fpuRegisterOf.get(operand);
+        if (register != null) {
+            if (!register.equals(targetFPR)) out.printf("\tmov.s %s, %s\n", targetFPR, register);
+            return;
+        }
         String type = getVarOrLiteralType(operand);
 
-        if (floatConstants.containsKey(operand)) {
+        if (isFloatParameter(operand)) {
+            int idx = Integer.parseInt(operand.substring(5)) - 1;
+            String argumentReg = parameters.getRegister(idx);
+            if (argumentReg != null) {
+                if (!targetFPR.equals(argumentReg)) out.printf("\tmov.s %s, %s\n", targetFPR, argumentReg);
+            } else {
+                out.printf("\tlwc1 %s, %d($fp) # Accessing stacked param %s\n", targetFPR, parameters.getStackOffset(idx), operand);
+            }
+        } else if (floatConstants.containsKey(operand)) {
             String lbl = floatConstants.get(operand);
             out.printf("\tlwc1 %s, %s\n", targetFPR, lbl);
         } else if ("flt".equals(type)) {
@@ -447,22 +1131,31 @@ public class MIPSCodeGenerator {
                 out.printf("\tmtc1 $t9, %s\n", targetFPR);
                 out.printf("\tcvt.s.w %s, %s\n", targetFPR, targetFPR);
             } else {
-                out.printf("\tlwc1 %s, %d($fp)\n", targetFPR, offset);
+                out.printf("\tlwc1 %s, %s\n", targetFPR, frameAddress(offset));
+            }
+        } else if (operand.matches("^-?\\d+$") || operand.matches("^'.'$")) {
+            // Un literal enter es converteix a real en compilar: només cal carregar-ne el patró de bits
+            int value = operand.startsWith("'") ? operand.charAt(1) : Integer.parseInt(operand);
+            int bits = Float.floatToIntBits((float) value);
+            if (bits == 0) {
+                out.printf("\tmtc1 $zero, %s\n", targetFPR);
+            } else {
+                out.printf("\tli   $t9, %d\n", bits);
+                out.printf("\tmtc1 $t9, %s\n", targetFPR);
             }
         } else {
             String tempGPR = "$t9";
-            if (operand.matches("^-?\\d+$")) {
-                out.printf("\tli   %s, %s\n", tempGPR, operand);
-            } else if (operand.matches("^'.'$")) {
-                out.printf("\tli   %s, %d\n", tempGPR, (int) operand.charAt(1));
+            if (registerOf.containsKey(operand)) {
+                tempGPR = registerOf.get(operand);
             } else if (operand.matches("param\\d+")) {
                 int idx = Integer.parseInt(operand.substring(5)) - 1;
-                if (idx >= 0 && idx < 4) { out.printf("\tmove %s, $a%d\n", tempGPR, idx); }
-                else { out.printf("\tlw   %s, %d($fp) # Accessing stacked param %s for FPU conv\n", tempGPR, 8 + (idx - 4) * 4, operand); }
+                String argumentReg = parameters.getRegister(idx);
+                if (argumentReg != null) { out.printf("\tmove %s, %s\n", tempGPR, argumentReg); }
+                else { out.printf("\tlw   %s, %d($fp) # Accessing stacked param %s for FPU conv\n", tempGPR, parameters.getStackOffset(idx), operand); }
             }
             else {
                 Integer offset = localOffset.get(operand);
-                if (offset != null) out.printf("\tlw   %s, %d($fp)\n", tempGPR, offset);
+                if (offset != null) out.printf("\t%-4s %s, %s\n", slotLoad(operand), tempGPR, frameAddress(offset));
                 else out.printf("\tli   %s, 0 # Error: %s not in localOffset for GPR->FPU conv\n", tempGPR, operand);
             }
             out.printf("\tmtc1 %s, %s\n", tempGPR, targetFPR);
@@ -471,21 +1164,36 @@ public class MIPSCodeGenerator {
     }
 
     private void storeGPRResult(String varName, String sourceGPR) {
+        String register = registerOf.get(varName);
+        if (register != null) {
+            if (!register.equals(sourceGPR)) out.printf("\tmove %s, %s\n", register, sourceGPR);
+            return;
+        }
         Integer offset = localOffset.get(varName);
         if (offset == null) {
             out.printf("\t# Error: %s not in localOffset for GPR store. Store ignored.\n", varName);
             return;
         }
-        out.printf("\tsw   %s, %d($fp)\n", sourceGPR, offset);
+        out.printf("\t%-4s %s, %s\n", byteSlots.contains(varName) ? "sb" : "sw", sourceGPR, frameAddress(offset));
+    }
+
+    private String slotLoad(String name) {
+        // Els caràcters són sense signe: un lb tornaria negatius els que passen de 127
+        return byteSlots.contains(name) ? "lbu" : "lw";
     }
 
     private void storeFPUResult(String varName, String sourceFPR) {
+        String register = fpuRegisterOf.get(varName);
+        if (register != null) {
+            if (!register.equals(sourceFPR)) out.printf("\tmov.s %s, %s\n", register, sourceFPR);
+            return;
+        }
         Integer offset = localOffset.get(varName);
         if (offset == null) {
             out.printf("\t# Error: %s not in localOffset for FPU store. Store ignored.\n", varName);
             return;
         }
-        out.printf("\tswc1 %s, %d($fp)\n", sourceFPR, offset);
+        out.printf("\tswc1 %s, %s\n", sourceFPR, frameAddress(offset));
     }
 
     private void setupFrame(List<TACInstruction> body, Symbol functionSymbol) {
@@ -510,11 +1218,12 @@ public class MIPSCodeGenerator {
             getVarOrLiteralType(a1, symbolTable, varType, floatConstants, functionSymbol);
             getVarOrLiteralType(a2, symbolTable, varType, floatConstants, functionSymbol);
 
-            if (res != null && !"label".equals(op) && !res.matches("^L\\d+$")) {
+            // El resultat d'un label, goto o ifFalse és una etiqueta, no un valor
+            if (res != null && !"label".equals(op) && !"goto".equals(op) && !"ifFalse".equals(op)) {
                 frameVariables.add(res);
 
                 if (!varType.containsKey(res)) {
-                    Symbol sRes = symbolTable.lookupSymbol(res);
+                    Symbol sRes = lookupLocalSymbol(res);
                     if (sRes != null && !sRes.isFunction()) {
                         varType.put(res, sRes.getType());
                     } else {
@@ -524,7 +1233,7 @@ public class MIPSCodeGenerator {
                             if (a1 != null) {
                                 inferredType = getVarOrLiteralType(a1, symbolTable, varType, floatConstants, functionSymbol);
                             }
-                        } else if (List.of("SUM", "SUB", "MULT", "DIV").contains(op)) {
+                        } else if (List.of("SUM", "SUB", "MULT", "DIV", "MOD").contains(op)) {
                             String typeOfA1 = getVarOrLiteralType(a1, symbolTable, varType, floatConstants, functionSymbol);
                             String typeOfA2 = getVarOrLiteralType(a2, symbolTable, varType, floatConstants, functionSymbol);
                             if ("flt".equals(typeOfA1) || "flt".equals(typeOfA2)) {
@@ -553,7 +1262,7 @@ public class MIPSCodeGenerator {
 
         for (String varInFrame : new LinkedHashSet<>(frameVariables)) {
             if (!varType.containsKey(varInFrame)) {
-                Symbol s = symbolTable.lookupSymbol(varInFrame);
+                Symbol s = lookupLocalSymbol(varInFrame);
                 if (s != null && !s.isFunction()) {
                     varType.put(varInFrame, s.getType());
                 } else {
@@ -562,18 +1271,87 @@ public class MIPSCodeGenerator {
             }
         }
 
-        int currentOffset = -8;
-        for (String varName : frameVariables) {
+        // Els valors enters van a registres; només els que no hi caben necessiten lloc a la pila
+        Set<String> gprCandidates = new LinkedHashSet<>();
+        Set<String> fpuCandidates = new LinkedHashSet<>();
+        for (String varInFrame : frameVariables) {
+            if ("flt".equals(varType.get(varInFrame))) fpuCandidates.add(varInFrame);
+            else gprCandidates.add(varInFrame);
+        }
+        // Una funció fulla no ha de desar $ra, i si tots els paràmetres arriben per registre i no en passa
+        // cap per la pila, el frame es pot adreçar des de $sp i $fp queda lliure com a registre
+        saveReturnAddress = optimizationLevel <= 0 || makesCalls(body);
+        omitFramePointer = optimizationLevel > 0 && parameters.getStackedCount() == 0 && !passesStackedArguments(body);
+        frameHeader = omitFramePointer ? (saveReturnAddress ? 4 : 0) : 8;
+
+        if (optimizationLevel > 0) {
+            RegisterAllocator allocator = optimizationLevel >= 2
+                    ? new GraphColoringAllocator(omitFramePointer)
+                    : new LinearScanAllocator(omitFramePointer);
+            allocator.allocate(body, gprCandidates);
+            registerOf = allocator.getAssignment();
+            // Els reals tenen el seu propi assignador sobre els registres de la FPU
+            RegisterAllocator fpuAllocator = new FloatRegisterAllocator();
+            fpuAllocator.allocate(body, fpuCandidates);
+            fpuRegisterOf = fpuAllocator.getAssignment();
+            savedRegisters = new ArrayList<>();
+            if (!"main".equals(currentFunction)) {
+                savedRegisters.addAll(allocator.getUsedCalleeSaved());
+                savedRegisters.addAll(fpuAllocator.getUsedCalleeSaved());
+            }
+        } else {
+            registerOf = new HashMap<>();
+            fpuRegisterOf = new HashMap<>();
+            savedRegisters = List.of();
+        }
+
+        int currentOffset = -frameHeader - 4 * savedRegisters.size();
+        int slots = 0;
+        if (memoized.contains(currentFunction)) {
             currentOffset -= 4;
-            localOffset.put(varName, currentOffset);
+            memoKeyOffset = currentOffset;
+            slots++;
+        }
+        Map<String,Integer> spilled = new LinkedHashMap<>();
+        for (String varName : frameVariables) {
+            if (registerOf.containsKey(varName) || fpuRegisterOf.containsKey(varName)) continue;
+            spilled.put(varName, optimizationLevel > 0 && "chr".equals(varType.get(varName)) ? 1 : StackSlotAllocator.WORD);
+        }
+        unsharedFrameSize = alignFrame(frameHeader + (savedRegisters.size() + slots + spilled.size()) * 4);
+
+        byteSlots = new HashSet<>();
+        int slotBytes;
+        if (optimizationLevel > 0) {
+            // Els valors que no són vius alhora comparteixen slot, i els caràcters n'ocupen un d'un byte
+            StackSlotAllocator slotAllocator = new StackSlotAllocator();
+            slotAllocator.allocate(body, spilled);
+            for (Map.Entry<String,Integer> slot : slotAllocator.getDistances().entrySet()) {
+                localOffset.put(slot.getKey(), currentOffset - slot.getValue());
+                if (spilled.get(slot.getKey()) == 1) byteSlots.add(slot.getKey());
+            }
+            slotBytes = slotAllocator.getSize();
+        } else {
+            for (String varName : spilled.keySet()) {
+                currentOffset -= 4;
+                localOffset.put(varName, currentOffset);
+            }
+            slotBytes = 4 * spilled.size();
         }
+        frameSize = alignFrame(frameHeader + (savedRegisters.size() + slots) * 4 + slotBytes);
+    }
 
-        int totalBytesForVars = frameVariables.size() * 4;
-        frameSize = 8 + totalBytesForVars;
-        if (frameSize % 8 != 0) {
-            frameSize = ((frameSize / 8) + 1) * 8;
+    private static int alignFrame(int size) {
+        return (size + 7) / 8 * 8;
+    }
+
+    /**
+     * Indica si alguna crida del cos passa arguments per la pila
+     */
+    private boolean passesStackedArguments(List<TACInstruction> body) {
+        for (TACInstruction ins : body) {
+            if ("call".equals(ins.getOp()) && conventionOf(ins.getArg1()).getStackedCount() > 0) return true;
         }
-        if (frameSize < 8) frameSize = 8;
+        return false;
     }
 
     private String getVarOrLiteralType(String operand, SymbolTable symTable, Map<String, String> varTypeMap,
@@ -586,7 +1364,7 @@ public class MIPSCodeGenerator {
 
         if (varTypeMap.containsKey(operand)) return varTypeMap.get(operand);
 
-        Symbol s = symTable.lookupSymbol(operand);
+        Symbol s = lookupLocalSymbol(operand);
         if (s != null && !s.isFunction()) {
             varTypeMap.put(operand, s.getType());
             return s.getType();
@@ -0,0 +1,214 @@
+package BackEnd.Peephole;
+
+import java.util.*;
+
+public class MIPSInstruction {
+    /**
+     * Registres que una crida pot modificar (els que no ha de preservar la funció cridada)
+     */
+    private static final Set<String> CALLER_SAVED = new HashSet<>(List.of(
+            "$v0", "$v1", "$a0", "$a1", "$a2", "$a3", "$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7",
+            "$t8", "$t9", "$ra", "$hi", "$lo", "$fcc"));
+    static {
+        for (int i = 0; i < 20; i++) CALLER_SAVED.add("$f" + i);
+    }
+    private static final Set<String> BRANCHES = Set.of("beq", "bne", "blt", "bgt", "ble", "bge", "bltz", "bgez",
+            "blez", "bgtz", "beqz", "bnez", "bc1t", "bc1f", "b");
+    private static final Set<String> LOADS = Set.of("lw", "lb", "lbu", "lh", "lhu", "lwc1", "l.s");
+    private static final Set<String> STORES = Set.of("sw", "sb", "sh", "swc1", "s.s");
+    /**
+     * Instruccions sense destí: tots els operands es llegeixen
+     */
+    private static final Set<String> NO_DESTINATION = Set.of("sw", "sb", "sh", "swc1", "s.s", "mult", "multu",
+            "divu", "c.eq.s", "c.lt.s", "c.le.s");
+
+    /**
+     * Línia d'etiqueta (nom sense els dos punts), o null si és una instrucció
+     */
+    private final String label;
+    private String opcode;
+    private List<String> operands;
+    /**
+     * Comentari i línies que no són instruccions (directives, línies en blanc), que es conserven tal qual
+     */
+    private final String comment;
+    private final String raw;
+
+    private MIPSInstruction(String label, String opcode, List<String> operands, String comment, String raw) {
+        this.label = label;
+        this.opcode = opcode;
+        this.operands = operands;
+        this.comment = comment;
+        this.raw = raw;
+    }
+
+    /**
+     * Constructor d'una instrucció nova
+     *
+     * @param opcode   Mnemònic
+     * @param operands Operands, en l'ordre de l'assemblador
+     */
+    public MIPSInstruction(String opcode, String... operands) {
+        this(null, opcode, new ArrayList<>(Arrays.asList(operands)), null, null);
+    }
+
+    /**
+     * Interpreta una línia d'assemblador tal com l'escriu el generador de codi
+     *
+     * @param line Línia sense el salt de línia
+     * @return La instrucció, l'etiqueta o la línia literal
+     */
+    public static MIPSInstruction parse(String line) {
+        String code = line;
+        String comment = null;
+        int hash = line.indexOf('#');
+        if (hash >= 0) {
+            code = line.substring(0, hash);
+            comment = line.substring(hash);
+        }
+        code = code.trim();
+        if (code.isEmpty() || code.startsWith(".")) return new MIPSInstruction(null, null, null, null, line);
+        if (code.endsWith(":") && !code.contains(" ")) {
+            return new MIPSInstruction(code.substring(0, code.length() - 1), null, null, comment, null);
+        }
+
+        String[] parts = code.split("\\s+", 2);
+        List<String> operands = new ArrayList<>();
+        if (parts.length > 1) {
+            for (String operand : parts[1].split(",")) operands.add(operand.trim());
+        }
+        return new MIPSInstruction(null, parts[0], operands, comment, null);
+    }
+
+    public boolean isLabel()       { return label != null;                  }
+    public boolean isInstruction() { return opcode != null;                 }
+    public boolean isBranch()      { return isInstruction() && BRANCHES.contains(opcode); }
+    public boolean isJump()        { return "j".equals(opcode);             }
+    public boolean isCall()        { return "jal".equals(opcode);           }
+    public boolean isReturn()      { return "jr".equals(opcode);            }
+
+    /**
+     * Indica si després d'aquesta instrucció l'execució pot no continuar per la següent
+     */
+    public boolean endsBlock() {
+        return isBranch() || isJump() || isReturn() || "syscall".equals(opcode);
+    }
+
+    /**
+     * Etiqueta de destí d'un salt o una branca
+     */
+    public String getTarget() {
+        return isBranch() || isJump() ? operands.get(operands.size() - 1) : null;
+    }
+
+    public boolean isLoad()  { return isInstruction() && LOADS.contains(opcode);     }
+    public boolean isStore() { return isInstruction() && STORES.contains(opcode);    }
+
+    /**
+     * Registres que escriu la instrucció
+     */
+    public Set<String> getDefs() {
+        Set<String> defs = new LinkedHashSet<>();
+        if (!isInstruction()) return defs;
+        if (isCall()) return new LinkedHashSet<>(CALLER_SAVED);
+        if ("syscall".equals(opcode)) {
+            defs.add("$v0");
+            defs.add("$f0");
+            return defs;
+        }
+        if (operands.isEmpty() || isBranch() || isJump() || isReturn()) return defs;
+        switch (opcode) {
+            case "mult": case "multu": case "divu":
+                defs.add("$hi");
+                defs.add("$lo");
+                return defs;
+            case "div":
+                defs.add("$hi");
+                defs.add("$lo");
+                if (operands.size() == 2) return defs;
+                break;
+            case "mul":
+                // A MARS el mul de tres operands també deixa el producte a $hi i $lo
+                defs.add("$hi");
+                defs.add("$lo");
+                break;
+            case "mtc1":
+                defs.add(operands.get(1));
+                return defs;
+            case "c.eq.s": case "c.lt.s": case "c.le.s":
+                defs.add("$fcc");
+                return defs;
+            default:
+                if (NO_DESTINATION.contains(opcode)) return defs;
+        }
+        if (isRegister(operands.get(0))) defs.add(operands.get(0));
+        return defs;
+    }
+
+    /**
+     * Registres que llegeix la instrucció. Les crides llegeixen els registres d'argument i $sp, per als
+     * arguments que van a la pila.
+     */
+    public Set<String> getUses() {
+        Set<String> uses = new LinkedHashSet<>();
+        if (!isInstruction()) return uses;
+        if (isCall()) {
+            uses.addAll(List.of("$a0", "$a1", "$a2", "$a3", "$f12", "$f14", "$sp"));
+            return uses;
+        }
+        if ("syscall".equals(opcode)) {
+            uses.addAll(List.of("$v0", "$a0", "$a1", "$f12"));
+            return uses;
+        }
+        if ("mflo".equals(opcode)) uses.add("$lo");
+        if ("mfhi".equals(opcode)) uses.add("$hi");
+        if ("bc1t".equals(opcode) || "bc1f".equals(opcode)) uses.add("$fcc");
+
+        if ("mtc1".equals(opcode)) {
+            uses.add(operands.get(0));
+            return uses;
+        }
+
+        boolean hasDestination = !operands.isEmpty() && getDefs().contains(operands.get(0));
+        for (int i = hasDestination ? 1 : 0; i < operands.size(); i++) {
+            String operand = operands.get(i);
+            String base = baseRegister(operand);
+            if (base != null) uses.add(base);
+            else if (isRegister(operand)) uses.add(operand);
+        }
+        uses.remove("$zero");
+        return uses;
+    }
+
+    /**
+     * Registre base d'un operand de memòria com -12($fp) o etiqueta+4($t8)
+     */
+    public static String baseRegister(String operand) {
+        int open = operand.indexOf('(');
+        return open >= 0 && operand.endsWith(")") ? operand.substring(open + 1, operand.length() - 1) : null;
+    }
+
+    public static boolean isRegister(String operand) {
+        return operand.startsWith("$");
+    }
+
+    /**
+     * Getters i setters
+     */
+    public String getLabel()                      { return label;                  }
+    public String getOpcode()                     { return opcode;                 }
+    public List<String> getOperands()             { return operands;               }
+    public String getOperand(int index)           { return operands.get(index);    }
+    public void setOpcode(String opcode)          { this.opcode = opcode;          }
+    public void setOperand(int index, String op)  { operands.set(index, op);       }
+
+    @Override
+    public String toString() {
+        if (raw != null) return raw;
+        if (label != null) return label + ":" + (comment != null ? " " + comment : "");
+        StringBuilder sb = new StringBuilder("\t").append(opcode);
+        if (!operands.isEmpty()) sb.append(" ".repeat(Math.max(1, 5 - opcode.length()))).append(String.join(", ", operands));
+        if (comment != null) sb.append(" ").append(comment);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,313 @@
+package BackEnd.Peephole;
+
+import java.util.*;
+
+public class PeepholeOptimizer {
+    /**
+     * Registres vius quan la funció retorna: el resultat, els punters de pila i els registres preservats
+     */
+    private static final Set<String> LIVE_AT_RETURN = new HashSet<>(List.of("$v0", "$f0", "$sp", "$fp", "$ra",
+            "$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7"));
+    /**
+     * En una crida en posició de cua (j a una altra funció) també es llegeixen els arguments
+     */
+    private static final Set<String> LIVE_AT_TAIL_CALL = new HashSet<>(List.of("$a0", "$a1", "$a2", "$a3", "$f12",
+            "$f14", "$sp", "$fp", "$ra", "$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7"));
+    static {
+        // Els registres preservats de la FPU
+        for (int i = 20; i < 32; i++) {
+            LIVE_AT_RETURN.add("$f" + i);
+            LIVE_AT_TAIL_CALL.add("$f" + i);
+        }
+    }
+    /**
+     * Registres que no es reescriuen mai: el frame depèn del seu valor exacte
+     */
+    private static final Set<String> FIXED = Set.of("$sp", "$fp", "$ra", "$zero");
+    private static final Map<String,String> IMMEDIATE_FORM = Map.of(
+            "add", "addi", "addu", "addiu", "sub", "addi", "subu", "addiu", "and", "andi", "or", "ori",
+            "xor", "xori", "slt", "slti", "sltu", "sltiu");
+    private static final Map<String,String> SHIFT_FORM = Map.of("sllv", "sll", "srlv", "srl", "srav", "sra");
+    private static final Set<String> COMMUTATIVE = Set.of("add", "addu", "and", "or", "xor");
+
+    private final Set<PeepholeRule> rules;
+
+    private List<MIPSInstruction> code;
+    /**
+     * Registres vius a la sortida de cada posició del codi
+     */
+    private List<Set<String>> liveOut;
+
+    /**
+     * Constructor de la classe PeepholeOptimizer
+     *
+     * @param rules Regles que s'apliquen
+     */
+    public PeepholeOptimizer(Set<PeepholeRule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Aplica les regles sobre el codi d'una funció fins que ja no canvia res. Les regles només miren
+     * instruccions consecutives d'un mateix bloc bàsic; la vivacitat dels registres, calculada sobre tota
+     * la funció, decideix si un registre intermedi es pot fer desaparèixer.
+     *
+     * @param code Instruccions de la funció, que es modifiquen
+     */
+    public void optimize(List<MIPSInstruction> code) {
+        this.code = code;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            if (rules.contains(PeepholeRule.JUMP_TO_NEXT)) changed |= removeJumpsToNext();
+            if (rules.contains(PeepholeRule.REDUNDANT_LOAD_STORE)) changed |= removeRedundantMemory();
+            if (rules.contains(PeepholeRule.IMMEDIATE_FOLDING)) changed |= foldImmediates();
+            if (rules.contains(PeepholeRule.MOVE_COALESCING)) changed |= coalesceMoves();
+        }
+    }
+
+    /**
+     * j L (amb el nop que el segueix) o una branca a L just abans de l'etiqueta L
+     */
+    private boolean removeJumpsToNext() {
+        boolean changed = false;
+        for (int i = 0; i < code.size(); i++) {
+            MIPSInstruction ins = code.get(i);
+            if (!ins.isJump() && !ins.isBranch()) continue;
+
+            int next = i + 1;
+            boolean delaySlot = ins.isJump() && next < code.size() && "nop".equals(code.get(next).getOpcode());
+            if (delaySlot) next++;
+            boolean reachesTarget = false;
+            for (int k = next; k < code.size() && !code.get(k).isInstruction(); k++) {
+                if (code.get(k).isLabel() && code.get(k).getLabel().equals(ins.getTarget())) reachesTarget = true;
+            }
+            if (!reachesTarget) continue;
+
+            if (delaySlot) code.remove(i + 1);
+            code.remove(i);
+            i--;
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Un lw d'una adreça que s'acaba de guardar es converteix en un move del valor guardat, i un sw del
+     * valor que s'acaba de llegir de la mateixa adreça desapareix. Qualsevol altre sw, crida o canvi del
+     * registre base atura la cerca.
+     */
+    private boolean removeRedundantMemory() {
+        boolean changed = false;
+        for (int i = 0; i < code.size(); i++) {
+            MIPSInstruction ins = code.get(i);
+            boolean word = "sw".equals(ins.getOpcode()) || "lw".equals(ins.getOpcode());
+            boolean single = "swc1".equals(ins.getOpcode()) || "lwc1".equals(ins.getOpcode());
+            if (!word && !single) continue;
+
+            String value = ins.getOperand(0);
+            String address = ins.getOperand(1);
+            String base = MIPSInstruction.baseRegister(address);
+            if (value.equals(base)) continue;
+            for (int j = i + 1; j < code.size(); j++) {
+                MIPSInstruction next = code.get(j);
+                if (next.isLabel()) break;
+                if (!next.isInstruction()) continue;
+
+                boolean sameSlot = next.getOperands().size() == 2 && address.equals(next.getOperand(1));
+                if (ins.isStore() && sameSlot && next.getOpcode().equals(word ? "lw" : "lwc1")) {
+                    String target = next.getOperand(0);
+                    if (target.equals(value)) {
+                        code.remove(j--);
+                    } else {
+                        code.set(j, new MIPSInstruction(word ? "move" : "mov.s", target, value));
+                    }
+                    changed = true;
+                    if (target.equals(value)) continue;
+                    break;
+                }
+                if (ins.isLoad() && sameSlot && value.equals(next.getOperand(0))
+                        && next.getOpcode().equals(word ? "sw" : "swc1")) {
+                    code.remove(j--);
+                    changed = true;
+                    continue;
+                }
+                if (next.isStore() || next.isCall() || next.endsBlock()) break;
+                Set<String> defs = next.getDefs();
+                if (defs.contains(value) || (base != null && defs.contains(base))) break;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * li R, K seguit d'una operació que llegeix R com a últim operand, quan R no es fa servir més
+     */
+    private boolean foldImmediates() {
+        boolean changed = false;
+        computeLiveness();
+        for (int i = 0; i < code.size(); i++) {
+            MIPSInstruction li = code.get(i);
+            if (!"li".equals(li.getOpcode()) || !li.getOperand(1).matches("-?\\d+")) continue;
+            int j = nextInstruction(i);
+            if (j < 0) continue;
+
+            String register = li.getOperand(0);
+            MIPSInstruction op = code.get(j);
+            if (op.getOperands().size() != 3 || FIXED.contains(register)) continue;
+            if (liveOut.get(j).contains(register) && !op.getDefs().contains(register)) continue;
+
+            String source = op.getOperand(1);
+            String constant = op.getOperand(2);
+            if (!constant.equals(register) && COMMUTATIVE.contains(op.getOpcode())) {
+                source = op.getOperand(2);
+                constant = op.getOperand(1);
+            }
+            if (!constant.equals(register) || source.equals(register)) continue;
+
+            long value = Long.parseLong(li.getOperand(1));
+            String opcode = op.getOpcode();
+            String folded = null;
+            if (IMMEDIATE_FORM.containsKey(opcode)) {
+                if (opcode.startsWith("sub")) value = -value;
+                boolean unsigned = "andi".equals(IMMEDIATE_FORM.get(opcode)) || "ori".equals(IMMEDIATE_FORM.get(opcode))
+                        || "xori".equals(IMMEDIATE_FORM.get(opcode));
+                boolean fits = unsigned ? value >= 0 && value <= 0xFFFF : value >= -0x8000 && value <= 0x7FFF;
+                if (fits) folded = IMMEDIATE_FORM.get(opcode);
+            } else if (SHIFT_FORM.containsKey(opcode) && value >= 0 && value < 32) {
+                folded = SHIFT_FORM.get(opcode);
+            }
+            if (folded == null) continue;
+
+            code.set(j, new MIPSInstruction(folded, op.getOperand(0), source, Long.toString(value)));
+            code.remove(i);
+            i--;
+            changed = true;
+            computeLiveness();
+        }
+        return changed;
+    }
+
+    /**
+     * Tres casos: un move d'un registre a ell mateix o a un registre mort; una instrucció que calcula un
+     * valor que només es copia a un altre registre (s'escriu directament al destí); i una còpia que només
+     * llegeix la instrucció següent (aquesta llegeix directament l'origen).
+     */
+    private boolean coalesceMoves() {
+        boolean changed = false;
+        computeLiveness();
+        for (int i = 0; i < code.size(); i++) {
+            MIPSInstruction move = code.get(i);
+            if (!"move".equals(move.getOpcode()) && !"mov.s".equals(move.getOpcode())) continue;
+            String target = move.getOperand(0);
+            String source = move.getOperand(1);
+            if (FIXED.contains(target) || FIXED.contains(source)) continue;
+
+            if (target.equals(source) || !liveOut.get(i).contains(target)) {
+                code.remove(i--);
+                changed = true;
+                computeLiveness();
+                continue;
+            }
+
+            int p = previousInstruction(i);
+            if (p >= 0 && !liveOut.get(i).contains(source) && writesOnly(code.get(p), source)) {
+                code.get(p).setOperand(0, target);
+                code.remove(i--);
+                changed = true;
+                computeLiveness();
+                continue;
+            }
+
+            int n = nextInstruction(i);
+            if (n < 0) continue;
+            MIPSInstruction user = code.get(n);
+            if (user.isCall() || user.isReturn() || "syscall".equals(user.getOpcode())) continue;
+            if (!user.getUses().contains(target)) continue;
+            if (liveOut.get(n).contains(target) && !user.getDefs().contains(target)) continue;
+
+            boolean hasDestination = user.getDefs().contains(user.getOperand(0)) && !"mtc1".equals(user.getOpcode());
+            for (int k = hasDestination ? 1 : 0; k < user.getOperands().size(); k++) {
+                String operand = user.getOperand(k);
+                if (operand.equals(target)) user.setOperand(k, source);
+                else if (operand.endsWith("(" + target + ")")) user.setOperand(k, operand.replace("(" + target + ")", "(" + source + ")"));
+            }
+            code.remove(i--);
+            changed = true;
+            computeLiveness();
+        }
+        return changed;
+    }
+
+    /**
+     * Indica si la instrucció només escriu el registre indicat, com a primer operand
+     */
+    private static boolean writesOnly(MIPSInstruction ins, String register) {
+        if (!ins.isInstruction() || ins.isCall() || ins.getOperands().isEmpty()) return false;
+        return ins.getDefs().equals(Set.of(register)) && register.equals(ins.getOperand(0));
+    }
+
+    /**
+     * Instrucció següent dins del mateix bloc, o -1 si abans hi ha una etiqueta o s'acaba el bloc
+     */
+    private int nextInstruction(int i) {
+        if (code.get(i).endsBlock()) return -1;
+        for (int j = i + 1; j < code.size(); j++) {
+            if (code.get(j).isLabel()) return -1;
+            if (code.get(j).isInstruction()) return j;
+        }
+        return -1;
+    }
+
+    private int previousInstruction(int i) {
+        for (int j = i - 1; j >= 0; j--) {
+            if (code.get(j).isLabel()) return -1;
+            if (code.get(j).isInstruction()) return code.get(j).endsBlock() || code.get(j).isCall() ? -1 : j;
+        }
+        return -1;
+    }
+
+    /**
+     * Vivacitat dels registres cap enrere sobre el graf de flux de la funció. El codi de cada funció acaba
+     * amb un jr, un salt o la crida al sistema de sortida, de manera que després de l'última instrucció no
+     * hi ha res viu.
+     */
+    private void computeLiveness() {
+        Map<String,Integer> labels = new HashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.get(i).isLabel()) labels.put(code.get(i).getLabel(), i);
+        }
+
+        List<Set<String>> liveIn = new ArrayList<>();
+        liveOut = new ArrayList<>();
+        for (int i = 0; i < code.size(); i++) {
+            liveIn.add(new HashSet<>());
+            liveOut.add(new HashSet<>());
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = code.size() - 1; i >= 0; i--) {
+                MIPSInstruction ins = code.get(i);
+                Set<String> out = new HashSet<>();
+                boolean fallsThrough = !ins.isJump() && !ins.isReturn();
+                if (ins.isReturn()) out.addAll(LIVE_AT_RETURN);
+                if (ins.isJump() || ins.isBranch()) {
+                    Integer target = labels.get(ins.getTarget());
+                    out.addAll(target != null ? liveIn.get(target) : LIVE_AT_TAIL_CALL);
+                }
+                if (fallsThrough && i + 1 < code.size()) out.addAll(liveIn.get(i + 1));
+
+                Set<String> in = new HashSet<>(out);
+                in.removeAll(ins.getDefs());
+                in.addAll(ins.getUses());
+                if (!out.equals(liveOut.get(i)) || !in.equals(liveIn.get(i))) {
+                    liveOut.set(i, out);
+                    liveIn.set(i, in);
+                    changed = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package BackEnd.Peephole;
+
+public enum PeepholeRule {
+    /**
+     * sw seguit d'un lw de la mateixa adreça (el lw passa a ser un move) i lw seguit d'un sw del mateix valor
+     */
+    REDUNDANT_LOAD_STORE,
+    /**
+     * Salts i branques a l'etiqueta que ve just a continuació
+     */
+    JUMP_TO_NEXT,
+    /**
+     * li a un registre que només fa servir la instrucció següent: addi, addiu, andi, ori, xori, slti, sltiu
+     * i desplaçaments amb immediat
+     */
+    IMMEDIATE_FOLDING,
+    /**
+     * Còpies que es poden evitar escrivint el resultat directament al destí o llegint directament l'origen
+     */
+    MOVE_COALESCING
+}
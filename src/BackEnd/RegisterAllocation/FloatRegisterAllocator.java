@@ -0,0 +1,24 @@
+package BackEnd.RegisterAllocation;
+
+import java.util.List;
+
+public class FloatRegisterAllocator extends LinearScanAllocator {
+    /**
+     * Registres de la FPU que el cridat pot trepitjar. $f0 és per al resultat, $f12 i $f14 per als
+     * arguments i $f16 i $f18 queden com a registres de treball.
+     */
+    public static final List<String> CALLER_SAVED = List.of("$f4", "$f5", "$f6", "$f7", "$f8", "$f9", "$f10", "$f11");
+    /**
+     * Registres de la FPU que el cridat ha de preservar
+     */
+    public static final List<String> CALLEE_SAVED = List.of("$f20", "$f21", "$f22", "$f23", "$f24", "$f25", "$f26",
+            "$f27", "$f28", "$f29", "$f30", "$f31");
+
+    /**
+     * Constructor de la classe FloatRegisterAllocator: exploració lineal sobre els registres de la FPU,
+     * per als valors reals
+     */
+    public FloatRegisterAllocator() {
+        super(CALLER_SAVED, CALLEE_SAVED);
+    }
+}
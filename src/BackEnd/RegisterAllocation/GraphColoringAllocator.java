@@ -0,0 +1,405 @@
+package BackEnd.RegisterAllocation;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+import MiddleEnd.CFG.DominatorTree;
+import MiddleEnd.CFG.LoopInfo;
+
+import java.util.*;
+
+public class GraphColoringAllocator implements RegisterAllocator {
+    /**
+     * Registres d'argument. Es tracten com a nodes precolorats perquè els paramN i els param es puguin fusionar.
+     */
+    public static final List<String> ARGUMENT = List.of("$a0", "$a1", "$a2", "$a3");
+    /**
+     * Colors d'un valor que no travessa cap crida, per ordre de preferència
+     */
+    private final List<String> anyColor = new ArrayList<>();
+    /**
+     * Colors d'un valor que travessa alguna crida
+     */
+    private final List<String> calleeSaved;
+
+    /**
+     * Registre assignat a cada valor
+     */
+    private final Map<String,String> assignment = new LinkedHashMap<>();
+
+    /**
+     * Graf d'interferència: nodes, arestes i estat de cada node
+     */
+    private List<String> nodes;
+    private List<Set<Integer>> adjacency;
+    private int[] alias;
+    private boolean[] precolored;
+    private boolean[] crossesCall;
+    private double[] spillCost;
+    private String[] color;
+    /**
+     * Còpies candidates a fusionar (destí, origen, pes)
+     */
+    private final List<double[]> moves = new ArrayList<>();
+
+    /**
+     * Constructor de la classe GraphColoringAllocator
+     */
+    public GraphColoringAllocator() {
+        this(false);
+    }
+
+    /**
+     * Constructor de la classe GraphColoringAllocator
+     *
+     * @param framePointerFree Cert si la funció no fa servir $fp i aquest es pot assignar com un registre $s més
+     */
+    public GraphColoringAllocator(boolean framePointerFree) {
+        calleeSaved = LinearScanAllocator.withFramePointer(framePointerFree);
+        anyColor.addAll(LinearScanAllocator.CALLER_SAVED);
+        anyColor.addAll(ARGUMENT);
+        anyColor.addAll(calleeSaved);
+    }
+
+    /**
+     * Assigna registres amb coloració de grafs (Chaitin/Briggs): construcció del graf d'interferència,
+     * fusió conservadora de còpies, simplificació optimista i selecció de colors.
+     *
+     * @param body       Cos TAC de la funció
+     * @param candidates Valors enters que poden viure en un registre
+     */
+    @Override
+    public void allocate(List<TACInstruction> body, Set<String> candidates) {
+        assignment.clear();
+        moves.clear();
+
+        List<String> names = new ArrayList<>(ARGUMENT);
+        names.addAll(candidates);
+        LivenessAnalysis liveness = new ArgumentAwareLiveness(body, names);
+        liveness.analyze();
+
+        buildGraph(body, liveness);
+        coalesce();
+        List<Integer> stack = simplify();
+        select(stack);
+
+        for (String name : candidates) {
+            Integer idx = liveness.indexOf(name);
+            String c = idx == null ? null : color[find(idx)];
+            if (c != null) assignment.put(name, c);
+        }
+    }
+
+    /**
+     * Liveness que modela els registres d'argument: paramN llegeix $a(N-1), cada param escriu el seu $a
+     * i la crida llegeix tots els $a que s'han omplert.
+     */
+    private static class ArgumentAwareLiveness extends LivenessAnalysis {
+        private final List<TACInstruction> body;
+        private final int[] argumentIndex;
+
+        ArgumentAwareLiveness(List<TACInstruction> body, Collection<String> candidates) {
+            super(body, candidates);
+            this.body = body;
+            this.argumentIndex = new int[body.size()];
+            int pending = 0;
+            for (int i = 0; i < body.size(); i++) {
+                String op = body.get(i).getOp();
+                if ("param".equals(op)) {
+                    argumentIndex[i] = pending++;
+                } else if ("call".equals(op)) {
+                    argumentIndex[i] = pending;
+                    pending = 0;
+                }
+            }
+        }
+
+        @Override
+        public List<String> getUses(int position) {
+            TACInstruction ins = body.get(position);
+            List<String> uses = new ArrayList<>();
+            for (String u : ins.getUses()) uses.add(argumentRegister(u));
+            if ("call".equals(ins.getOp())) {
+                for (int k = 0; k < Math.min(argumentIndex[position], ARGUMENT.size()); k++) {
+                    uses.add(ARGUMENT.get(k));
+                }
+            }
+            return uses;
+        }
+
+        @Override
+        public String getDefinition(int position) {
+            TACInstruction ins = body.get(position);
+            if ("param".equals(ins.getOp())) {
+                int k = argumentIndex[position];
+                return k < ARGUMENT.size() ? ARGUMENT.get(k) : null;
+            }
+            return ins.getDefinedName();
+        }
+
+        /**
+         * Origen d'una còpia, traduint paramN al seu registre d'argument
+         */
+        String copySource(int position) {
+            TACInstruction ins = body.get(position);
+            if ("=".equals(ins.getOp()) || "param".equals(ins.getOp())) return argumentRegister(ins.getArg1());
+            return null;
+        }
+
+        private static String argumentRegister(String operand) {
+            if (operand != null && operand.matches("param[1-4]")) {
+                return ARGUMENT.get(Integer.parseInt(operand.substring(5)) - 1);
+            }
+            return operand;
+        }
+    }
+
+    private void buildGraph(List<TACInstruction> body, LivenessAnalysis liveness) {
+        nodes = liveness.getNames();
+        int n = nodes.size();
+        adjacency = new ArrayList<>(n);
+        alias = new int[n];
+        precolored = new boolean[n];
+        crossesCall = new boolean[n];
+        spillCost = new double[n];
+        color = new String[n];
+        for (int v = 0; v < n; v++) {
+            adjacency.add(new HashSet<>());
+            alias[v] = v;
+            if (ARGUMENT.contains(nodes.get(v))) {
+                precolored[v] = true;
+                color[v] = nodes.get(v);
+            }
+        }
+
+        int[] depth = loopDepth(liveness.getControlFlowGraph());
+        ArgumentAwareLiveness argLiveness = (ArgumentAwareLiveness) liveness;
+
+        for (int i = 0; i < body.size(); i++) {
+            TACInstruction ins = body.get(i);
+            double weight = Math.pow(10, Math.min(depth[i], 8));
+            BitSet out = liveness.getLiveOut(i);
+
+            Integer def = liveness.indexOf(liveness.getDefinition(i));
+            Integer source = liveness.indexOf(argLiveness.copySource(i));
+
+            if (def != null) {
+                spillCost[def] += weight;
+                for (int v = out.nextSetBit(0); v >= 0; v = out.nextSetBit(v + 1)) {
+                    if (v == def || (source != null && v == source)) continue;
+                    addEdge(def, v);
+                }
+                if (source != null && !source.equals(def)) moves.add(new double[]{def, source, weight});
+            }
+            for (String u : liveness.getUses(i)) {
+                Integer idx = liveness.indexOf(u);
+                if (idx != null) spillCost[idx] += weight;
+            }
+
+            // Els valors vius després d'una crida han de sobreviure-hi: només poden anar a $s
+            if ("call".equals(ins.getOp())) {
+                for (int v = out.nextSetBit(0); v >= 0; v = out.nextSetBit(v + 1)) {
+                    if (def == null || v != def) crossesCall[v] = true;
+                }
+            }
+        }
+
+        // Els valors vius a l'entrada (sense definició prèvia) conviuen entre ells
+        if (!body.isEmpty()) {
+            BitSet in = liveness.getLiveIn(0);
+            for (int u = in.nextSetBit(0); u >= 0; u = in.nextSetBit(u + 1)) {
+                for (int v = in.nextSetBit(u + 1); v >= 0; v = in.nextSetBit(v + 1)) {
+                    addEdge(u, v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Profunditat de bucle de cada instrucció, segons els bucles naturals del graf
+     */
+    private int[] loopDepth(ControlFlowGraph cfg) {
+        LoopInfo loops = new LoopInfo(cfg, new DominatorTree(cfg));
+        List<Integer> depth = new ArrayList<>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            int d = loops.getLoopDepth(block);
+            for (int i = 0; i < block.getInstructions().size(); i++) depth.add(d);
+        }
+        return depth.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void addEdge(int u, int v) {
+        if (u == v || (precolored[u] && precolored[v])) return;
+        adjacency.get(u).add(v);
+        adjacency.get(v).add(u);
+    }
+
+    private int find(int v) {
+        while (alias[v] != v) {
+            alias[v] = alias[alias[v]];
+            v = alias[v];
+        }
+        return v;
+    }
+
+    private int colorsFor(int v) {
+        return crossesCall[v] ? calleeSaved.size() : anyColor.size();
+    }
+
+    private boolean significant(int v) {
+        return precolored[v] || adjacency.get(v).size() >= colorsFor(v);
+    }
+
+    /**
+     * Fusiona còpies sense interferència amb els criteris conservadors de Briggs (dos temporals)
+     * i de George (temporal amb registre d'argument). Les còpies dels bucles més interns van primer.
+     */
+    private void coalesce() {
+        moves.sort((x, y) -> Double.compare(y[2], x[2]));
+        for (double[] move : moves) {
+            int a = find((int) move[0]);
+            int b = find((int) move[1]);
+            if (a == b || (precolored[a] && precolored[b])) continue;
+            if (precolored[b]) {
+                int t = a; a = b; b = t;
+            }
+            if (adjacency.get(a).contains(b)) continue;
+
+            if (precolored[a]) {
+                if (crossesCall[b] || !georgeTest(a, b)) continue;
+            } else if (!briggsTest(a, b)) {
+                continue;
+            }
+            merge(a, b);
+        }
+    }
+
+    private boolean georgeTest(int reg, int v) {
+        for (int t : adjacency.get(v)) {
+            if (precolored[t]) continue;
+            if (adjacency.get(t).size() >= colorsFor(t) && !adjacency.get(t).contains(reg)) return false;
+        }
+        return true;
+    }
+
+    private boolean briggsTest(int a, int b) {
+        int k = (crossesCall[a] || crossesCall[b]) ? calleeSaved.size() : anyColor.size();
+        Set<Integer> neighbours = new HashSet<>(adjacency.get(a));
+        neighbours.addAll(adjacency.get(b));
+        int high = 0;
+        for (int t : neighbours) {
+            if (significant(t) && ++high >= k) return false;
+        }
+        return true;
+    }
+
+    private void merge(int into, int from) {
+        alias[from] = into;
+        crossesCall[into] |= crossesCall[from];
+        spillCost[into] += spillCost[from];
+        for (int t : adjacency.get(from)) {
+            adjacency.get(t).remove(from);
+            addEdge(into, t);
+        }
+        adjacency.get(from).clear();
+    }
+
+    /**
+     * Treu del graf els nodes de grau baix; quan no n'hi ha, el de menor cost/grau
+     * s'hi afegeix igualment (coloració optimista de Briggs).
+     */
+    private List<Integer> simplify() {
+        int n = nodes.size();
+        int[] degree = new int[n];
+        boolean[] removed = new boolean[n];
+        Deque<Integer> low = new ArrayDeque<>();
+        Set<Integer> remaining = new LinkedHashSet<>();
+
+        for (int v = 0; v < n; v++) {
+            if (precolored[v] || find(v) != v) continue;
+            degree[v] = adjacency.get(v).size();
+            remaining.add(v);
+            if (degree[v] < colorsFor(v)) low.add(v);
+        }
+
+        List<Integer> stack = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            int v;
+            if (!low.isEmpty()) {
+                v = low.poll();
+                if (removed[v]) continue;
+            } else {
+                v = -1;
+                double best = Double.MAX_VALUE;
+                for (int candidate : remaining) {
+                    double ratio = spillCost[candidate] / Math.max(1, degree[candidate]);
+                    if (ratio < best) {
+                        best = ratio;
+                        v = candidate;
+                    }
+                }
+            }
+            removed[v] = true;
+            remaining.remove(v);
+            stack.add(v);
+            for (int t : adjacency.get(v)) {
+                if (precolored[t] || removed[t]) continue;
+                degree[t]--;
+                if (degree[t] == colorsFor(t) - 1) low.add(t);
+            }
+        }
+        return stack;
+    }
+
+    private void select(List<Integer> stack) {
+        Map<Integer,List<Integer>> partners = new HashMap<>();
+        for (double[] move : moves) {
+            int a = find((int) move[0]);
+            int b = find((int) move[1]);
+            if (a == b) continue;
+            partners.computeIfAbsent(a, k -> new ArrayList<>()).add(b);
+            partners.computeIfAbsent(b, k -> new ArrayList<>()).add(a);
+        }
+
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            int v = stack.get(i);
+            Set<String> forbidden = new HashSet<>();
+            for (int t : adjacency.get(v)) {
+                String c = color[find(t)];
+                if (c != null) forbidden.add(c);
+            }
+            List<String> allowed = crossesCall[v] ? calleeSaved : anyColor;
+
+            // Preferim el color d'un valor amb qui fa còpies, així la còpia desapareix
+            String chosen = null;
+            for (int p : partners.getOrDefault(v, List.of())) {
+                String c = color[find(p)];
+                if (c != null && allowed.contains(c) && !forbidden.contains(c)) {
+                    chosen = c;
+                    break;
+                }
+            }
+            if (chosen == null) {
+                for (String c : allowed) {
+                    if (!forbidden.contains(c)) {
+                        chosen = c;
+                        break;
+                    }
+                }
+            }
+            color[v] = chosen;
+        }
+    }
+
+    @Override
+    public List<String> getUsedCalleeSaved() {
+        List<String> used = new ArrayList<>();
+        for (String register : calleeSaved) {
+            if (assignment.containsValue(register)) used.add(register);
+        }
+        return used;
+    }
+
+    @Override
+    public Map<String,String> getAssignment() { return assignment; }
+}
@@ -0,0 +1,233 @@
+package BackEnd.RegisterAllocation;
+
+import FrontEnd.TAC.TACInstruction;
+
+import java.util.*;
+
+public class LinearScanAllocator implements RegisterAllocator {
+    /**
+     * Registres que el cridat pot trepitjar ($t8 i $t9 queden reservats com a registres de treball)
+     */
+    public static final List<String> CALLER_SAVED = List.of("$t0", "$t1", "$t2", "$t3", "$t4", "$t5", "$t6", "$t7");
+    /**
+     * Registres que el cridat ha de preservar
+     */
+    public static final List<String> CALLEE_SAVED = List.of("$s0", "$s1", "$s2", "$s3", "$s4", "$s5", "$s6", "$s7");
+
+    /**
+     * Registres que es poden assignar en aquesta funció, segons si el cridat els preserva o no
+     */
+    private final List<String> callerSaved;
+    private final List<String> calleeSaved;
+
+    /**
+     * Registre assignat a cada valor
+     */
+    private final Map<String,String> assignment = new LinkedHashMap<>();
+    /**
+     * Valors que s'han de guardar a la pila
+     */
+    private final Set<String> spilled = new LinkedHashSet<>();
+    /**
+     * Intervals de vida calculats a l'última assignació
+     */
+    private final List<LiveInterval> intervals = new ArrayList<>();
+
+    /**
+     * Constructor de la classe LinearScanAllocator
+     */
+    public LinearScanAllocator() {
+        this(false);
+    }
+
+    /**
+     * Constructor de la classe LinearScanAllocator
+     *
+     * @param framePointerFree Cert si la funció no fa servir $fp i aquest es pot assignar com un registre $s més
+     */
+    public LinearScanAllocator(boolean framePointerFree) {
+        this(CALLER_SAVED, withFramePointer(framePointerFree));
+    }
+
+    /**
+     * Constructor de la classe LinearScanAllocator per a un altre banc de registres
+     *
+     * @param callerSaved Registres que el cridat pot trepitjar
+     * @param calleeSaved Registres que el cridat ha de preservar
+     */
+    protected LinearScanAllocator(List<String> callerSaved, List<String> calleeSaved) {
+        this.callerSaved = callerSaved;
+        this.calleeSaved = calleeSaved;
+    }
+
+    /**
+     * Registres $s, més $fp si la funció adreça el frame des de $sp
+     */
+    static List<String> withFramePointer(boolean framePointerFree) {
+        if (!framePointerFree) return CALLEE_SAVED;
+        List<String> registers = new ArrayList<>(CALLEE_SAVED);
+        registers.add("$fp");
+        return registers;
+    }
+
+    /**
+     * Assigna registres als valors candidats del cos d'una funció
+     *
+     * @param body       Cos TAC de la funció
+     * @param candidates Valors enters que poden viure en un registre
+     */
+    @Override
+    public void allocate(List<TACInstruction> body, Set<String> candidates) {
+        assignment.clear();
+        spilled.clear();
+        intervals.clear();
+
+        LivenessAnalysis liveness = new LivenessAnalysis(body, candidates);
+        liveness.analyze();
+        buildIntervals(body, liveness);
+
+        List<LiveInterval> sorted = new ArrayList<>(intervals);
+        sorted.sort(Comparator.comparingInt(LiveInterval::getStart));
+
+        // Intervals actius ordenats per posició final
+        List<LiveInterval> active = new ArrayList<>();
+        Set<String> busy = new HashSet<>();
+
+        for (LiveInterval current : sorted) {
+            // 1) Alliberem els registres dels intervals que ja han acabat
+            Iterator<LiveInterval> it = active.iterator();
+            while (it.hasNext()) {
+                LiveInterval old = it.next();
+                if (old.getEnd() >= current.getStart()) break;
+                busy.remove(old.getRegister());
+                it.remove();
+            }
+
+            // 2) Si el valor sobreviu a una crida només pot anar a un registre $s
+            String register = current.crossesCall() ? null : firstFree(callerSaved, busy);
+            if (register == null) register = firstFree(calleeSaved, busy);
+
+            if (register != null) {
+                current.setRegister(register);
+                busy.add(register);
+                insertByEnd(active, current);
+            } else {
+                spillAtInterval(current, active);
+            }
+        }
+
+        for (LiveInterval interval : intervals) {
+            if (interval.getRegister() != null) {
+                assignment.put(interval.getName(), interval.getRegister());
+            } else {
+                spilled.add(interval.getName());
+            }
+        }
+    }
+
+    /**
+     * Construeix els intervals de vida. La instrucció i llegeix a la posició 2i i escriu a la 2i+1,
+     * de manera que un operand que mor i el resultat de la mateixa instrucció poden compartir registre.
+     */
+    private void buildIntervals(List<TACInstruction> body, LivenessAnalysis liveness) {
+        Map<String,LiveInterval> byName = new LinkedHashMap<>();
+        List<String> names = liveness.getNames();
+        List<Integer> calls = new ArrayList<>();
+
+        for (int i = 0; i < body.size(); i++) {
+            TACInstruction ins = body.get(i);
+            if ("call".equals(ins.getOp())) calls.add(i);
+
+            BitSet in = liveness.getLiveIn(i);
+            for (int v = in.nextSetBit(0); v >= 0; v = in.nextSetBit(v + 1)) {
+                cover(byName, names.get(v), 2 * i);
+            }
+            BitSet out = liveness.getLiveOut(i);
+            for (int v = out.nextSetBit(0); v >= 0; v = out.nextSetBit(v + 1)) {
+                cover(byName, names.get(v), 2 * i + 1);
+            }
+            Integer def = liveness.indexOf(liveness.getDefinition(i));
+            if (def != null) cover(byName, names.get(def), 2 * i + 1);
+        }
+
+        for (LiveInterval interval : byName.values()) {
+            interval.setCrossesCall(spansCall(interval, calls));
+            intervals.add(interval);
+        }
+    }
+
+    private void cover(Map<String,LiveInterval> byName, String name, int position) {
+        LiveInterval interval = byName.get(name);
+        if (interval == null) {
+            byName.put(name, new LiveInterval(name, position));
+        } else {
+            interval.extend(position);
+        }
+    }
+
+    /**
+     * Un interval travessa una crida si és viu just abans i just després d'alguna instrucció call
+     */
+    private boolean spansCall(LiveInterval interval, List<Integer> calls) {
+        int lo = 0, hi = calls.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (2 * calls.get(mid) < interval.getStart()) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo < calls.size() && 2 * calls.get(lo) + 1 <= interval.getEnd();
+    }
+
+    /**
+     * Sense registres lliures, el valor que acaba més tard va a la pila
+     */
+    private void spillAtInterval(LiveInterval current, List<LiveInterval> active) {
+        LiveInterval victim = null;
+        for (LiveInterval candidate : active) {
+            if (current.crossesCall() && !calleeSaved.contains(candidate.getRegister())) continue;
+            if (victim == null || candidate.getEnd() > victim.getEnd()) victim = candidate;
+        }
+
+        if (victim != null && victim.getEnd() > current.getEnd()) {
+            current.setRegister(victim.getRegister());
+            victim.setRegister(null);
+            active.remove(victim);
+            insertByEnd(active, current);
+        }
+    }
+
+    private void insertByEnd(List<LiveInterval> active, LiveInterval interval) {
+        int pos = 0;
+        while (pos < active.size() && active.get(pos).getEnd() <= interval.getEnd()) pos++;
+        active.add(pos, interval);
+    }
+
+    private String firstFree(List<String> registers, Set<String> busy) {
+        for (String register : registers) {
+            if (!busy.contains(register)) return register;
+        }
+        return null;
+    }
+
+    /**
+     * Retorna els registres preservats ($s i potser $fp, o $f20-$f31) que s'han fet servir i que el pròleg ha de desar
+     *
+     * @return Registres preservats pel cridat, en ordre
+     */
+    @Override
+    public List<String> getUsedCalleeSaved() {
+        List<String> used = new ArrayList<>();
+        for (String register : calleeSaved) {
+            if (assignment.containsValue(register)) used.add(register);
+        }
+        return used;
+    }
+
+    /**
+     * Getters
+     */
+    @Override
+    public Map<String,String> getAssignment() { return assignment; }
+    public Set<String> getSpilled()           { return spilled;    }
+    public List<LiveInterval> getIntervals()  { return intervals;  }
+}
@@ -0,0 +1,65 @@
+package BackEnd.RegisterAllocation;
+
+public class LiveInterval {
+    /**
+     * Nom del valor TAC (variable o temporal)
+     */
+    private final String name;
+    /**
+     * Primera i última posició on el valor és viu
+     */
+    private int start, end;
+    /**
+     * Indica si el valor continua viu després d'una crida
+     */
+    private boolean crossesCall;
+    /**
+     * Registre assignat (null si el valor s'ha de guardar a la pila)
+     */
+    private String register;
+
+    /**
+     * Constructor de la classe LiveInterval
+     *
+     * @param name  Nom del valor
+     * @param start Posició inicial
+     */
+    public LiveInterval(String name, int start) {
+        this.name = name;
+        this.start = start;
+        this.end = start;
+    }
+
+    /**
+     * Amplia l'interval perquè inclogui la posició indicada
+     *
+     * @param position Posició a incloure
+     */
+    public void extend(int position) {
+        if (position < start) start = position;
+        if (position > end) end = position;
+    }
+
+    public void setCrossesCall(boolean crossesCall) {
+        this.crossesCall = crossesCall;
+    }
+
+    public void setRegister(String register) {
+        this.register = register;
+    }
+
+    /**
+     * Getters
+     */
+    public String getName()       { return name;        }
+    public int getStart()         { return start;       }
+    public int getEnd()           { return end;         }
+    public boolean crossesCall()  { return crossesCall; }
+    public String getRegister()   { return register;    }
+
+    @Override
+    public String toString() {
+        return name + " [" + start + ", " + end + "]" + (crossesCall ? " (call)" : "")
+                + (register != null ? " -> " + register : " -> spill");
+    }
+}
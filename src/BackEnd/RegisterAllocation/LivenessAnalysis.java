@@ -0,0 +1,160 @@
+package BackEnd.RegisterAllocation;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.*;
+
+public class LivenessAnalysis {
+    /**
+     * Cos TAC de la funció analitzada
+     */
+    private final List<TACInstruction> body;
+    /**
+     * Noms que interessen a l'anàlisi i el seu índex dins dels BitSet
+     */
+    private final List<String> names = new ArrayList<>();
+    private final Map<String,Integer> index = new HashMap<>();
+    /**
+     * Graf de flux de control del cos
+     */
+    private ControlFlowGraph cfg;
+    /**
+     * Valors vius a l'entrada i a la sortida de cada instrucció
+     */
+    private BitSet[] liveIn, liveOut;
+
+    /**
+     * Constructor de la classe LivenessAnalysis
+     *
+     * @param body       Cos TAC d'una funció
+     * @param candidates Noms dels valors dels quals volem saber la vida
+     */
+    public LivenessAnalysis(List<TACInstruction> body, Collection<String> candidates) {
+        this.body = body;
+        for (String name : candidates) {
+            if (!index.containsKey(name)) {
+                index.put(name, names.size());
+                names.add(name);
+            }
+        }
+    }
+
+    /**
+     * Calcula els valors vius a cada instrucció: primer un flux de dades cap enrere sobre els blocs
+     * bàsics i després un recorregut invers dins de cada bloc
+     */
+    public void analyze() {
+        int n = body.size();
+        String functionName = n > 0 && "label".equals(body.get(0).getOp()) ? body.get(0).getResult() : "";
+        cfg = new ControlFlowGraph(functionName, body);
+        List<BasicBlock> blocks = cfg.getBlocks();
+        int blockCount = blocks.size();
+
+        // Posició de la primera instrucció de cada bloc i blocs per identificador
+        int[] first = new int[blockCount];
+        Map<BasicBlock,Integer> order = new HashMap<>();
+        for (int b = 0, pos = 0; b < blockCount; b++) {
+            first[b] = pos;
+            pos += blocks.get(b).getInstructions().size();
+            order.put(blocks.get(b), b);
+        }
+
+        // 1) Usos exposats i definicions de cada bloc
+        BitSet[] use = new BitSet[blockCount];
+        BitSet[] def = new BitSet[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            use[b] = new BitSet();
+            def[b] = new BitSet();
+            int size = blocks.get(b).getInstructions().size();
+            for (int i = first[b]; i < first[b] + size; i++) {
+                for (String u : getUses(i)) {
+                    Integer idx = index.get(u);
+                    if (idx != null && !def[b].get(idx)) use[b].set(idx);
+                }
+                Integer d = indexOf(getDefinition(i));
+                if (d != null) def[b].set(d);
+            }
+        }
+
+        // 2) Punt fix sobre els blocs, en ordre invers (tantes passades com profunditat de bucles)
+        BitSet[] blockIn = new BitSet[blockCount];
+        BitSet[] blockOut = new BitSet[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            blockIn[b] = new BitSet();
+            blockOut[b] = new BitSet();
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = blockCount - 1; b >= 0; b--) {
+                BitSet out = new BitSet();
+                for (BasicBlock succ : blocks.get(b).getSuccessors()) out.or(blockIn[order.get(succ)]);
+
+                BitSet in = (BitSet) out.clone();
+                in.andNot(def[b]);
+                in.or(use[b]);
+
+                if (!in.equals(blockIn[b])) changed = true;
+                blockIn[b] = in;
+                blockOut[b] = out;
+            }
+        }
+
+        // 3) Vida a cada instrucció, recorrent cada bloc cap enrere
+        liveIn = new BitSet[n];
+        liveOut = new BitSet[n];
+        for (int b = 0; b < blockCount; b++) {
+            BitSet live = (BitSet) blockOut[b].clone();
+            for (int i = first[b] + blocks.get(b).getInstructions().size() - 1; i >= first[b]; i--) {
+                liveOut[i] = (BitSet) live.clone();
+                Integer d = indexOf(getDefinition(i));
+                if (d != null) live.clear(d);
+                for (String u : getUses(i)) {
+                    Integer idx = index.get(u);
+                    if (idx != null) live.set(idx);
+                }
+                liveIn[i] = (BitSet) live.clone();
+            }
+        }
+    }
+
+    /**
+     * Operands que llegeix la instrucció d'una posició. Les subclasses poden afegir-hi registres físics.
+     *
+     * @param position Posició de la instrucció
+     * @return Noms llegits
+     */
+    public List<String> getUses(int position) {
+        return body.get(position).getUses();
+    }
+
+    /**
+     * Nom que defineix la instrucció d'una posició
+     *
+     * @param position Posició de la instrucció
+     * @return Nom definit o null
+     */
+    public String getDefinition(int position) {
+        return body.get(position).getDefinedName();
+    }
+
+    /**
+     * Retorna l'índex d'un nom dins dels BitSet
+     *
+     * @param name Nom a buscar
+     * @return Índex o null si el nom no és un candidat
+     */
+    public Integer indexOf(String name) {
+        return name == null ? null : index.get(name);
+    }
+
+    /**
+     * Getters
+     */
+    public List<String> getNames()        { return names;      }
+    public BitSet getLiveIn(int position)  { return liveIn[position];  }
+    public BitSet getLiveOut(int position) { return liveOut[position]; }
+    public ControlFlowGraph getControlFlowGraph() { return cfg; }
+}
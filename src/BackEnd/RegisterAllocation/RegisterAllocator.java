@@ -0,0 +1,31 @@
+package BackEnd.RegisterAllocation;
+
+import FrontEnd.TAC.TACInstruction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface RegisterAllocator {
+    /**
+     * Assigna registres als valors candidats del cos d'una funció
+     *
+     * @param body       Cos TAC de la funció
+     * @param candidates Valors enters que poden viure en un registre
+     */
+    void allocate(List<TACInstruction> body, Set<String> candidates);
+
+    /**
+     * Retorna el registre assignat a cada valor. Els candidats absents del mapa van a la pila.
+     *
+     * @return Mapa nom -> registre
+     */
+    Map<String,String> getAssignment();
+
+    /**
+     * Retorna els registres $s que s'han fet servir i que el pròleg ha de desar
+     *
+     * @return Registres preservats pel cridat, en ordre
+     */
+    List<String> getUsedCalleeSaved();
+}
@@ -0,0 +1,93 @@
+package BackEnd.RegisterAllocation;
+
+import FrontEnd.TAC.TACInstruction;
+
+import java.util.*;
+
+public class StackSlotAllocator {
+    /**
+     * Bytes d'un slot de paraula (enters i reals)
+     */
+    public static final int WORD = 4;
+
+    /**
+     * Distància en bytes de cada valor respecte del capdamunt de la zona de slots
+     */
+    private final Map<String,Integer> distance = new LinkedHashMap<>();
+    /**
+     * Bytes que ocupa la zona de slots, sense arrodonir
+     */
+    private int size;
+
+    /**
+     * Assigna slots de la pila als valors que no han tingut registre, coloreant el graf d'interferència:
+     * dos valors que no són mai vius alhora comparteixen slot. Els valors de 4 bytes van en slots de paraula
+     * alineats i els d'un byte s'empaqueten darrere seu. Un valor que ja és viu a l'entrada de la funció (es
+     * llegeix abans d'escriure'l) es queda un slot propi.
+     *
+     * @param body   Cos TAC de la funció
+     * @param widths Valors que van a la pila i bytes que ocupen (1 o 4), en ordre d'aparició
+     */
+    public void allocate(List<TACInstruction> body, Map<String,Integer> widths) {
+        distance.clear();
+        LivenessAnalysis liveness = new LivenessAnalysis(body, widths.keySet());
+        liveness.analyze();
+        List<String> names = liveness.getNames();
+
+        // Una definició interfereix amb tot el que és viu just després, encara que el valor definit sigui mort
+        List<BitSet> interference = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) interference.add(new BitSet());
+        for (int i = 0; i < body.size(); i++) {
+            Integer d = liveness.indexOf(liveness.getDefinition(i));
+            BitSet out = liveness.getLiveOut(i);
+            if (d == null || out == null) continue;
+            for (int j = out.nextSetBit(0); j >= 0; j = out.nextSetBit(j + 1)) {
+                if (j == d) continue;
+                interference.get(d).set(j);
+                interference.get(j).set(d);
+            }
+        }
+        BitSet liveAtEntry = body.isEmpty() || liveness.getLiveIn(0) == null ? new BitSet() : liveness.getLiveIn(0);
+
+        // Slots de cada mida: valors que hi viuen i si són d'ús exclusiu
+        Map<Integer,List<BitSet>> slots = new TreeMap<>(Comparator.reverseOrder());
+        Map<Integer,List<Boolean>> exclusive = new HashMap<>();
+        int[] slotOf = new int[names.size()];
+        for (int k = 0; k < names.size(); k++) {
+            int width = widths.get(names.get(k));
+            List<BitSet> sameWidth = slots.computeIfAbsent(width, w -> new ArrayList<>());
+            List<Boolean> pinned = exclusive.computeIfAbsent(width, w -> new ArrayList<>());
+            int chosen = -1;
+            if (!liveAtEntry.get(k)) {
+                for (int s = 0; s < sameWidth.size() && chosen < 0; s++) {
+                    if (!pinned.get(s) && !sameWidth.get(s).intersects(interference.get(k))) chosen = s;
+                }
+            }
+            if (chosen < 0) {
+                chosen = sameWidth.size();
+                sameWidth.add(new BitSet());
+                pinned.add(liveAtEntry.get(k));
+            }
+            sameWidth.get(chosen).set(k);
+            slotOf[k] = chosen;
+        }
+
+        // Primer les paraules, alineades, i després els bytes
+        Map<Integer,Integer> base = new HashMap<>();
+        size = 0;
+        for (Map.Entry<Integer,List<BitSet>> entry : slots.entrySet()) {
+            base.put(entry.getKey(), size);
+            size += entry.getKey() * entry.getValue().size();
+        }
+        for (int k = 0; k < names.size(); k++) {
+            int width = widths.get(names.get(k));
+            distance.put(names.get(k), base.get(width) + width * (slotOf[k] + 1));
+        }
+    }
+
+    /**
+     * Getters
+     */
+    public Map<String,Integer> getDistances() { return distance; }
+    public int getSize()                      { return size;     }
+}
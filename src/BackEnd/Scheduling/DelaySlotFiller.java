@@ -0,0 +1,88 @@
+package BackEnd.Scheduling;
+
+import BackEnd.Peephole.MIPSInstruction;
+
+import java.util.*;
+
+public class DelaySlotFiller {
+    /**
+     * Registres que la funció cridada espera trobar intactes: una instrucció al forat d'un jal no els pot
+     * modificar perquè s'executa quan la crida ja ha començat
+     */
+    private static final Set<String> PRESERVED = new HashSet<>(List.of("$sp", "$fp", "$ra", "$s0", "$s1", "$s2",
+            "$s3", "$s4", "$s5", "$s6", "$s7"));
+    static {
+        for (int i = 20; i < 32; i++) PRESERVED.add("$f" + i);
+    }
+
+    private final boolean noReorder;
+
+    /**
+     * Constructor de la classe DelaySlotFiller
+     *
+     * @param noReorder Cert si l'assemblador no omple els forats dels salts (.set noreorder) i cal que cada
+     *                  salt vagi seguit de la instrucció que ocupa el seu forat
+     */
+    public DelaySlotFiller(boolean noReorder) {
+        this.noReorder = noReorder;
+    }
+
+    /**
+     * Treu els nop que segueixen els salts. En mode noreorder, després de cada salt hi posa l'última
+     * instrucció del bloc que n'és independent (o un nop si no n'hi ha cap).
+     *
+     * @param code Instruccions d'una funció, que es modifiquen
+     */
+    public void fill(List<MIPSInstruction> code) {
+        for (int i = 0; i < code.size(); i++) {
+            if (!hasDelaySlot(code.get(i))) continue;
+            if (i + 1 < code.size() && "nop".equals(code.get(i + 1).getOpcode())) code.remove(i + 1);
+            if (!noReorder) continue;
+
+            int candidate = findCandidate(code, i);
+            if (candidate >= 0) {
+                // En treure la instrucció el salt passa a i - 1 i el forat és i
+                code.add(i, code.remove(candidate));
+            } else {
+                code.add(i + 1, new MIPSInstruction("nop"));
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Indica si moure la instrucció k al forat del salt deixaria un lw just abans de l'ús del seu valor,
+     * que és el que el planificador ha intentat evitar
+     */
+    private static boolean createsStall(List<MIPSInstruction> code, int k) {
+        MIPSInstruction before = k > 0 ? code.get(k - 1) : null;
+        return before != null && before.isLoad() && !Collections.disjoint(before.getDefs(), code.get(k + 1).getUses());
+    }
+
+    private static boolean hasDelaySlot(MIPSInstruction ins) {
+        return ins.isBranch() || ins.isJump() || ins.isCall() || ins.isReturn();
+    }
+
+    /**
+     * Busca cap enrere, dins del bloc, una instrucció que es pugui executar després del salt: que el salt
+     * no en depengui i que no en depengui cap de les que té al darrere
+     */
+    private static int findCandidate(List<MIPSInstruction> code, int jump) {
+        MIPSInstruction transfer = code.get(jump);
+        for (int k = jump - 1; k >= 0; k--) {
+            MIPSInstruction ins = code.get(k);
+            if (!ins.isInstruction() || hasDelaySlot(ins) || "syscall".equals(ins.getOpcode())) return -1;
+            // La instrucció ja ocupa el forat d'un salt anterior
+            if (k > 0 && hasDelaySlot(code.get(k - 1))) return -1;
+            if ("nop".equals(ins.getOpcode())) continue;
+
+            boolean movable = ListScheduler.dependence(ins, transfer) == 0;
+            if (transfer.isCall() && !Collections.disjoint(ins.getDefs(), PRESERVED)) movable = false;
+            for (int j = k + 1; j < jump && movable; j++) {
+                if (ListScheduler.dependence(ins, code.get(j)) > 0) movable = false;
+            }
+            if (movable && !createsStall(code, k)) return k;
+        }
+        return -1;
+    }
+}
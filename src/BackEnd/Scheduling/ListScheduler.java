@@ -0,0 +1,140 @@
+package BackEnd.Scheduling;
+
+import BackEnd.Peephole.MIPSInstruction;
+
+import java.util.*;
+
+public class ListScheduler {
+    /**
+     * Cicles entre un lw i la primera instrucció que pot fer servir el valor sense aturar el pipeline
+     */
+    private static final int LOAD_LATENCY = 2;
+
+    /**
+     * Reordena les instruccions de cada bloc bàsic respectant les dependències de dades, de manera que
+     * entre un lw i l'ús del valor carregat hi hagi una altra instrucció sempre que sigui possible. Les
+     * etiquetes, les línies que no són instruccions, les crides i el salt final de cada bloc es queden
+     * al seu lloc.
+     *
+     * @param code Instruccions d'una funció, que es modifiquen
+     */
+    public void schedule(List<MIPSInstruction> code) {
+        int start = 0;
+        for (int i = 0; i <= code.size(); i++) {
+            boolean barrier = i == code.size() || !code.get(i).isInstruction() || code.get(i).isCall()
+                    || "syscall".equals(code.get(i).getOpcode());
+            if (barrier) {
+                scheduleRegion(code, start, i);
+                start = i + 1;
+            } else if (code.get(i).endsBlock()) {
+                // El salt es queda l'últim, però les instruccions d'abans poden passar-li per davant
+                scheduleRegion(code, start, i + 1);
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Planificació per llista d'un tros d'instruccions consecutives [from, to). Cada cicle s'emet, d'entre
+     * les instruccions que ja tenen els operands disponibles, la que té el camí més llarg fins al final; si
+     * no n'hi ha cap, la que abans els tindrà.
+     */
+    private void scheduleRegion(List<MIPSInstruction> code, int from, int to) {
+        int n = to - from;
+        if (n < 3) return;
+        List<MIPSInstruction> region = new ArrayList<>(code.subList(from, to));
+        boolean pinnedLast = region.get(n - 1).endsBlock();
+
+        // Graf de dependències: latència mínima entre i i j (0 = independents)
+        int[][] latency = new int[n][n];
+        for (int j = 0; j < n; j++) {
+            for (int i = 0; i < j; i++) {
+                latency[i][j] = dependence(region.get(i), region.get(j));
+                if (pinnedLast && j == n - 1) latency[i][j] = Math.max(latency[i][j], 1);
+            }
+        }
+
+        int[] priority = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = i + 1; j < n; j++) {
+                if (latency[i][j] > 0) priority[i] = Math.max(priority[i], latency[i][j] + priority[j]);
+            }
+        }
+
+        int[] earliest = new int[n];
+        boolean[] done = new boolean[n];
+        List<MIPSInstruction> scheduled = new ArrayList<>();
+        int cycle = 0;
+        for (int step = 0; step < n; step++) {
+            int best = -1;
+            for (int j = 0; j < n; j++) {
+                if (done[j] || !predecessorsDone(latency, done, j) || pinnedLast && j == n - 1 && step < n - 1) continue;
+                if (best < 0 || better(j, best, earliest, priority, cycle)) best = j;
+            }
+            done[best] = true;
+            scheduled.add(region.get(best));
+            cycle = Math.max(cycle, earliest[best]) + 1;
+            for (int j = 0; j < n; j++) {
+                if (latency[best][j] > 0) earliest[j] = Math.max(earliest[j], cycle - 1 + latency[best][j]);
+            }
+        }
+
+        for (int k = 0; k < n; k++) code.set(from + k, scheduled.get(k));
+    }
+
+    private static boolean better(int candidate, int best, int[] earliest, int[] priority, int cycle) {
+        boolean candidateReady = earliest[candidate] <= cycle;
+        boolean bestReady = earliest[best] <= cycle;
+        if (candidateReady != bestReady) return candidateReady;
+        if (!candidateReady && earliest[candidate] != earliest[best]) return earliest[candidate] < earliest[best];
+        if (priority[candidate] != priority[best]) return priority[candidate] > priority[best];
+        return candidate < best;
+    }
+
+    private static boolean predecessorsDone(int[][] latency, boolean[] done, int j) {
+        for (int i = 0; i < j; i++) {
+            if (latency[i][j] > 0 && !done[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Latència que ha d'haver-hi entre dues instruccions, la primera abans en el codi original: la del
+     * lw si la segona llegeix el valor carregat, 1 si només cal mantenir l'ordre (registre reescrit o
+     * llegit abans de ser reescrit, accessos a memòria que poden coincidir) i 0 si són independents
+     */
+    static int dependence(MIPSInstruction first, MIPSInstruction second) {
+        Set<String> firstDefs = first.getDefs();
+        Set<String> secondDefs = second.getDefs();
+        if (!Collections.disjoint(firstDefs, second.getUses())) return first.isLoad() ? LOAD_LATENCY : 1;
+        if (!Collections.disjoint(first.getUses(), secondDefs) || !Collections.disjoint(firstDefs, secondDefs)) return 1;
+        if ((first.isStore() && (second.isLoad() || second.isStore()) || first.isLoad() && second.isStore())
+                && mayAlias(first, second)) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Dos accessos amb el mateix registre base només es poden solapar si els seus rangs de bytes es
+     * toquen; amb bases diferents o adreces amb etiqueta es considera que sí
+     */
+    private static boolean mayAlias(MIPSInstruction first, MIPSInstruction second) {
+        String a = first.getOperand(1);
+        String b = second.getOperand(1);
+        String baseA = MIPSInstruction.baseRegister(a);
+        String baseB = MIPSInstruction.baseRegister(b);
+        if (baseA == null || !baseA.equals(baseB)) return true;
+        String offsetA = a.substring(0, a.indexOf('('));
+        String offsetB = b.substring(0, b.indexOf('('));
+        if (!offsetA.matches("-?\\d*") || !offsetB.matches("-?\\d*")) return true;
+        int startA = offsetA.isEmpty() ? 0 : Integer.parseInt(offsetA);
+        int startB = offsetB.isEmpty() ? 0 : Integer.parseInt(offsetB);
+        return startA < startB + width(second) && startB < startA + width(first);
+    }
+
+    private static int width(MIPSInstruction access) {
+        String opcode = access.getOpcode();
+        return opcode.endsWith("b") || opcode.endsWith("bu") ? 1 : 4;
+    }
+}
@@ -0,0 +1,47 @@
+package BackEnd.Selection;
+
+import java.util.List;
+
+final class Emission {
+    private final InstructionSelector selector;
+    private final String dst;
+    /**
+     * Registres dels operands REG i valor decimal dels operands constants, en l'ordre del patró
+     */
+    private final List<String> kids;
+    private final String label;
+
+    /**
+     * Constructor de la classe Emission
+     *
+     * @param selector Selector que emet el codi i reparteix els registres de treball
+     * @param dst      Registre on va el resultat (null als salts)
+     * @param kids     Operands lligats pel patró
+     * @param label    Destí del salt (null si no n'és)
+     */
+    Emission(InstructionSelector selector, String dst, List<String> kids, String label) {
+        this.selector = selector;
+        this.dst = dst;
+        this.kids = kids;
+        this.label = label;
+    }
+
+    void emit(String opcode, String... operands) {
+        selector.emit(opcode, operands);
+    }
+
+    /**
+     * Registre de treball per als valors intermedis de la regla
+     */
+    String scratch() {
+        return selector.allocate();
+    }
+
+    /**
+     * Getters
+     */
+    String dst()                 { return dst;                               }
+    String kid(int index)        { return kids.get(index);                   }
+    int constant(int index)      { return Integer.parseInt(kids.get(index)); }
+    String label()               { return label;                             }
+}
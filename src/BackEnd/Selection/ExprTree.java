@@ -0,0 +1,115 @@
+package BackEnd.Selection;
+
+import FrontEnd.TAC.TACInstruction;
+
+import java.util.*;
+
+public class ExprTree {
+    static final int INFINITE = Integer.MAX_VALUE / 2;
+
+    /**
+     * Operació (nom canònic de l'operació TAC), o null si és una fulla
+     */
+    private final String op;
+    /**
+     * Variable o literal d'una fulla
+     */
+    private final String operand;
+    private final List<ExprTree> children;
+    /**
+     * Instruccions TAC que cobreix el node, en l'ordre original
+     */
+    private final List<TACInstruction> instructions = new ArrayList<>();
+    /**
+     * Nom on es desa el valor de l'arrel (null als nodes interiors i als salts)
+     */
+    private String result;
+
+    /**
+     * Cost mínim de derivar el node en cada no terminal i regla que l'aconsegueix (null a les fulles)
+     */
+    private final int[] cost = new int[NonTerminal.values().length];
+    private final Rule[] rule = new Rule[NonTerminal.values().length];
+
+    private ExprTree(String op, String operand, List<ExprTree> children) {
+        this.op = op;
+        this.operand = operand;
+        this.children = children;
+        Arrays.fill(cost, INFINITE);
+    }
+
+    /**
+     * Constructor d'una fulla
+     *
+     * @param operand Variable o literal
+     */
+    public static ExprTree leaf(String operand) {
+        return new ExprTree(null, operand, List.of());
+    }
+
+    /**
+     * Constructor d'un node interior
+     *
+     * @param op          Nom canònic de l'operació
+     * @param children    Operands, en l'ordre de la instrucció TAC
+     * @param instruction Instrucció TAC que calcula el node
+     */
+    public static ExprTree node(String op, List<ExprTree> children, TACInstruction instruction) {
+        ExprTree tree = new ExprTree(op, null, children);
+        for (ExprTree child : children) tree.instructions.addAll(child.instructions);
+        tree.instructions.add(instruction);
+        tree.result = instruction.getDefinedName();
+        return tree;
+    }
+
+    /**
+     * Valor de la fulla si és un literal enter o caràcter, o null
+     */
+    public Integer constant() {
+        if (operand == null) return null;
+        if (operand.matches("^-?\\d{1,10}$")) {
+            long value = Long.parseLong(operand);
+            return value == (int) value ? (int) value : null;
+        }
+        if (operand.matches("^'.'$")) return (int) operand.charAt(1);
+        return null;
+    }
+
+    /**
+     * Fulles del subarbre: els noms que es llegeixen en avaluar-lo
+     */
+    public Set<String> leaves() {
+        Set<String> leaves = new HashSet<>();
+        if (isLeaf()) leaves.add(operand);
+        for (ExprTree child : children) leaves.addAll(child.leaves());
+        return leaves;
+    }
+
+    /**
+     * Fa que l'arrel es desi directament al destí d'una còpia que la llegeix
+     *
+     * @param copy Instrucció "=" que copiava el valor de l'arrel
+     */
+    public void assignTo(TACInstruction copy) {
+        instructions.add(copy);
+        result = copy.getResult();
+    }
+
+    void label(NonTerminal nt, int cost, Rule rule) {
+        if (cost >= this.cost[nt.ordinal()]) return;
+        this.cost[nt.ordinal()] = cost;
+        this.rule[nt.ordinal()] = rule;
+    }
+
+    /**
+     * Getters
+     */
+    public boolean isLeaf()                        { return op == null;              }
+    public String getOp()                          { return op;                      }
+    public String getOperand()                     { return operand;                 }
+    public List<ExprTree> getChildren()            { return children;                }
+    public List<TACInstruction> getInstructions()  { return instructions;            }
+    public String getResult()                      { return result;                  }
+    int getCost(NonTerminal nt)                    { return cost[nt.ordinal()];      }
+    Rule getRule(NonTerminal nt)                   { return rule[nt.ordinal()];      }
+}
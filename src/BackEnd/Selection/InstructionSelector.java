@@ -0,0 +1,190 @@
+package BackEnd.Selection;
+
+import FrontEnd.TAC.TACInstruction;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+import static BackEnd.Selection.NonTerminal.*;
+
+public class InstructionSelector {
+    /**
+     * Registres de treball per als valors intermedis dels arbres: $t8 i $t9, que el generador ja reserva
+     * per a això, i $v1, que no fa servir ningú més
+     */
+    public static final List<String> SCRATCH = List.of("$t8", "$t9", "$v1");
+
+    /**
+     * Operacions que sap cobrir alguna regla
+     */
+    private static final Set<String> COVERED = new HashSet<>();
+    static {
+        for (Rule rule : Rule.RULES) COVERED.add(rule.getOp());
+    }
+
+    /**
+     * Accés als valors de la funció que es genera
+     */
+    public interface Operands {
+        /**
+         * Registre on viu un valor, o null si és a la pila
+         */
+        String registerOf(String name);
+
+        /**
+         * Emet la càrrega d'una variable o literal enter al registre indicat
+         */
+        void load(String operand, String register);
+
+        /**
+         * Emet l'escriptura d'un registre a la variable (a la pila) que li correspon
+         */
+        void store(String name, String register);
+    }
+
+    private final PrintWriter out;
+    private final Operands operands;
+    private final Deque<String> free = new ArrayDeque<>();
+    private String branchTarget;
+
+    /**
+     * Constructor de la classe InstructionSelector
+     *
+     * @param out      Sortida on s'escriu el codi
+     * @param operands Accés als registres i a la pila de la funció
+     */
+    public InstructionSelector(PrintWriter out, Operands operands) {
+        this.out = out;
+        this.operands = operands;
+    }
+
+    /**
+     * Indica si l'operació canònica d'una instrucció TAC es pot cobrir amb les regles del selector
+     */
+    public static boolean covers(String op) {
+        return COVERED.contains(op);
+    }
+
+    /**
+     * Cobreix l'arbre amb les regles de cost mínim (etiquetatge de baix a dalt) i emet el codi de les
+     * regles triades. Els operands s'avaluen primer el que necessita més registres (Sethi-Ullman).
+     *
+     * @param tree Arbre d'una instrucció que desa un valor o d'un ifFalse
+     */
+    public void select(ExprTree tree) {
+        label(tree);
+        free.clear();
+        free.addAll(SCRATCH);
+        if ("ifFalse".equals(tree.getOp())) {
+            List<TACInstruction> covered = tree.getInstructions();
+            branchTarget = covered.get(covered.size() - 1).getResult();
+            reduce(tree, STMT, null);
+            return;
+        }
+        String target = operands.registerOf(tree.getResult());
+        String value = reduce(tree, REG, target);
+        if (target == null) operands.store(tree.getResult(), value);
+    }
+
+    private void label(ExprTree tree) {
+        for (ExprTree child : tree.getChildren()) label(child);
+        if (tree.isLeaf()) {
+            labelLeaf(tree);
+            return;
+        }
+        for (Rule rule : Rule.RULES) {
+            if (rule.getOp().equals(tree.getOp())) {
+                tree.label(rule.getLhs(), rule.match(tree, new ArrayList<>(), new ArrayList<>()), rule);
+            }
+        }
+    }
+
+    /**
+     * Una variable és un REG, gratuït si ja és en un registre. Una constant deriva els no terminals
+     * d'immediat en què cap i REG amb el cost del li (dues instruccions si no cap en 16 bits).
+     */
+    private void labelLeaf(ExprTree leaf) {
+        Integer value = leaf.constant();
+        if (value == null) {
+            leaf.label(REG, operands.registerOf(leaf.getOperand()) != null ? 0 : 1, null);
+            return;
+        }
+        if (value == 0) leaf.label(ZERO, 0, null);
+        if (fitsSigned(value)) leaf.label(IMM, 0, null);
+        if (fitsSigned(value + 1L)) leaf.label(IMM_SUCC, 0, null);
+        if (fitsSigned(-(long) value)) leaf.label(IMM_NEG, 0, null);
+        if (value >= 0 && value <= 0xFFFF) leaf.label(UIMM, 0, null);
+        if (value >= 0 && value < 32) leaf.label(SHAMT, 0, null);
+        if (value > 1 && Integer.bitCount(value) == 1) leaf.label(POW2, 0, null);
+        leaf.label(REG, value == 0 ? 0 : fitsSigned(value) ? 1 : 2, null);
+    }
+
+    private static boolean fitsSigned(long value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    /**
+     * Emet el codi que deriva l'arbre en el no terminal indicat
+     *
+     * @param target Registre on ha d'anar el resultat, o null per fer servir un de treball
+     * @return Registre amb el resultat, o el valor de la constant per als no terminals d'immediat
+     */
+    private String reduce(ExprTree tree, NonTerminal nt, String target) {
+        if (tree.isLeaf()) return reduceLeaf(tree, nt, target);
+
+        Rule rule = tree.getRule(nt);
+        List<ExprTree> bound = new ArrayList<>();
+        List<NonTerminal> nts = new ArrayList<>();
+        rule.match(tree, bound, nts);
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < bound.size(); i++) order.add(i);
+        order.sort(Comparator.comparingInt(i -> -need(bound.get(i), nts.get(i))));
+        String[] kids = new String[bound.size()];
+        for (int i : order) kids[i] = reduce(bound.get(i), nts.get(i), null);
+        for (String kid : kids) release(kid);
+
+        String dst = nt == REG ? (target != null ? target : allocate()) : null;
+        rule.getEmitter().emit(new Emission(this, dst, Arrays.asList(kids), branchTarget));
+        return dst;
+    }
+
+    private String reduceLeaf(ExprTree leaf, NonTerminal nt, String target) {
+        if (nt != REG) return String.valueOf(leaf.constant());
+        String register = operands.registerOf(leaf.getOperand());
+        if (register != null) return register;
+        if (leaf.getCost(REG) == 0) return "$zero";
+        String dst = target != null ? target : allocate();
+        operands.load(leaf.getOperand(), dst);
+        return dst;
+    }
+
+    /**
+     * Registres de treball que necessita l'avaluació del subarbre (nombre de Sethi-Ullman)
+     */
+    private int need(ExprTree tree, NonTerminal nt) {
+        if (tree.isLeaf()) return nt == REG && tree.getCost(REG) > 0 ? 1 : 0;
+        List<ExprTree> bound = new ArrayList<>();
+        List<NonTerminal> nts = new ArrayList<>();
+        tree.getRule(nt).match(tree, bound, nts);
+        List<Integer> needs = new ArrayList<>();
+        for (int i = 0; i < bound.size(); i++) needs.add(need(bound.get(i), nts.get(i)));
+        needs.sort(Comparator.reverseOrder());
+        int total = 1;
+        for (int i = 0; i < needs.size(); i++) total = Math.max(total, needs.get(i) + i);
+        return total;
+    }
+
+    String allocate() {
+        if (free.isEmpty()) throw new IllegalStateException("Instruction selection ran out of scratch registers");
+        return free.pop();
+    }
+
+    private void release(String register) {
+        if (SCRATCH.contains(register) && !free.contains(register)) free.push(register);
+    }
+
+    void emit(String opcode, String... operands) {
+        out.printf("\t%-4s %s\n", opcode, String.join(", ", operands));
+    }
+}
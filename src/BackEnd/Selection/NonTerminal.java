@@ -0,0 +1,40 @@
+package BackEnd.Selection;
+
+public enum NonTerminal {
+    /**
+     * Valor en un registre
+     */
+    REG,
+    /**
+     * Constant que cap en un immediat amb signe de 16 bits
+     */
+    IMM,
+    /**
+     * Constant c tal que c + 1 cap en un immediat amb signe (x <= c es fa com a x < c + 1)
+     */
+    IMM_SUCC,
+    /**
+     * Constant c tal que -c cap en un immediat amb signe (x - c es fa com a x + (-c))
+     */
+    IMM_NEG,
+    /**
+     * Constant que cap en un immediat sense signe de 16 bits
+     */
+    UIMM,
+    /**
+     * Constant entre 0 i 31, per als desplaçaments
+     */
+    SHAMT,
+    /**
+     * Potència de dos més gran que 1, per a les multiplicacions que es fan amb sll
+     */
+    POW2,
+    /**
+     * La constant 0
+     */
+    ZERO,
+    /**
+     * Arrel sense valor: un salt condicional
+     */
+    STMT
+}
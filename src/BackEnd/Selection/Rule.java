@@ -0,0 +1,180 @@
+package BackEnd.Selection;
+
+import java.util.*;
+
+import static BackEnd.Selection.NonTerminal.*;
+
+public class Rule {
+    /**
+     * Codi que emet una regla un cop avaluats els operands que lliga el patró
+     */
+    interface Emitter {
+        void emit(Emission e);
+    }
+
+    /**
+     * Patró d'una regla: una operació amb subpatrons o, a les fulles, un no terminal que ha de poder
+     * derivar el subarbre que hi coincideix
+     */
+    static final class Pattern {
+        private final String op;
+        private final NonTerminal nt;
+        private final List<Pattern> children;
+
+        private Pattern(String op, NonTerminal nt, List<Pattern> children) {
+            this.op = op;
+            this.nt = nt;
+            this.children = children;
+        }
+
+        /**
+         * Cost de cobrir l'arbre amb el patró (sense el de la regla), afegint a bound i nts els subarbres
+         * que queden a les fulles del patró i el no terminal en què s'han de derivar
+         */
+        int match(ExprTree tree, List<ExprTree> bound, List<NonTerminal> nts) {
+            if (nt != null) {
+                bound.add(tree);
+                nts.add(nt);
+                return tree.getCost(nt);
+            }
+            if (tree.isLeaf() || !op.equals(tree.getOp()) || children.size() != tree.getChildren().size()) {
+                return ExprTree.INFINITE;
+            }
+            int total = 0;
+            for (int i = 0; i < children.size() && total < ExprTree.INFINITE; i++) {
+                total += children.get(i).match(tree.getChildren().get(i), bound, nts);
+            }
+            return Math.min(total, ExprTree.INFINITE);
+        }
+    }
+
+    private final NonTerminal lhs;
+    private final Pattern pattern;
+    private final int cost;
+    private final Emitter emitter;
+
+    private Rule(NonTerminal lhs, Pattern pattern, int cost, Emitter emitter) {
+        this.lhs = lhs;
+        this.pattern = pattern;
+        this.cost = cost;
+        this.emitter = emitter;
+    }
+
+    /**
+     * Regles de selecció. El cost és el nombre d'instruccions que emet la regla; el dels operands s'hi suma
+     * en l'etiquetatge. Les constants que no són immediats es deriven a REG amb un li a les fulles.
+     */
+    static final List<Rule> RULES = new ArrayList<>();
+    static {
+        reg(1, op("SUM", REG, REG),     e -> e.emit("add",  e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("SUM", REG, IMM),     e -> e.emit("addi", e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("SUM", IMM, REG),     e -> e.emit("addi", e.dst(), e.kid(1), e.kid(0)));
+        reg(1, op("SUB", REG, REG),     e -> e.emit("sub",  e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("SUB", REG, IMM_NEG), e -> e.emit("addi", e.dst(), e.kid(0), String.valueOf(-e.constant(1))));
+        reg(1, op("ADDU", REG, REG),    e -> e.emit("addu", e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("ADDU", REG, IMM),    e -> e.emit("addiu", e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("ADDU", IMM, REG),    e -> e.emit("addiu", e.dst(), e.kid(1), e.kid(0)));
+
+        reg(1, op("MULT", REG, REG),    e -> e.emit("mul",  e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("MULT", REG, POW2),   e -> e.emit("sll",  e.dst(), e.kid(0), log2(e.constant(1))));
+        reg(1, op("MULT", POW2, REG),   e -> e.emit("sll",  e.dst(), e.kid(1), log2(e.constant(0))));
+        reg(2, op("DIV", REG, REG),     e -> { e.emit("div", e.kid(0), e.kid(1)); e.emit("mflo", e.dst()); });
+        reg(2, op("MOD", REG, REG),     e -> { e.emit("div", e.kid(0), e.kid(1)); e.emit("mfhi", e.dst()); });
+        reg(2, op("MULHI", REG, REG),   e -> { e.emit("mult", e.kid(0), e.kid(1)); e.emit("mfhi", e.dst()); });
+
+        reg(1, op("BAND", REG, REG),    e -> e.emit("and",  e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("BAND", REG, UIMM),   e -> e.emit("andi", e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("BAND", UIMM, REG),   e -> e.emit("andi", e.dst(), e.kid(1), e.kid(0)));
+        reg(1, op("SHL", REG, SHAMT),   e -> e.emit("sll",  e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("SHR", REG, SHAMT),   e -> e.emit("sra",  e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("SHRU", REG, SHAMT),  e -> e.emit("srl",  e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("SHL", REG, REG),     e -> e.emit("sllv", e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("SHR", REG, REG),     e -> e.emit("srav", e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("SHRU", REG, REG),    e -> e.emit("srlv", e.dst(), e.kid(0), e.kid(1)));
+
+        // Comparacions amb valor 0/1: només existeixen slt i slti, la resta s'hi redueix
+        reg(1, op("LOWER", REG, REG),         e -> e.emit("slt",  e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("LOWER", REG, IMM),         e -> e.emit("slti", e.dst(), e.kid(0), e.kid(1)));
+        reg(1, op("GREATER", REG, REG),       e -> e.emit("slt",  e.dst(), e.kid(1), e.kid(0)));
+        reg(1, op("LOWER_EQUAL", REG, IMM_SUCC), e -> e.emit("slti", e.dst(), e.kid(0), successor(e.constant(1))));
+        reg(2, op("LOWER_EQUAL", REG, REG),   e -> { e.emit("slt", e.dst(), e.kid(1), e.kid(0)); e.emit("xori", e.dst(), e.dst(), "1"); });
+        reg(2, op("GREATER_EQUAL", REG, REG), e -> { e.emit("slt", e.dst(), e.kid(0), e.kid(1)); e.emit("xori", e.dst(), e.dst(), "1"); });
+        reg(2, op("GREATER_EQUAL", REG, IMM), e -> { e.emit("slti", e.dst(), e.kid(0), e.kid(1)); e.emit("xori", e.dst(), e.dst(), "1"); });
+        reg(1, op("EQUALS", REG, ZERO),       e -> e.emit("sltiu", e.dst(), e.kid(0), "1"));
+        reg(2, op("EQUALS", REG, REG),        e -> { e.emit("xor", e.dst(), e.kid(0), e.kid(1)); e.emit("sltiu", e.dst(), e.dst(), "1"); });
+        reg(2, op("EQUALS", REG, UIMM),       e -> { e.emit("xori", e.dst(), e.kid(0), e.kid(1)); e.emit("sltiu", e.dst(), e.dst(), "1"); });
+        reg(1, op("NOT_EQUAL", REG, ZERO),    e -> e.emit("sltu", e.dst(), "$zero", e.kid(0)));
+        reg(2, op("NOT_EQUAL", REG, REG),     e -> { e.emit("xor", e.dst(), e.kid(0), e.kid(1)); e.emit("sltu", e.dst(), "$zero", e.dst()); });
+        reg(2, op("NOT_EQUAL", REG, UIMM),    e -> { e.emit("xori", e.dst(), e.kid(0), e.kid(1)); e.emit("sltu", e.dst(), "$zero", e.dst()); });
+        reg(1, op("NOT", REG),                e -> e.emit("sltiu", e.dst(), e.kid(0), "1"));
+
+        // Salts condicionals: ifFalse c salta quan la condició és falsa
+        stmt(1, op("ifFalse", REG),                              e -> e.emit("beq",  e.kid(0), "$zero", e.label()));
+        stmt(1, op("ifFalse", op("NOT", REG)),                   e -> e.emit("bne",  e.kid(0), "$zero", e.label()));
+        stmt(1, op("ifFalse", op("EQUALS", REG, REG)),           e -> e.emit("bne",  e.kid(0), e.kid(1), e.label()));
+        stmt(1, op("ifFalse", op("NOT_EQUAL", REG, REG)),        e -> e.emit("beq",  e.kid(0), e.kid(1), e.label()));
+        stmt(1, op("ifFalse", op("LOWER", REG, ZERO)),           e -> e.emit("bgez", e.kid(0), e.label()));
+        stmt(1, op("ifFalse", op("GREATER_EQUAL", REG, ZERO)),   e -> e.emit("bltz", e.kid(0), e.label()));
+        stmt(1, op("ifFalse", op("GREATER", REG, ZERO)),         e -> e.emit("blez", e.kid(0), e.label()));
+        stmt(1, op("ifFalse", op("LOWER_EQUAL", REG, ZERO)),     e -> e.emit("bgtz", e.kid(0), e.label()));
+        stmt(1, op("ifFalse", op("LOWER", ZERO, REG)),           e -> e.emit("blez", e.kid(1), e.label()));
+        stmt(1, op("ifFalse", op("GREATER", ZERO, REG)),         e -> e.emit("bgez", e.kid(1), e.label()));
+        stmt(2, op("ifFalse", op("LOWER", REG, REG)),            e -> compareAndBranch(e, "slt", e.kid(0), e.kid(1), "beq"));
+        stmt(2, op("ifFalse", op("LOWER", REG, IMM)),            e -> compareAndBranch(e, "slti", e.kid(0), e.kid(1), "beq"));
+        stmt(2, op("ifFalse", op("GREATER_EQUAL", REG, REG)),    e -> compareAndBranch(e, "slt", e.kid(0), e.kid(1), "bne"));
+        stmt(2, op("ifFalse", op("GREATER_EQUAL", REG, IMM)),    e -> compareAndBranch(e, "slti", e.kid(0), e.kid(1), "bne"));
+        stmt(2, op("ifFalse", op("GREATER", REG, REG)),          e -> compareAndBranch(e, "slt", e.kid(1), e.kid(0), "beq"));
+        stmt(2, op("ifFalse", op("GREATER", REG, IMM_SUCC)),     e -> compareAndBranch(e, "slti", e.kid(0), successor(e.constant(1)), "bne"));
+        stmt(2, op("ifFalse", op("LOWER_EQUAL", REG, REG)),      e -> compareAndBranch(e, "slt", e.kid(1), e.kid(0), "bne"));
+        stmt(2, op("ifFalse", op("LOWER_EQUAL", REG, IMM_SUCC)), e -> compareAndBranch(e, "slti", e.kid(0), successor(e.constant(1)), "beq"));
+    }
+
+    private static Pattern op(String op, NonTerminal... children) {
+        List<Pattern> patterns = new ArrayList<>();
+        for (NonTerminal child : children) patterns.add(new Pattern(null, child, List.of()));
+        return new Pattern(op, null, patterns);
+    }
+
+    private static Pattern op(String op, Pattern child) {
+        return new Pattern(op, null, List.of(child));
+    }
+
+    private static void reg(int cost, Pattern pattern, Emitter emitter) {
+        RULES.add(new Rule(REG, pattern, cost, emitter));
+    }
+
+    private static void stmt(int cost, Pattern pattern, Emitter emitter) {
+        RULES.add(new Rule(STMT, pattern, cost, emitter));
+    }
+
+    /**
+     * slt/slti a un registre de treball i salt segons si ha donat 0 (beq) o 1 (bne)
+     */
+    private static void compareAndBranch(Emission e, String compare, String a, String b, String branch) {
+        String flag = e.scratch();
+        e.emit(compare, flag, a, b);
+        e.emit(branch, flag, "$zero", e.label());
+    }
+
+    private static String log2(int value) {
+        return String.valueOf(Integer.numberOfTrailingZeros(value));
+    }
+
+    private static String successor(int value) {
+        return String.valueOf(value + 1);
+    }
+
+    /**
+     * Cost de cobrir l'arbre amb aquesta regla, o INFINITE si el patró no hi coincideix
+     */
+    int match(ExprTree tree, List<ExprTree> bound, List<NonTerminal> nts) {
+        return Math.min(cost + pattern.match(tree, bound, nts), ExprTree.INFINITE);
+    }
+
+    /**
+     * Getters
+     */
+    NonTerminal getLhs()   { return lhs;     }
+    String getOp()         { return pattern.op; }
+    Emitter getEmitter()   { return emitter; }
+}
@@ -0,0 +1,163 @@
+package BackEnd.Selection;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.Optimizer.TypeInference;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class TreeBuilder {
+    /**
+     * Instruccions amb efectes o que tanquen el bloc: cap arbre obert no es pot moure per sobre seu
+     */
+    private static final Set<String> BARRIERS = Set.of("label", "goto", "ifFalse", "param", "call", "return");
+
+    private final Map<String,Integer> useCount;
+    private final Predicate<TACInstruction> selectable;
+    private final Predicate<String> inRegister;
+    private final Function<String,Object> homeOf;
+    private final Map<TACInstruction,ExprTree> trees = new HashMap<>();
+
+    /**
+     * Constructor de la classe TreeBuilder
+     *
+     * @param useCount   Nombre de lectures de cada nom al cos de la funció
+     * @param selectable Indica si una instrucció és entera i la pot cobrir el selector
+     * @param inRegister Indica si un valor viu en un registre
+     * @param homeOf     Registre o slot d'un valor; dos valors amb el mateix lloc es trepitgen
+     */
+    public TreeBuilder(Map<String,Integer> useCount, Predicate<TACInstruction> selectable, Predicate<String> inRegister,
+                       Function<String,Object> homeOf) {
+        this.useCount = useCount;
+        this.selectable = selectable;
+        this.inRegister = inRegister;
+        this.homeOf = homeOf;
+    }
+
+    /**
+     * Nom canònic d'una operació TAC (els comparadors poden arribar com a símbol o com a nom)
+     */
+    public static String canonical(String op) {
+        switch (op) {
+            case "<":  return "LOWER";
+            case ">":  return "GREATER";
+            case "<=": return "LOWER_EQUAL";
+            case ">=": return "GREATER_EQUAL";
+            case "==": return "EQUALS";
+            case "!=": return "NOT_EQUAL";
+            case "&&": return "AND";
+            case "||": return "OR";
+            default:   return op;
+        }
+    }
+
+    /**
+     * Agrupa les instruccions en arbres d'expressió. Un temporal que es llegeix una sola vegada, més
+     * endavant en el mateix bloc, passa a ser un subarbre de la instrucció que el llegeix, sempre que
+     * entremig no s'hagi reescrit cap dels valors que llegeix (ni el registre o slot que ocupen) ni hi
+     * hagi cap crida, i que l'arbre resultant es pugui avaluar amb els registres de treball del selector.
+     *
+     * @param code Instruccions consecutives d'una funció
+     * @return Les instruccions que queden com a arrels, en ordre; les absorbides en un arbre desapareixen
+     */
+    public List<TACInstruction> build(List<TACInstruction> code) {
+        List<TACInstruction> statements = new ArrayList<>();
+        // Temporals calculats per un arbre que encara es pot moure fins al seu ús
+        Map<String,TACInstruction> open = new HashMap<>();
+
+        for (TACInstruction ins : code) {
+            String op = canonical(ins.getOp());
+            String defined = ins.getDefinedName();
+
+            if ("=".equals(op) && open.containsKey(ins.getArg1()) && selectable.test(ins)) {
+                // La còpia del resultat d'un arbre: l'arbre calcula directament al destí
+                TACInstruction root = open.remove(ins.getArg1());
+                ExprTree tree = trees.remove(root);
+                statements.remove(root);
+                tree.assignTo(ins);
+                trees.put(ins, tree);
+            } else if (!"=".equals(op) && selectable.test(ins)) {
+                List<ExprTree> children = new ArrayList<>();
+                for (String operand : ins.getUses()) {
+                    TACInstruction root = open.get(operand);
+                    ExprTree child = root != null ? trees.get(root) : null;
+                    if (child != null && fits(children, child, ins.getUses().size())) {
+                        open.remove(operand);
+                        trees.remove(root);
+                        statements.remove(root);
+                    } else {
+                        child = ExprTree.leaf(operand);
+                    }
+                    children.add(child);
+                }
+                trees.put(ins, ExprTree.node(op, children, ins));
+            }
+            statements.add(ins);
+
+            if (BARRIERS.contains(ins.getOp())) {
+                open.clear();
+                continue;
+            }
+            if (defined != null) {
+                open.values().removeIf(root -> overwrites(defined, trees.get(root)));
+                if (trees.containsKey(ins) && isFoldable(defined) && !trees.get(ins).leaves().contains(defined)) {
+                    open.put(defined, ins);
+                }
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Arbre construït per a una instrucció arrel, o null si s'ha de generar amb la plantilla de sempre
+     */
+    public ExprTree getTree(TACInstruction root) {
+        return trees.get(root);
+    }
+
+    /**
+     * Indica si escriure el valor definit fa perdre alguna fulla de l'arbre: perquè és la mateixa o perquè
+     * comparteixen registre o slot un cop acabada la vida de la fulla
+     */
+    private boolean overwrites(String defined, ExprTree tree) {
+        Object home = homeOf.apply(defined);
+        for (String leaf : tree.leaves()) {
+            if (leaf.equals(defined) || (home != null && home.equals(homeOf.apply(leaf)))) return true;
+        }
+        return false;
+    }
+
+    private boolean isFoldable(String name) {
+        return useCount.getOrDefault(name, 0) == 1 && TypeInference.baseName(name).matches("t\\d+");
+    }
+
+    /**
+     * Indica si l'arbre que tindria la instrucció amb aquest fill (i fulles a la resta d'operands) es pot
+     * avaluar sense quedar-se sense registres de treball
+     */
+    private boolean fits(List<ExprTree> before, ExprTree child, int arity) {
+        List<Integer> needs = new ArrayList<>();
+        for (ExprTree tree : before) needs.add(estimate(tree));
+        needs.add(estimate(child));
+        for (int i = needs.size(); i < arity; i++) needs.add(1);
+        return sethiUllman(needs) <= InstructionSelector.SCRATCH.size();
+    }
+
+    /**
+     * Fita superior dels registres que necessita un arbre, sense tenir en compte els immediats
+     */
+    private int estimate(ExprTree tree) {
+        if (tree.isLeaf()) return inRegister.test(tree.getOperand()) || "0".equals(tree.getOperand()) ? 0 : 1;
+        List<Integer> needs = new ArrayList<>();
+        for (ExprTree child : tree.getChildren()) needs.add(estimate(child));
+        return sethiUllman(needs);
+    }
+
+    private static int sethiUllman(List<Integer> needs) {
+        needs.sort(Comparator.reverseOrder());
+        int total = 1;
+        for (int i = 0; i < needs.size(); i++) total = Math.max(total, needs.get(i) + i);
+        return total;
+    }
+}
@@ -152,15 +152,14 @@ public class TACCodeGenerator {
         TreeNode initDecl = forLoopNode.getChildren().get(2);
         generateDeclaration(initDecl);
 
-        // 2) Etiqueta d'inici de condició
-        String startLbl = newLabel();
-        emit("label", null, null, startLbl);
-
-        // 3) Condició
+        // 2) Condició de guarda: si no es compleix d'entrada, el cos no s'executa
         TreeNode condNode = forLoopNode.getChildren().get(4);
-        String condTemp  = generateEvalExpr(condNode);
+        String startLbl  = newLabel();
         String endLbl    = newLabel();
-        emit("ifFalse", condTemp, null, endLbl);
+        generateJump(condNode, endLbl, false);
+
+        // 3) Etiqueta d'inici del cos
+        emit("label", null, null, startLbl);
 
         // 4) Cos del for
         TreeNode codeNode = forLoopNode.getChildren().get(10);
@@ -196,8 +195,8 @@ public class TACCodeGenerator {
                 System.err.println("Increase type not supported on For Loop: " + kind);
         }
 
-        // 6) Torna a la condició
-        emit("goto", null, null, startLbl);
+        // 6) Condició al final del bucle (bucle rotat): un sol salt enrere per iteració
+        generateJump(condNode, startLbl, true);
 
         // 7) Etiqueta de sortida
         emit("label", null, null, endLbl);
@@ -214,10 +213,9 @@ public class TACCodeGenerator {
 
         // 3) Condició: el node EVAL està a child[6]
         TreeNode evalNode = untilNode.getChildren().get(6);
-        String condTemp = generateEvalExpr(evalNode);
 
-        // 4) Si la condició és falsa, repetir: ifFalse condTemp goto startLbl
-        emit("ifFalse", condTemp, null, startLbl);
+        // 4) Si la condició és falsa, repetir
+        generateJump(evalNode, startLbl, false);
     }
 
     private void generateInstruction(TreeNode inst) {
@@ -273,15 +271,15 @@ public class TACCodeGenerator {
     private void generateWhile(TreeNode whileLoopNode) {
         String startLbl = newLabel();
         String endLbl = newLabel();
-        emit("label", null, null, startLbl);
 
+        // Bucle rotat: guarda abans d'entrar i condició al final, com un do-while
         TreeNode evalNode = whileLoopNode.getChildren().get(2); // WHILE PO EVAL PT START CODE END
-        String condTemp = generateEvalExpr(evalNode);
-        emit("ifFalse", condTemp, null, endLbl);
+        generateJump(evalNode, endLbl, false);
+        emit("label", null, null, startLbl);
 
         TreeNode codeNode = whileLoopNode.getChildren().get(5);
         processCode(codeNode);
-        emit("goto", null, null, startLbl);
+        generateJump(evalNode, startLbl, true);
         emit("label", null, null, endLbl);
     }
 
@@ -294,7 +292,6 @@ public class TACCodeGenerator {
         TreeNode evalNode = ifStmt.getChildren().stream() // IF PO EVAL PT START CODE END
                 .filter(c -> "EVAL".equals(c.getValue()))
                 .findFirst().orElse(null);
-        String condTemp = generateEvalExpr(evalNode);
 
         TreeNode elifBlocks = condNode.getChildren().stream()
                 .filter(c -> "ELIF_BLOCKS".equals(c.getValue()))
@@ -307,7 +304,7 @@ public class TACCodeGenerator {
         String nextLabel = newLabel();
         String endLabel = newLabel();
 
-        emit("ifFalse", condTemp, null, nextLabel);
+        generateJump(evalNode, nextLabel, false);
         ifStmt.getChildren().stream()
                 .filter(c -> "CODE".equals(c.getValue()))
                 .findFirst().ifPresent(this::processCode);
@@ -320,10 +317,8 @@ public class TACCodeGenerator {
         while (currentElif != null && !currentElif.getChildren().isEmpty() && !"EPSILON".equals(currentElif.getChildren().get(0).getValue())) {
             // ELIF_BLOCKS -> ELIF PO EVAL PT START CODE END ELIF_BLOCKS
             TreeNode elifEvalNode = currentElif.getChildren().get(2);
-            String elifCondTemp = generateEvalExpr(elifEvalNode);
-
             String nextElifOrElseLabel = newLabel();
-            emit("ifFalse", elifCondTemp, null, nextElifOrElseLabel);
+            generateJump(elifEvalNode, nextElifOrElseLabel, false);
 
             TreeNode elifCodeNode = currentElif.getChildren().get(5);
             processCode(elifCodeNode);
@@ -381,6 +376,29 @@ public class TACCodeGenerator {
             return newTemp();
         }
 
+        Deque<String> evalStack = new ArrayDeque<>();
+        for (Object token : toPostfix(evalNode)) {
+            if (token instanceof TreeNode) {
+                String val = generateExpr((TreeNode) token);
+                evalStack.push(val);
+            } else {
+                String sym   = (String) token;
+                String right = evalStack.pop();
+                String left  = evalStack.pop();
+                String tacOp = mapBooleanOp(sym);
+                String tmp   = newTemp();
+                emit(tacOp, left, right, tmp);
+                evalStack.push(tmp);
+            }
+        }
+        return evalStack.pop();
+    }
+
+    /**
+     * Ordena els operands (EXPR) i els operadors relacionals i lògics d'un EVAL en notació postfixa
+     * (shunting-yard amb les precedències de PRECEDENCE)
+     */
+    private List<Object> toPostfix(TreeNode evalNode) {
         List<TreeNode> exprNodes = new ArrayList<>();
         List<String>    ops       = new ArrayList<>();
         exprNodes.add(evalNode.getChildren().get(0));
@@ -412,23 +430,166 @@ public class TACCodeGenerator {
         while (!opStack.isEmpty()) {
             outputQueue.add(opStack.pop());
         }
+        return outputQueue;
+    }
 
-        Deque<String> evalStack = new ArrayDeque<>();
-        for (Object token : outputQueue) {
+    /**
+     * Node de l'arbre d'una condició: un operand (EXPR) o un operador amb els seus dos fills
+     */
+    private static class Condition {
+        final TreeNode expr;
+        final String op;
+        final Condition left, right;
+
+        Condition(TreeNode expr) {
+            this.expr = expr;
+            this.op = null;
+            this.left = this.right = null;
+        }
+
+        Condition(String op, Condition left, Condition right) {
+            this.expr = null;
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private Condition toCondition(TreeNode evalNode) {
+        Deque<Condition> stack = new ArrayDeque<>();
+        for (Object token : toPostfix(evalNode)) {
             if (token instanceof TreeNode) {
-                String val = generateExpr((TreeNode) token);
-                evalStack.push(val);
+                stack.push(new Condition((TreeNode) token));
             } else {
-                String sym   = (String) token;
-                String right = evalStack.pop();
-                String left  = evalStack.pop();
-                String tacOp = mapBooleanOp(sym);
-                String tmp   = newTemp();
+                Condition right = stack.pop();
+                Condition left = stack.pop();
+                stack.push(new Condition((String) token, left, right));
+            }
+        }
+        return stack.pop();
+    }
+
+    /**
+     * Genera una condició com a codi de salts (avaluació en curtcircuit): salta a target si el valor de
+     * la condició és jumpIf i continua per la instrucció següent en cas contrari. L'operand dret d'un
+     * AND o d'un OR no s'avalua si l'esquerre ja decideix el resultat.
+     *
+     * @param evalNode Node EVAL de la condició
+     * @param target   Etiqueta de destí
+     * @param jumpIf   Valor de la condició amb què es salta
+     */
+    private void generateJump(TreeNode evalNode, String target, boolean jumpIf) {
+        if (evalNode == null || evalNode.getChildren().isEmpty()) {
+            System.err.println("Error: Empty EVAL node in generateJump.");
+            return;
+        }
+        generateJump(toCondition(evalNode), target, jumpIf);
+    }
+
+    private void generateJump(Condition cond, String target, boolean jumpIf) {
+        if (cond.op == null) {
+            generateJumpOnExpr(cond.expr, target, jumpIf);
+            return;
+        }
+
+        switch (cond.op) {
+            case "AND":
+                if (jumpIf) {
+                    String skip = newLabel();
+                    generateJump(cond.left, skip, false);
+                    generateJump(cond.right, target, true);
+                    emit("label", null, null, skip);
+                } else {
+                    generateJump(cond.left, target, false);
+                    generateJump(cond.right, target, false);
+                }
+                break;
+            case "OR":
+                if (jumpIf) {
+                    generateJump(cond.left, target, true);
+                    generateJump(cond.right, target, true);
+                } else {
+                    String skip = newLabel();
+                    generateJump(cond.left, skip, true);
+                    generateJump(cond.right, target, false);
+                    emit("label", null, null, skip);
+                }
+                break;
+            default: {
+                // Comparació: per saltar si és certa s'avalua la comparació inversa
+                String left = generateValue(cond.left);
+                String right = generateValue(cond.right);
+                String tacOp = mapBooleanOp(cond.op);
+                if (jumpIf) tacOp = invertComparison(tacOp);
+                String tmp = newTemp();
                 emit(tacOp, left, right, tmp);
-                evalStack.push(tmp);
+                emit("ifFalse", tmp, null, target);
+                break;
             }
         }
-        return evalStack.pop();
+    }
+
+    /**
+     * Salt sobre un operand: els parèntesis i el NOT es resolen també com a codi de salts
+     */
+    private void generateJumpOnExpr(TreeNode expr, String target, boolean jumpIf) {
+        TreeNode factor = loneFactor(expr);
+        while (factor != null && "NOT".equals(factor.getChildren().get(0).getValue())) {
+            jumpIf = !jumpIf;
+            factor = factor.getChildren().get(1);
+        }
+        if (factor != null && "PO".equals(factor.getChildren().get(0).getValue())) {
+            generateJump(factor.getChildren().get(1), target, jumpIf);
+            return;
+        }
+
+        String place = factor != null ? generateFactor(factor) : generateExpr(expr);
+        if (jumpIf) {
+            String tmp = newTemp();
+            emit("NOT", place, null, tmp);
+            place = tmp;
+        }
+        emit("ifFalse", place, null, target);
+    }
+
+    /**
+     * Retorna el FACTOR d'una EXPR formada per un únic factor (sense operadors aritmètics), o null
+     */
+    private TreeNode loneFactor(TreeNode expr) {
+        if (expr.getChildren().isEmpty() || !isEmptyPrime(expr, 1)) return null;
+        TreeNode term = expr.getChildren().get(0);
+        if (term.getChildren().isEmpty() || !isEmptyPrime(term, 1)) return null;
+        TreeNode factor = term.getChildren().get(0);
+        return factor.getChildren().isEmpty() ? null : factor;
+    }
+
+    private boolean isEmptyPrime(TreeNode node, int index) {
+        if (node.getChildren().size() <= index) return true;
+        TreeNode prime = node.getChildren().get(index);
+        return prime.getChildren().isEmpty() || "EPSILON".equals(prime.getChildren().get(0).getValue());
+    }
+
+    /**
+     * Valor 0/1 d'un subarbre de condició, per als operands de les comparacions
+     */
+    private String generateValue(Condition cond) {
+        if (cond.op == null) return generateExpr(cond.expr);
+        String left = generateValue(cond.left);
+        String right = generateValue(cond.right);
+        String tmp = newTemp();
+        emit(mapBooleanOp(cond.op), left, right, tmp);
+        return tmp;
+    }
+
+    private String invertComparison(String op) {
+        switch (op) {
+            case "<":  return ">=";
+            case "<=": return ">";
+            case ">":  return "<=";
+            case ">=": return "<";
+            case "==": return "!=";
+            default:   return "==";
+        }
     }
 
     private String mapBooleanOp(String tok) {
@@ -447,33 +608,37 @@ public class TACCodeGenerator {
     }
 
 
+    /**
+     * Avalua tots els arguments i després emet els param seguits, just abans del call: així les crides
+     * niades dins dels arguments no es barregen amb els param de la crida exterior
+     */
     private void emitParams(TreeNode argListNode) {
         if (argListNode == null || argListNode.getChildren().isEmpty() || "EPSILON".equals(argListNode.getChildren().get(0).getValue())) {
             return; // No té arguments
         }
         // ARG_LIST -> EVAL NEXT_ARG
+        List<String> places = new ArrayList<>();
         TreeNode evalNode = argListNode.getChildren().get(0);
-        String place = generateEvalExpr(evalNode);
-        emit("param", place, null, null);
+        places.add(generateEvalExpr(evalNode));
 
         if (argListNode.getChildren().size() > 1) {
             TreeNode nextArgNode = argListNode.getChildren().get(1);
-            emitNextParams(nextArgNode);
+            generateNextArgs(nextArgNode, places);
         }
+        for (String place : places) emit("param", place, null, null);
     }
 
-    private void emitNextParams(TreeNode nextArgNode) {
+    private void generateNextArgs(TreeNode nextArgNode, List<String> places) {
         if (nextArgNode == null || nextArgNode.getChildren().isEmpty() || "EPSILON".equals(nextArgNode.getChildren().get(0).getValue())) {
             return;
         }
         // NEXT_ARG -> COMA EVAL NEXT_ARG
         TreeNode evalNode = nextArgNode.getChildren().get(1);
-        String place = generateEvalExpr(evalNode);
-        emit("param", place, null, null);
+        places.add(generateEvalExpr(evalNode));
 
         if (nextArgNode.getChildren().size() > 2) {
             TreeNode nextNextArgNode = nextArgNode.getChildren().get(2);
-            emitNextParams(nextNextArgNode);
+            generateNextArgs(nextNextArgNode, places);
         }
     }
 
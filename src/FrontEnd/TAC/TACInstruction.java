@@ -1,5 +1,8 @@
 package FrontEnd.TAC;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class TACInstruction {
     /**
      * L'operació TAC
@@ -83,6 +86,14 @@ public class TACInstruction {
             case "DIV":       return "/";
             case "MOD":       return "%";
 
+            // machine-level (strength reduction)
+            case "ADDU":      return "+u";
+            case "SHL":       return "<<";
+            case "SHR":       return ">>";
+            case "SHRU":      return ">>>";
+            case "BAND":      return "&";
+            case "MULHI":     return "*hi";
+
             // equality
             case "EQ":
             case "EQUALS":
@@ -111,6 +122,44 @@ public class TACInstruction {
         }
     }
 
+    /**
+     * Retorna el nom que defineix la instrucció (el resultat d'una assignació, operació o crida)
+     *
+     * @return Nom definit o null si la instrucció no defineix cap valor
+     */
+    public String getDefinedName() {
+        switch (op) {
+            case "label":
+            case "goto":
+            case "ifFalse":
+            case "param":
+            case "return":
+                return null;
+            default:
+                return (result == null || result.isEmpty()) ? null : result;
+        }
+    }
+
+    /**
+     * Retorna els operands que llegeix la instrucció (poden incloure literals)
+     *
+     * @return Llista d'operands llegits
+     */
+    public List<String> getUses() {
+        List<String> uses = new ArrayList<>(2);
+        switch (op) {
+            case "label":
+            case "goto":
+            case "call":
+                break;
+            default:
+                if (arg1 != null && !arg1.isEmpty()) uses.add(arg1);
+                if (arg2 != null && !arg2.isEmpty()) uses.add(arg2);
+                break;
+        }
+        return uses;
+    }
+
     /**
      * Getters
      */
@@ -76,6 +76,29 @@ public class SymbolTable {
         return currentScope.lookupSymbol(name);
     }
 
+    /**
+     * Busca un símbol declarat dins d'una funció: als seus paràmetres o a qualsevol dels seus blocs.
+     * Serveix un cop acabada l'anàlisi, quan el scope actual ja torna a ser el global.
+     *
+     * @param functionName Nom de la funció
+     * @param name         Nom del símbol a buscar
+     * @return El símbol si existeix, null si no existeix
+     */
+    public Symbol lookupFunctionSymbol(String functionName, String name) {
+        for (Scope scope : allScopes) {
+            Symbol symbol = scope.getSymbols().get(name);
+            if (symbol == null) continue;
+
+            // Pugem fins al scope de la funció (el fill directe del global)
+            Scope function = scope;
+            while (function.getParent() != null && function.getParent() != globalScope) {
+                function = function.getParent();
+            }
+            if (function != globalScope && function.getScopeName().equals(functionName)) return symbol;
+        }
+        return null;
+    }
+
     /**
      * Retorna el scope actual
      * @return El scope actual
@@ -6,6 +6,7 @@ import FrontEnd.Semantics.SemanticAnalyzer;
 import FrontEnd.Syntax.Parser;
 import Global.Errors.ErrorHandler;
 import Global.SymbolTable.SymbolTable;
+import MiddleEnd.Optimizer.TACOptimizer;
 import BackEnd.MIPSCodeGenerator;
 
 import java.nio.file.Paths;
@@ -14,6 +15,9 @@ public class Main {
 
     private static final String FILE_PATH = "src/Files/Codes/fibonacci.smpl";
 
+    // 0: sense optimitzacions, 1: compilació ràpida, 2: build de release
+    private static final int OPTIMIZATION_LEVEL = 1;
+
     public static void main(String[] args) {
 
         // Declarem l'ErrorHandler i la taula de símbols
@@ -54,9 +58,18 @@ public class Main {
 
         tacCodeGenerator.printTACCode(); // Mostrem el TAC generat (debug)
 
+        // Optimitzem el TAC
+        TACOptimizer tacOptimizer = new TACOptimizer(tacCodeGenerator.getCode(), symbolTable);
+        tacOptimizer.setOptimizationLevel(OPTIMIZATION_LEVEL);
+        tacOptimizer.optimize();
+
+        tacOptimizer.printTACCode(); // Mostrem el TAC optimitzat (debug)
+
         // Generem MIPS
-        MIPSCodeGenerator mipsCodeGenerator = new MIPSCodeGenerator(tacCodeGenerator.getCode(), symbolTable);
+        MIPSCodeGenerator mipsCodeGenerator = new MIPSCodeGenerator(tacOptimizer.getCode(), symbolTable);
         mipsCodeGenerator.setCommentTAC(false); // Per a mostrar les instruccions TAC al codi MIPS com a comentaris
+        mipsCodeGenerator.setMemoize(false); // Per a memoitzar les funcions pures recursives (fibonacci, ...)
+        mipsCodeGenerator.setOptimizationLevel(OPTIMIZATION_LEVEL);
         mipsCodeGenerator.generate();
     }
 }
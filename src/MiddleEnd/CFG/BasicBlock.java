@@ -0,0 +1,98 @@
+package MiddleEnd.CFG;
+
+import FrontEnd.TAC.TACInstruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BasicBlock {
+    /**
+     * Identificador del bloc dins del seu graf
+     */
+    private final int id;
+    /**
+     * Instruccions del bloc. Només la primera pot ser una etiqueta i només l'última un salt o un return.
+     */
+    private final List<TACInstruction> instructions = new ArrayList<>();
+    /**
+     * Arestes del graf de flux de control
+     */
+    private final List<BasicBlock> predecessors = new ArrayList<>();
+    private final List<BasicBlock> successors = new ArrayList<>();
+
+    /**
+     * Constructor de la classe BasicBlock
+     *
+     * @param id Identificador del bloc
+     */
+    public BasicBlock(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Retorna l'etiqueta amb què comença el bloc
+     *
+     * @return Nom de l'etiqueta o null si el bloc no en té
+     */
+    public String getLabel() {
+        if (instructions.isEmpty()) return null;
+        TACInstruction first = instructions.get(0);
+        return "label".equals(first.getOp()) ? first.getResult() : null;
+    }
+
+    /**
+     * Retorna la instrucció que tanca el bloc (goto, ifFalse o return)
+     *
+     * @return La instrucció o null si el bloc continua pel següent
+     */
+    public TACInstruction getTerminator() {
+        if (instructions.isEmpty()) return null;
+        TACInstruction last = instructions.get(instructions.size() - 1);
+        return isTerminator(last) ? last : null;
+    }
+
+    /**
+     * Comprova si una instrucció tanca un bloc bàsic
+     *
+     * @param ins Instrucció a comprovar
+     * @return true si és un goto, un ifFalse o un return
+     */
+    public static boolean isTerminator(TACInstruction ins) {
+        String op = ins.getOp();
+        return "goto".equals(op) || "ifFalse".equals(op) || "return".equals(op);
+    }
+
+    /**
+     * Indica si l'execució pot continuar cap al bloc següent en l'ordre del codi
+     *
+     * @return true si el bloc no acaba amb goto ni return
+     */
+    public boolean fallsThrough() {
+        TACInstruction last = getTerminator();
+        return last == null || "ifFalse".equals(last.getOp());
+    }
+
+    public void addSuccessor(BasicBlock successor) {
+        successors.add(successor);
+        successor.predecessors.add(this);
+    }
+
+    public void removeSuccessor(BasicBlock successor) {
+        successors.remove(successor);
+        successor.predecessors.remove(this);
+    }
+
+    /**
+     * Getters
+     */
+    public int getId()                           { return id;           }
+    public List<TACInstruction> getInstructions() { return instructions; }
+    public List<BasicBlock> getPredecessors()    { return predecessors; }
+    public List<BasicBlock> getSuccessors()      { return successors;   }
+
+    @Override
+    public String toString() {
+        String label = getLabel();
+        return "B" + id + (label != null ? " (" + label + ")" : "");
+    }
+}
@@ -0,0 +1,75 @@
+package MiddleEnd.CFG;
+
+import FrontEnd.TAC.TACInstruction;
+
+import java.util.*;
+
+public class CallGraph {
+    /**
+     * Funcions que crida cada funció, en ordre d'aparició
+     */
+    private final Map<String,Set<String>> callees = new LinkedHashMap<>();
+    /**
+     * Nombre de crides a cada funció a tot el programa
+     */
+    private final Map<String,Integer> callCount = new HashMap<>();
+
+    /**
+     * Constructor de la classe CallGraph. Les arestes surten de les instruccions call de cada funció.
+     *
+     * @param functions Cos TAC de cada funció
+     */
+    public CallGraph(Map<String,List<TACInstruction>> functions) {
+        for (Map.Entry<String,List<TACInstruction>> function : functions.entrySet()) {
+            Set<String> called = new LinkedHashSet<>();
+            for (TACInstruction ins : function.getValue()) {
+                if (!"call".equals(ins.getOp()) || !functions.containsKey(ins.getArg1())) continue;
+                called.add(ins.getArg1());
+                callCount.merge(ins.getArg1(), 1, Integer::sum);
+            }
+            callees.put(function.getKey(), called);
+        }
+    }
+
+    /**
+     * Indica si una funció es pot tornar a cridar a si mateixa, directament o a través d'altres
+     *
+     * @param function Nom de la funció
+     * @return true si forma part d'un cicle del graf
+     */
+    public boolean isRecursive(String function) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> work = new ArrayDeque<>(getCallees(function));
+        while (!work.isEmpty()) {
+            String f = work.pop();
+            if (f.equals(function)) return true;
+            if (visited.add(f)) work.addAll(getCallees(f));
+        }
+        return false;
+    }
+
+    /**
+     * Ordena les funcions de manera que cada una vingui després de les que crida (els cicles es
+     * trenquen pel primer punt on es tornen a trobar)
+     *
+     * @return Noms de les funcions, de les fulles cap a les arrels
+     */
+    public List<String> bottomUpOrder() {
+        List<String> order = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String function : callees.keySet()) visit(function, visited, order);
+        return order;
+    }
+
+    private void visit(String function, Set<String> visited, List<String> order) {
+        if (!visited.add(function)) return;
+        for (String callee : getCallees(function)) visit(callee, visited, order);
+        order.add(function);
+    }
+
+    /**
+     * Getters
+     */
+    public Set<String> getCallees(String function) { return callees.getOrDefault(function, Set.of()); }
+    public int getCallCount(String function)       { return callCount.getOrDefault(function, 0);     }
+}
@@ -0,0 +1,324 @@
+package MiddleEnd.CFG;
+
+import FrontEnd.TAC.TACInstruction;
+
+import java.util.*;
+
+public final class ControlFlowGraph {
+    /**
+     * Nom de la funció representada
+     */
+    private final String functionName;
+    /**
+     * Blocs en l'ordre en què s'emetran. El primer és l'entrada de la funció.
+     */
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    /**
+     * Bloc que comença per cada etiqueta
+     */
+    private final Map<String,BasicBlock> blockByLabel = new HashMap<>();
+    /**
+     * Blocs creats en partir arestes que encara no s'han col·locat a la llista: els que van just darrere
+     * d'un bloc (en l'ordre en què quedaran) i els que van al final
+     */
+    private final Map<BasicBlock,Deque<BasicBlock>> pendingAfter = new HashMap<>();
+    private final List<BasicBlock> pendingAtEnd = new ArrayList<>();
+    /**
+     * Següent identificador de bloc lliure, d'etiqueta nova i de temporal nou (-1 si encara no s'ha calculat)
+     */
+    private int nextId = 0;
+    private int nextLabel = 0;
+    private int nextTemp = -1;
+
+    /**
+     * Construeix el graf d'una funció. Parteix el cos en blocs bàsics a cada etiqueta i després
+     * de cada goto, ifFalse i return, i hi afegeix les arestes. El cost és lineal en instruccions.
+     *
+     * @param functionName Nom de la funció
+     * @param body         Cos TAC de la funció (començant per la seva etiqueta)
+     */
+    public ControlFlowGraph(String functionName, List<TACInstruction> body) {
+        this.functionName = functionName;
+
+        BasicBlock current = null;
+        for (TACInstruction ins : body) {
+            if (current == null || "label".equals(ins.getOp())) {
+                current = newBlock(blocks.size());
+            }
+            current.getInstructions().add(ins);
+            if (BasicBlock.isTerminator(ins)) current = null;
+        }
+        if (blocks.isEmpty()) newBlock(0);
+
+        computeEdges();
+    }
+
+    /**
+     * Separa el codi TAC d'un programa en el cos de cada funció
+     *
+     * @param code          Codi TAC complet
+     * @param functionNames Noms de les funcions del programa
+     * @return Mapa ordenat nom de funció -> instruccions (incloent-hi l'etiqueta de la funció)
+     */
+    public static Map<String,List<TACInstruction>> splitByFunction(List<TACInstruction> code, Set<String> functionNames) {
+        Map<String,List<TACInstruction>> functions = new LinkedHashMap<>();
+        List<TACInstruction> current = null;
+
+        for (TACInstruction ins : code) {
+            if ("label".equals(ins.getOp()) && functionNames.contains(ins.getResult())) {
+                current = new ArrayList<>();
+                functions.put(ins.getResult(), current);
+            }
+            if (current != null) {
+                current.add(ins);
+            } else {
+                System.err.println("ControlFlowGraph: Instruction '" + ins + "' encountered before a function-defining label.");
+            }
+        }
+        return functions;
+    }
+
+    /**
+     * Crea un bloc buit a la posició indicada de l'ordre del codi
+     *
+     * @param position Posició dins de la llista de blocs
+     * @return El bloc creat
+     */
+    public BasicBlock newBlock(int position) {
+        BasicBlock block = new BasicBlock(nextId++);
+        getBlocks().add(position, block);
+        return block;
+    }
+
+    /**
+     * Genera una etiqueta que no fa servir cap bloc de la funció. Porta el nom de la funció com a prefix
+     * perquè sigui única a tot el programa.
+     *
+     * @return Nom de l'etiqueta
+     */
+    public String newLabel() {
+        String label;
+        do {
+            label = functionName + "_L" + (nextLabel++);
+        } while (blockByLabel.containsKey(label));
+        return label;
+    }
+
+    /**
+     * Parteix l'aresta pred -> succ amb un bloc nou, buit excepte per la seva etiqueta. Si l'aresta és el
+     * pas al bloc següent, el bloc nou es col·loca entre tots dos; si és un salt, va al final de la funció
+     * i acaba amb un goto cap a succ. Només canvien les arestes de pred i succ, i el bloc no es col·loca a
+     * la llista fins que algú la demana, de manera que partir moltes arestes seguides té cost constant.
+     *
+     * @param pred Bloc d'origen
+     * @param succ Bloc de destí
+     * @return El bloc creat
+     */
+    public BasicBlock splitEdge(BasicBlock pred, BasicBlock succ) {
+        String label = newLabel();
+        TACInstruction terminator = pred.getTerminator();
+        boolean jumps = terminator != null && !"return".equals(terminator.getOp())
+                && terminator.getResult().equals(succ.getLabel());
+        BasicBlock last = pendingAtEnd.isEmpty() ? blocks.get(blocks.size() - 1) : pendingAtEnd.get(pendingAtEnd.size() - 1);
+        // Si pred salta a succ i també hi continua, succ és el següent i és el seu únic successor
+        boolean fallthrough = pred.fallsThrough() && (!jumps || (pred.getSuccessors().size() == 1 && pred != last));
+
+        BasicBlock block = new BasicBlock(nextId++);
+        block.getInstructions().add(new TACInstruction("label", null, null, label));
+        if (fallthrough) {
+            pendingAfter.computeIfAbsent(pred, b -> new ArrayDeque<>()).addFirst(block);
+        } else {
+            if (last.fallsThrough()) {
+                // L'últim bloc acaba la funció sense return: se n'hi posa un perquè no continuï pel nou
+                BasicBlock end = new BasicBlock(nextId++);
+                end.getInstructions().add(new TACInstruction("return", null, null, null));
+                last.addSuccessor(end);
+                pendingAtEnd.add(end);
+            }
+            block.getInstructions().add(new TACInstruction("goto", null, null, succ.getLabel()));
+            pendingAtEnd.add(block);
+        }
+
+        // El salt de pred que anava a succ passa pel bloc nou
+        if (jumps) {
+            List<TACInstruction> instructions = pred.getInstructions();
+            instructions.set(instructions.size() - 1,
+                    new TACInstruction(terminator.getOp(), terminator.getArg1(), terminator.getArg2(), label));
+        }
+
+        pred.getSuccessors().set(pred.getSuccessors().indexOf(succ), block);
+        succ.getPredecessors().set(succ.getPredecessors().indexOf(pred), block);
+        block.getPredecessors().add(pred);
+        block.getSuccessors().add(succ);
+        blockByLabel.put(label, block);
+        return block;
+    }
+
+    /**
+     * Col·loca a la llista de blocs els que ha creat splitEdge
+     */
+    private void placePendingBlocks() {
+        if (pendingAfter.isEmpty() && pendingAtEnd.isEmpty()) return;
+
+        List<BasicBlock> order = new ArrayList<>(blocks.size() + pendingAtEnd.size());
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        for (BasicBlock block : blocks) {
+            stack.push(block);
+            while (!stack.isEmpty()) {
+                BasicBlock next = stack.pop();
+                order.add(next);
+                Deque<BasicBlock> after = pendingAfter.remove(next);
+                if (after != null) after.descendingIterator().forEachRemaining(stack::push);
+            }
+        }
+        order.addAll(pendingAtEnd);
+        pendingAtEnd.clear();
+        blocks.clear();
+        blocks.addAll(order);
+    }
+
+    /**
+     * Retorna el bloc on s'executen les instruccions just abans d'entrar al bucle. Si l'únic predecessor
+     * de fora del bucle té altres successors, es crea un bloc nou a l'aresta.
+     *
+     * @param loop Bucle
+     * @return La preheader o null si el bucle té més d'una entrada des de fora
+     */
+    public BasicBlock getPreheader(Loop loop) {
+        BasicBlock header = loop.getHeader();
+        BasicBlock outside = null;
+        for (BasicBlock pred : header.getPredecessors()) {
+            if (loop.contains(pred)) continue;
+            if (outside != null) return null;
+            outside = pred;
+        }
+        if (outside == null) return null;
+
+        TACInstruction terminator = outside.getTerminator();
+        if (outside.getSuccessors().size() == 1 && (terminator == null || !"ifFalse".equals(terminator.getOp()))) {
+            return outside;
+        }
+        return splitEdge(outside, header);
+    }
+
+    /**
+     * Genera un temporal nou que no apareix a la funció
+     *
+     * @return Nom del temporal
+     */
+    public String newTemp() {
+        if (nextTemp < 0) {
+            nextTemp = 0;
+            for (BasicBlock block : getBlocks()) {
+                for (TACInstruction ins : block.getInstructions()) {
+                    for (String name : Arrays.asList(ins.getArg1(), ins.getArg2(), ins.getResult())) {
+                        if (name != null && name.matches("t\\d+")) {
+                            nextTemp = Math.max(nextTemp, Integer.parseInt(name.substring(1)) + 1);
+                        }
+                    }
+                }
+            }
+        }
+        return "t" + (nextTemp++);
+    }
+
+    /**
+     * Torna a calcular les arestes a partir de les etiquetes i dels salts de cada bloc.
+     * S'ha de cridar després de modificar les instruccions o l'ordre dels blocs.
+     */
+    public void computeEdges() {
+        placePendingBlocks();
+        blockByLabel.clear();
+        for (BasicBlock block : blocks) {
+            block.getPredecessors().clear();
+            block.getSuccessors().clear();
+            String label = block.getLabel();
+            if (label != null) blockByLabel.put(label, block);
+        }
+
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            TACInstruction last = block.getTerminator();
+            if (last != null && !"return".equals(last.getOp())) {
+                BasicBlock target = blockByLabel.get(last.getResult());
+                if (target != null) block.addSuccessor(target);
+            }
+            if (block.fallsThrough() && i + 1 < blocks.size()) {
+                BasicBlock next = blocks.get(i + 1);
+                if (!block.getSuccessors().contains(next)) block.addSuccessor(next);
+            }
+        }
+    }
+
+    /**
+     * Retorna els blocs accessibles des de l'entrada en postordre invers (recorregut iteratiu,
+     * sense recursió, perquè funcions molt grans no desbordin la pila)
+     *
+     * @return Blocs accessibles en postordre invers
+     */
+    public List<BasicBlock> reversePostOrder() {
+        List<BasicBlock> order = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+
+        BasicBlock entry = getEntry();
+        visited.add(entry);
+        stack.push(entry);
+        nextChild.push(0);
+        while (!stack.isEmpty()) {
+            BasicBlock block = stack.peek();
+            int child = nextChild.pop();
+            if (child < block.getSuccessors().size()) {
+                nextChild.push(child + 1);
+                BasicBlock succ = block.getSuccessors().get(child);
+                if (visited.add(succ)) {
+                    stack.push(succ);
+                    nextChild.push(0);
+                }
+            } else {
+                stack.pop();
+                order.add(block);
+            }
+        }
+        Collections.reverse(order);
+        return order;
+    }
+
+    /**
+     * Torna a convertir el graf en una llista d'instruccions seguint l'ordre dels blocs
+     *
+     * @return Instruccions TAC de la funció
+     */
+    public List<TACInstruction> toInstructions() {
+        List<TACInstruction> code = new ArrayList<>();
+        for (BasicBlock block : getBlocks()) code.addAll(block.getInstructions());
+        return code;
+    }
+
+    /**
+     * Getters
+     */
+    public String getFunctionName()          { return functionName;        }
+    public BasicBlock getEntry()             { return blocks.get(0);       }
+    public BasicBlock getBlock(String label) { return blockByLabel.get(label); }
+
+    /**
+     * Retorna els blocs en l'ordre del codi, amb els creats per splitEdge ja col·locats
+     *
+     * @return Llista de blocs, que es pot modificar
+     */
+    public List<BasicBlock> getBlocks() {
+        placePendingBlocks();
+        return blocks;
+    }
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CFG " + functionName + "\n");
+        for (BasicBlock block : getBlocks()) {
+            sb.append(block).append(" -> ").append(block.getSuccessors()).append('\n');
+            for (TACInstruction ins : block.getInstructions()) sb.append("    ").append(ins).append('\n');
+        }
+        return sb.toString();
+    }
+}
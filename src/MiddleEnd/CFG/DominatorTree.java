@@ -0,0 +1,246 @@
+package MiddleEnd.CFG;
+
+import java.util.*;
+
+public class DominatorTree {
+    /**
+     * Graf sobre el qual s'han calculat els dominadors
+     */
+    private final ControlFlowGraph cfg;
+    /**
+     * Dominador immediat i fills de cada bloc accessible
+     */
+    private final Map<BasicBlock,BasicBlock> idom = new HashMap<>();
+    private final Map<BasicBlock,List<BasicBlock>> children = new HashMap<>();
+    /**
+     * Numeració pre/post de l'arbre per respondre dominates() en temps constant
+     */
+    private final Map<BasicBlock,Integer> preorder = new HashMap<>();
+    private final Map<BasicBlock,Integer> postorder = new HashMap<>();
+    /**
+     * Blocs afegits després del càlcul amb insertDominator: bloc nou -> bloc que domina immediatament
+     * i amb qui comparteix la numeració
+     */
+    private final Map<BasicBlock,BasicBlock> insertedAbove = new HashMap<>();
+    /**
+     * Frontera de dominància (es calcula només si algú la demana)
+     */
+    private Map<BasicBlock,Set<BasicBlock>> frontier;
+
+    /**
+     * Calcula l'arbre de dominadors amb l'algorisme de Lengauer-Tarjan (versió simple amb compressió
+     * de camins), gairebé lineal en el nombre d'arestes.
+     *
+     * @param cfg Graf de flux de control
+     */
+    public DominatorTree(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        compute();
+        numberTree();
+    }
+
+    private void compute() {
+        // 1) Recorregut en profunditat iteratiu: numerem els blocs accessibles
+        List<BasicBlock> vertex = new ArrayList<>();
+        Map<BasicBlock,Integer> dfnum = new HashMap<>();
+        List<Integer> parent = new ArrayList<>();
+
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Deque<Integer> parentStack = new ArrayDeque<>();
+        stack.push(cfg.getEntry());
+        parentStack.push(-1);
+        while (!stack.isEmpty()) {
+            BasicBlock block = stack.pop();
+            int p = parentStack.pop();
+            if (dfnum.containsKey(block)) continue;
+            dfnum.put(block, vertex.size());
+            vertex.add(block);
+            parent.add(p);
+            List<BasicBlock> succs = block.getSuccessors();
+            for (int i = succs.size() - 1; i >= 0; i--) {
+                if (!dfnum.containsKey(succs.get(i))) {
+                    stack.push(succs.get(i));
+                    parentStack.push(dfnum.get(block));
+                }
+            }
+        }
+
+        int n = vertex.size();
+        int[] semi = new int[n];
+        int[] dom = new int[n];
+        int[] ancestor = new int[n];
+        int[] best = new int[n];
+        List<List<Integer>> bucket = new ArrayList<>(n);
+        for (int v = 0; v < n; v++) {
+            semi[v] = v;
+            ancestor[v] = -1;
+            best[v] = v;
+            bucket.add(new ArrayList<>());
+        }
+
+        // 2) Semidominadors en ordre invers i dominadors implícits
+        for (int w = n - 1; w > 0; w--) {
+            for (BasicBlock pred : vertex.get(w).getPredecessors()) {
+                Integer v = dfnum.get(pred);
+                if (v == null) continue; // predecessor inaccessible
+                int u = eval(v, ancestor, semi, best);
+                if (semi[u] < semi[w]) semi[w] = semi[u];
+            }
+            bucket.get(semi[w]).add(w);
+            int p = parent.get(w);
+            ancestor[w] = p;
+            for (int v : bucket.get(p)) {
+                int u = eval(v, ancestor, semi, best);
+                dom[v] = semi[u] < semi[v] ? u : p;
+            }
+            bucket.get(p).clear();
+        }
+
+        // 3) Dominadors explícits
+        for (int w = 1; w < n; w++) {
+            if (dom[w] != semi[w]) dom[w] = dom[dom[w]];
+        }
+
+        for (BasicBlock block : vertex) children.put(block, new ArrayList<>());
+        for (int w = 1; w < n; w++) {
+            BasicBlock block = vertex.get(w);
+            BasicBlock dominator = vertex.get(dom[w]);
+            idom.put(block, dominator);
+            children.get(dominator).add(block);
+        }
+    }
+
+    /**
+     * Retorna el node de semidominador mínim del camí fins a l'arrel del bosc, comprimint el camí.
+     * La compressió és iterativa per no dependre de la profunditat de la pila.
+     */
+    private int eval(int v, int[] ancestor, int[] semi, int[] best) {
+        if (ancestor[v] == -1) return v;
+
+        Deque<Integer> path = new ArrayDeque<>();
+        int u = v;
+        while (ancestor[ancestor[u]] != -1) {
+            path.push(u);
+            u = ancestor[u];
+        }
+        while (!path.isEmpty()) {
+            int x = path.pop();
+            int a = ancestor[x];
+            if (semi[best[a]] < semi[best[x]]) best[x] = best[a];
+            ancestor[x] = ancestor[a];
+        }
+        return best[v];
+    }
+
+    private void numberTree() {
+        int counter = 0;
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+        BasicBlock entry = cfg.getEntry();
+        preorder.put(entry, counter++);
+        stack.push(entry);
+        nextChild.push(0);
+        while (!stack.isEmpty()) {
+            BasicBlock block = stack.peek();
+            int child = nextChild.pop();
+            List<BasicBlock> kids = children.getOrDefault(block, List.of());
+            if (child < kids.size()) {
+                nextChild.push(child + 1);
+                BasicBlock kid = kids.get(child);
+                preorder.put(kid, counter++);
+                stack.push(kid);
+                nextChild.push(0);
+            } else {
+                stack.pop();
+                postorder.put(block, counter++);
+            }
+        }
+    }
+
+    /**
+     * Comprova si un bloc domina un altre (tot bloc es domina a si mateix)
+     *
+     * @param a Possible dominador
+     * @param b Bloc dominat
+     * @return true si tot camí des de l'entrada fins a b passa per a
+     */
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        if (a == b) return isReachable(a);
+        Integer preA = preorder.get(a), preB = preorder.get(b);
+        if (preA == null || preB == null) return false;
+        if (preA.equals(preB) && postorder.get(a).equals(postorder.get(b))) {
+            // Mateix interval: un dels dos s'ha afegit al damunt de l'altre
+            for (BasicBlock x = insertedAbove.get(a); x != null; x = insertedAbove.get(x)) {
+                if (x == b) return true;
+            }
+            return false;
+        }
+        return preA <= preB && postorder.get(b) <= postorder.get(a);
+    }
+
+    /**
+     * Afegeix un bloc nou que s'ha col·locat a l'única aresta per on s'entra a un bloc des de fora dels
+     * blocs que domina (la preheader d'un bucle). El bloc nou passa a ser-ne el dominador immediat i domina
+     * el mateix que ell, de manera que no cal tornar a calcular l'arbre.
+     *
+     * @param block     Bloc nou
+     * @param dominated Bloc on porta l'aresta partida
+     */
+    public void insertDominator(BasicBlock block, BasicBlock dominated) {
+        BasicBlock above = idom.get(dominated);
+        if (above != null) {
+            List<BasicBlock> siblings = children.get(above);
+            siblings.set(siblings.indexOf(dominated), block);
+            idom.put(block, above);
+        }
+        List<BasicBlock> kids = new ArrayList<>();
+        kids.add(dominated);
+        children.put(block, kids);
+        idom.put(dominated, block);
+        preorder.put(block, preorder.get(dominated));
+        postorder.put(block, postorder.get(dominated));
+        insertedAbove.put(block, dominated);
+        frontier = null;
+    }
+
+    /**
+     * Retorna la frontera de dominància d'un bloc (Cytron et al., amb el recorregut de Cooper-Harvey-Kennedy)
+     *
+     * @param block Bloc
+     * @return Blocs on deixa de dominar
+     */
+    public Set<BasicBlock> getDominanceFrontier(BasicBlock block) {
+        if (frontier == null) {
+            frontier = new HashMap<>();
+            for (BasicBlock b : preorder.keySet()) frontier.put(b, new LinkedHashSet<>());
+            for (BasicBlock b : cfg.getBlocks()) {
+                if (!isReachable(b) || b.getPredecessors().size() < 2) continue;
+                for (BasicBlock pred : b.getPredecessors()) {
+                    if (!isReachable(pred)) continue;
+                    BasicBlock runner = pred;
+                    while (runner != idom.get(b)) {
+                        frontier.get(runner).add(b);
+                        runner = idom.get(runner);
+                    }
+                }
+            }
+        }
+        return frontier.getOrDefault(block, Set.of());
+    }
+
+    /**
+     * Indica si el bloc és accessible des de l'entrada
+     *
+     * @param block Bloc
+     * @return true si el bloc és a l'arbre de dominadors
+     */
+    public boolean isReachable(BasicBlock block) {
+        return preorder.containsKey(block);
+    }
+
+    /**
+     * Getters
+     */
+    public BasicBlock getImmediateDominator(BasicBlock block) { return idom.get(block); }
+    public List<BasicBlock> getChildren(BasicBlock block)     { return children.getOrDefault(block, List.of()); }
+}
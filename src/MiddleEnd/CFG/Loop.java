@@ -0,0 +1,97 @@
+package MiddleEnd.CFG;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Loop {
+    /**
+     * Capçalera del bucle (l'únic punt d'entrada d'un bucle natural)
+     */
+    private final BasicBlock header;
+    /**
+     * Anàlisi que l'ha trobat, per saber a quin bucle pertany cada bloc
+     */
+    private final LoopInfo info;
+    /**
+     * Blocs amb una aresta de tornada cap a la capçalera
+     */
+    private final List<BasicBlock> latches = new ArrayList<>();
+    /**
+     * Bucle que el conté i bucles que conté directament
+     */
+    private Loop parent;
+    private final List<Loop> children = new ArrayList<>();
+    /**
+     * Interval del bucle en la numeració pre/post de l'arbre de bucles i nombre de bucles que el contenen
+     */
+    private int preorder, postorder;
+    private int depth = 1;
+
+    /**
+     * Constructor de la classe Loop
+     *
+     * @param header Capçalera del bucle
+     * @param info   Anàlisi de bucles a què pertany
+     */
+    Loop(BasicBlock header, LoopInfo info) {
+        this.header = header;
+        this.info = info;
+    }
+
+    /**
+     * Retorna la profunditat del bucle (1 per als bucles més externs)
+     *
+     * @return Profunditat del bucle
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Comprova si un bloc pertany al bucle, directament o a través d'un bucle intern
+     *
+     * @param block Bloc a comprovar
+     * @return true si el bloc és dins del bucle
+     */
+    public boolean contains(BasicBlock block) {
+        Loop loop = info.getLoopFor(block);
+        return loop != null && contains(loop);
+    }
+
+    /**
+     * Comprova si un bucle és aquest o un dels seus interns
+     *
+     * @param loop Bucle a comprovar
+     * @return true si el bucle és dins d'aquest
+     */
+    public boolean contains(Loop loop) {
+        return preorder <= loop.preorder && loop.postorder <= postorder;
+    }
+
+    void setParent(Loop parent) {
+        this.parent = parent;
+        parent.children.add(this);
+    }
+
+    void enter(int number) {
+        preorder = number;
+        if (parent != null) depth = parent.depth + 1;
+    }
+
+    void leave(int number) {
+        postorder = number;
+    }
+
+    /**
+     * Getters
+     */
+    public BasicBlock getHeader()        { return header;   }
+    public List<BasicBlock> getLatches() { return latches;  }
+    public Loop getParent()              { return parent;   }
+    public List<Loop> getChildren()      { return children; }
+
+    @Override
+    public String toString() {
+        return "Loop(" + header + ", depth " + getDepth() + ")";
+    }
+}
@@ -0,0 +1,145 @@
+package MiddleEnd.CFG;
+
+import java.util.*;
+
+public final class LoopInfo {
+    /**
+     * Bucles naturals del graf, dels més externs als més interns
+     */
+    private final List<Loop> loops = new ArrayList<>();
+    /**
+     * Bucle més intern que conté cada bloc
+     */
+    private final Map<BasicBlock,Loop> innermost = new HashMap<>();
+
+    /**
+     * Detecta els bucles naturals: cada aresta u -> h on h domina u és una aresta de tornada, i el cos
+     * del bucle són els blocs que arriben a u sense passar per h. Els bucles amb la mateixa capçalera
+     * es fusionen. Les capçaleres es visiten dels bucles interns als externs i cada bucle intern ja trobat
+     * es tracta com un sol node (union-find), de manera que cada bloc s'assigna una sola vegada al seu
+     * bucle més intern i el cost és gairebé lineal fins i tot amb molts nivells d'imbricació.
+     *
+     * @param cfg        Graf de flux de control
+     * @param dominators Arbre de dominadors del graf
+     */
+    public LoopInfo(ControlFlowGraph cfg, DominatorTree dominators) {
+        List<BasicBlock> order = cfg.reversePostOrder();
+        Map<BasicBlock,Loop> byHeader = new HashMap<>();
+        // Bloc que representa cada bloc ja absorbit per un bucle: la capçalera del bucle més extern trobat
+        Map<BasicBlock,BasicBlock> representative = new HashMap<>();
+        List<Loop> found = new ArrayList<>();
+
+        for (int i = order.size() - 1; i >= 0; i--) {
+            BasicBlock header = order.get(i);
+            Deque<BasicBlock> work = new ArrayDeque<>();
+            for (BasicBlock pred : header.getPredecessors()) {
+                if (dominators.isReachable(pred) && dominators.dominates(header, pred)) work.push(pred);
+            }
+            if (work.isEmpty()) continue;
+
+            Loop loop = new Loop(header, this);
+            loop.getLatches().addAll(work);
+            byHeader.put(header, loop);
+            found.add(loop);
+            innermost.put(header, loop);
+
+            while (!work.isEmpty()) {
+                BasicBlock block = find(representative, work.pop());
+                if (block == header) continue;
+
+                Loop inner = byHeader.get(block);
+                if (inner != null) {
+                    inner.setParent(loop);
+                } else {
+                    innermost.put(block, loop);
+                }
+                representative.put(block, header);
+                for (BasicBlock pred : block.getPredecessors()) {
+                    if (dominators.isReachable(pred) && find(representative, pred) != header) work.push(pred);
+                }
+            }
+        }
+
+        // Numeració de l'arbre de bucles: un bucle conté els que cauen dins del seu interval
+        Collections.reverse(found);
+        int counter = 0;
+        Deque<Loop> stack = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+        for (Loop root : found) {
+            if (root.getParent() != null) continue;
+            root.enter(counter++);
+            loops.add(root);
+            stack.push(root);
+            nextChild.push(0);
+            while (!stack.isEmpty()) {
+                Loop loop = stack.peek();
+                int child = nextChild.pop();
+                if (child < loop.getChildren().size()) {
+                    nextChild.push(child + 1);
+                    Loop kid = loop.getChildren().get(child);
+                    kid.enter(counter++);
+                    loops.add(kid);
+                    stack.push(kid);
+                    nextChild.push(0);
+                } else {
+                    stack.pop();
+                    loop.leave(counter++);
+                }
+            }
+        }
+    }
+
+    /**
+     * Representant actual d'un bloc, comprimint el camí
+     */
+    private static BasicBlock find(Map<BasicBlock,BasicBlock> representative, BasicBlock block) {
+        BasicBlock root = block;
+        while (representative.containsKey(root)) root = representative.get(root);
+        while (block != root) {
+            BasicBlock next = representative.get(block);
+            representative.put(block, root);
+            block = next;
+        }
+        return root;
+    }
+
+    /**
+     * Afegeix un bloc nou (una preheader, per exemple) al bucle indicat
+     *
+     * @param block Bloc creat després de l'anàlisi
+     * @param loop  Bucle més intern que el conté, o null si és fora de tots
+     */
+    public void addBlock(BasicBlock block, Loop loop) {
+        if (loop != null) innermost.put(block, loop);
+    }
+
+    /**
+     * Retorna el bucle més intern que conté un bloc
+     *
+     * @param block Bloc
+     * @return El bucle o null si el bloc no és dins de cap bucle
+     */
+    public Loop getLoopFor(BasicBlock block) {
+        return innermost.get(block);
+    }
+
+    /**
+     * Retorna la profunditat de bucle d'un bloc (0 fora de bucles)
+     *
+     * @param block Bloc
+     * @return Nombre de bucles que el contenen
+     */
+    public int getLoopDepth(BasicBlock block) {
+        Loop loop = innermost.get(block);
+        return loop == null ? 0 : loop.getDepth();
+    }
+
+    /**
+     * Retorna tots els bucles, dels més externs als més interns
+     *
+     * @return Llista de bucles, en preordre de l'arbre de bucles
+     */
+    public List<Loop> getLoops() {
+        return loops;
+    }
+}
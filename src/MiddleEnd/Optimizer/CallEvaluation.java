@@ -0,0 +1,215 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.Symbol;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.*;
+
+public class CallEvaluation implements OptimizationPass {
+    /**
+     * Instruccions TAC que es poden executar per avaluar una crida
+     */
+    private static final int MAX_STEPS = 200_000;
+    /**
+     * Profunditat màxima de crides niades durant l'avaluació
+     */
+    private static final int MAX_DEPTH = 500;
+
+    private final Map<String,List<TACInstruction>> functions;
+    private final PurityAnalysis purity;
+    private final SymbolTable symbolTable;
+    /**
+     * Resultat de cada crida ja avaluada ("f(1,2)" -> literal, o null si no s'ha pogut avaluar)
+     */
+    private final Map<String,String> results = new HashMap<>();
+    private final Map<String,Boolean> evaluable = new HashMap<>();
+    private final Map<String,Map<String,Integer>> labels = new HashMap<>();
+    private int steps;
+
+    /**
+     * Constructor de la classe CallEvaluation
+     *
+     * @param functions   Cos TAC original de cada funció, que és el que s'executa
+     * @param symbolTable Taula de símbols del programa
+     */
+    public CallEvaluation(Map<String,List<TACInstruction>> functions, SymbolTable symbolTable) {
+        this.functions = functions;
+        this.purity = new PurityAnalysis(functions, symbolTable);
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Substitueix les crides a funcions pures amb tots els arguments literals pel valor que retornen.
+     * La funció s'executa sobre el TAC amb la mateixa aritmètica que el backend; si s'esgota el pressupost
+     * de passos, hi ha una operació que no es pot plegar (desbordament, divisió per zero) o es llegeix
+     * una variable sense valor, la crida es deixa per a l'execució.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha substituït alguna crida
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        boolean modified = false;
+        for (BasicBlock block : cfg.getBlocks()) {
+            List<TACInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                TACInstruction ins = instructions.get(i);
+                if (!"call".equals(ins.getOp()) || !isEvaluable(ins.getArg1())) continue;
+
+                // Els arguments són els param des de la crida anterior
+                List<Integer> params = new ArrayList<>();
+                for (int j = i - 1; j >= 0 && !"call".equals(instructions.get(j).getOp()); j--) {
+                    if ("param".equals(instructions.get(j).getOp())) params.add(0, j);
+                }
+                List<String> args = new ArrayList<>();
+                for (int j : params) args.add(instructions.get(j).getArg1());
+                if (args.size() != arity(ins.getArg1()) || !args.stream().allMatch(ConstantFolder::isConstant)) continue;
+
+                String value = evaluate(ins.getArg1(), args);
+                if (value == null) continue;
+
+                if (ins.getResult() != null) {
+                    instructions.set(i, new TACInstruction("=", value, null, ins.getResult()));
+                } else {
+                    instructions.remove(i);
+                }
+                for (int k = params.size() - 1; k >= 0; k--) instructions.remove((int) params.get(k));
+                i -= params.size();
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    private String evaluate(String function, List<String> args) {
+        String key = function + args;
+        if (results.containsKey(key)) return results.get(key);
+
+        String value;
+        steps = 0;
+        try {
+            value = execute(function, args, 0);
+            if (value != null && "int".equals(returnType(function)) && ConstantFolder.isChar(value)) {
+                value = Integer.toString(value.charAt(1));
+            }
+        } catch (EvaluationAborted e) {
+            value = null;
+        }
+        results.put(key, value);
+        return value;
+    }
+
+    /**
+     * Interpreta el cos TAC d'una funció
+     *
+     * @return El literal retornat
+     */
+    private String execute(String function, List<String> args, int depth) {
+        if (depth > MAX_DEPTH) throw new EvaluationAborted();
+        List<TACInstruction> body = functions.get(function);
+        Map<String,Integer> targets = labelsOf(function);
+
+        Map<String,String> values = new HashMap<>();
+        for (int k = 0; k < args.size(); k++) values.put("param" + (k + 1), args.get(k));
+        List<String> pending = new ArrayList<>();
+
+        int pc = 0;
+        while (pc < body.size()) {
+            if (++steps > MAX_STEPS) throw new EvaluationAborted();
+            TACInstruction ins = body.get(pc++);
+            switch (ins.getOp()) {
+                case "label":
+                    break;
+                case "goto":
+                    pc = targets.get(ins.getResult());
+                    break;
+                case "ifFalse":
+                    if ("1".equals(ConstantFolder.fold("NOT", valueOf(ins.getArg1(), values), null))) {
+                        pc = targets.get(ins.getResult());
+                    }
+                    break;
+                case "param":
+                    pending.add(valueOf(ins.getArg1(), values));
+                    break;
+                case "call": {
+                    String callee = ins.getArg1();
+                    if (!isEvaluable(callee) || pending.size() != arity(callee)) throw new EvaluationAborted();
+                    String result = execute(callee, pending, depth + 1);
+                    pending = new ArrayList<>();
+                    if (ins.getResult() != null) {
+                        if (result == null) throw new EvaluationAborted();
+                        values.put(ins.getResult(), result);
+                    }
+                    break;
+                }
+                case "return":
+                    if (ins.getArg1() == null) throw new EvaluationAborted();
+                    return valueOf(ins.getArg1(), values);
+                default: {
+                    String a2 = ins.getArg2() != null ? valueOf(ins.getArg2(), values) : null;
+                    String folded = ConstantFolder.fold(ins.getOp(), valueOf(ins.getArg1(), values), a2);
+                    if (folded == null || ConstantFolder.isFloat(folded)) throw new EvaluationAborted();
+                    values.put(ins.getResult(), folded);
+                }
+            }
+        }
+        // Ha arribat al final sense return: no hi ha valor
+        throw new EvaluationAborted();
+    }
+
+    private static String valueOf(String operand, Map<String,String> values) {
+        if (ConstantFolder.isConstant(operand)) return operand;
+        String value = values.get(operand);
+        if (value == null) throw new EvaluationAborted();
+        return value;
+    }
+
+    /**
+     * Es poden avaluar les funcions pures que no fan servir reals: les conversions implícites entre
+     * enters i reals depenen del tipus declarat de cada variable
+     */
+    private boolean isEvaluable(String function) {
+        return evaluable.computeIfAbsent(function, f -> {
+            if (!purity.isPure(f) || !functions.containsKey(f)) return false;
+            TypeInference types = new TypeInference(f, functions.get(f), symbolTable);
+            for (TACInstruction ins : functions.get(f)) {
+                if (ins.getDefinedName() != null && types.isFloat(ins.getDefinedName())) return false;
+            }
+            return true;
+        });
+    }
+
+    private Map<String,Integer> labelsOf(String function) {
+        return labels.computeIfAbsent(function, f -> {
+            Map<String,Integer> targets = new HashMap<>();
+            List<TACInstruction> body = functions.get(f);
+            for (int i = 0; i < body.size(); i++) {
+                if ("label".equals(body.get(i).getOp())) targets.put(body.get(i).getResult(), i);
+            }
+            return targets;
+        });
+    }
+
+    private int arity(String function) {
+        Symbol symbol = symbolTable.getGlobalScope().lookupSymbol(function);
+        return symbol != null && symbol.getParameters() != null ? symbol.getParameters().size() : 0;
+    }
+
+    private String returnType(String function) {
+        return symbolTable.getGlobalScope().lookupSymbol(function).getReturnType();
+    }
+
+    /**
+     * L'avaluació no pot continuar: la crida es queda com estava
+     */
+    private static final class EvaluationAborted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        EvaluationAborted() {
+            super(null, null, false, false);
+        }
+    }
+}
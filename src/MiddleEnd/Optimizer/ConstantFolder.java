@@ -0,0 +1,174 @@
+package MiddleEnd.Optimizer;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class ConstantFolder {
+
+    private ConstantFolder() {}
+
+    /**
+     * Comprova si un operand TAC és un literal
+     *
+     * @param operand Operand a comprovar
+     * @return true si és un enter, un real o un caràcter
+     */
+    public static boolean isConstant(String operand) {
+        return isInt(operand) || isFloat(operand) || isChar(operand);
+    }
+
+    public static boolean isInt(String operand)   { return operand != null && operand.matches("^-?\\d+$");       }
+    public static boolean isFloat(String operand) { return operand != null && operand.matches("^-?\\d+\\.\\d+$"); }
+    public static boolean isChar(String operand)  { return operand != null && operand.matches("^'.'$");          }
+
+    /**
+     * Avalua una operació TAC sobre literals amb la mateixa semàntica que el codi MIPS generat:
+     * aritmètica entera de 32 bits, reals de precisió simple i comparacions que retornen 0 o 1.
+     *
+     * @param op   Operació TAC
+     * @param arg1 Primer operand
+     * @param arg2 Segon operand (null en operacions unàries)
+     * @return El literal resultant o null si no es pot avaluar en temps de compilació
+     */
+    public static String fold(String op, String arg1, String arg2) {
+        if (!isConstant(arg1) || (arg2 != null && !isConstant(arg2))) return null;
+        try {
+            return evaluate(op, arg1, arg2);
+        } catch (NumberFormatException e) {
+            return null; // literal fora de rang
+        }
+    }
+
+    /**
+     * Plega una operació tal com l'executaria el backend sobre un resultat del tipus indicat: si el resultat
+     * és real, l'aritmètica es fa en coma flotant; si és enter, no s'accepta cap resultat real.
+     *
+     * @param op         Operació TAC
+     * @param arg1       Primer operand
+     * @param arg2       Segon operand (null en operacions unàries i còpies)
+     * @param realResult Cert si el resultat es guarda en un registre de coma flotant
+     * @return El literal resultant o null si no es pot avaluar
+     */
+    public static String fold(String op, String arg1, String arg2, boolean realResult) {
+        if (realResult && List.of("=", "SUM", "SUB", "MULT", "DIV", "MOD").contains(op)) {
+            arg1 = toFloat(arg1);
+            arg2 = toFloat(arg2);
+        }
+        String folded = fold(op, arg1, arg2);
+        if (folded == null || (!realResult && isFloat(folded))) return null;
+        return folded;
+    }
+
+    private static String toFloat(String literal) {
+        if (!isInt(literal) && !isChar(literal)) return literal;
+        try {
+            return formatFloat(asInt(literal));
+        } catch (NumberFormatException e) {
+            return literal;
+        }
+    }
+
+    private static String evaluate(String op, String arg1, String arg2) {
+        if ("=".equals(op)) return arg1;
+        if ("NOT".equals(op)) return asDouble(arg1) == 0 ? "1" : "0";
+        if (arg2 == null) return null;
+
+        boolean real = isFloat(arg1) || isFloat(arg2);
+        switch (op) {
+            case "SUM":
+            case "SUB":
+            case "MULT":
+            case "DIV":
+            case "MOD":
+                return real ? foldFloat(op, asFloat(arg1), asFloat(arg2)) : foldInt(op, asInt(arg1), asInt(arg2));
+
+            case "ADDU":
+            case "SHL":
+            case "SHR":
+            case "SHRU":
+            case "BAND":
+            case "MULHI":
+                return real ? null : foldInt(op, asInt(arg1), asInt(arg2));
+
+            case "==": return bool(compare(arg1, arg2, real) == 0);
+            case "!=": return bool(compare(arg1, arg2, real) != 0);
+            case "<":  return bool(compare(arg1, arg2, real) < 0);
+            case "<=": return bool(compare(arg1, arg2, real) <= 0);
+            case ">":  return bool(compare(arg1, arg2, real) > 0);
+            case ">=": return bool(compare(arg1, arg2, real) >= 0);
+            case "&&": return bool(asDouble(arg1) != 0 && asDouble(arg2) != 0);
+            case "||": return bool(asDouble(arg1) != 0 || asDouble(arg2) != 0);
+            default:   return null;
+        }
+    }
+
+    private static String foldInt(String op, int a, int b) {
+        try {
+            switch (op) {
+                // add i sub de MIPS generen una excepció si desborden: en aquest cas no pleguem
+                case "SUM":  return Integer.toString(Math.addExact(a, b));
+                case "SUB":  return Integer.toString(Math.subtractExact(a, b));
+                case "MULT": return Integer.toString(a * b);
+                case "DIV":
+                case "MOD":
+                    if (b == 0 || (a == Integer.MIN_VALUE && b == -1)) return null;
+                    return Integer.toString("DIV".equals(op) ? a / b : a % b);
+                // Operacions de màquina que introdueix la reducció de força
+                case "ADDU":  return Integer.toString(a + b);
+                case "SHL":   return Integer.toString(a << b);
+                case "SHR":   return Integer.toString(a >> b);
+                case "SHRU":  return Integer.toString(a >>> b);
+                case "BAND":  return Integer.toString(a & b);
+                case "MULHI": return Integer.toString((int) (((long) a * b) >> 32));
+                default:     return null;
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static String foldFloat(String op, float a, float b) {
+        float r;
+        switch (op) {
+            case "SUM":  r = a + b; break;
+            case "SUB":  r = a - b; break;
+            case "MULT": r = a * b; break;
+            case "DIV":  r = a / b; break;
+            default:     return null;
+        }
+        if (Float.isNaN(r) || Float.isInfinite(r)) return null;
+        return formatFloat(r);
+    }
+
+    /**
+     * Escriu un real en el format de literal que accepta el backend (sempre amb part decimal i sense exponent)
+     */
+    public static String formatFloat(float value) {
+        String text = new BigDecimal(Float.toString(value)).toPlainString();
+        return text.contains(".") ? text : text + ".0";
+    }
+
+    private static int compare(String arg1, String arg2, boolean real) {
+        if (!real) return Integer.compare(asInt(arg1), asInt(arg2));
+        float a = asFloat(arg1), b = asFloat(arg2);
+        return a < b ? -1 : (a > b ? 1 : 0);
+    }
+
+    private static String bool(boolean value) {
+        return value ? "1" : "0";
+    }
+
+    private static int asInt(String literal) {
+        if (isChar(literal)) return literal.charAt(1);
+        return Integer.parseInt(literal);
+    }
+
+    private static float asFloat(String literal) {
+        if (isFloat(literal)) return Float.parseFloat(literal);
+        return asInt(literal);
+    }
+
+    private static double asDouble(String literal) {
+        return isFloat(literal) ? Float.parseFloat(literal) : asInt(literal);
+    }
+}
@@ -0,0 +1,143 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.*;
+
+public class ConstantPropagation implements OptimizationPass {
+
+    private final SymbolTable symbolTable;
+    private TypeInference types;
+
+    /**
+     * Constructor de la classe ConstantPropagation
+     *
+     * @param symbolTable Taula de símbols, per convertir les constants al tipus de la variable que les rep
+     */
+    public ConstantPropagation(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Propaga els valors constants coneguts per tota la funció (flux de dades cap endavant sobre els blocs),
+     * plega les operacions amb tots els operands constants i resol els ifFalse amb condició coneguda.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha modificat alguna instrucció
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        types = new TypeInference(cfg.getFunctionName(), cfg.toInstructions(), symbolTable);
+        List<BasicBlock> order = cfg.reversePostOrder();
+        Map<BasicBlock,Map<String,String>> out = new HashMap<>();
+
+        // 1) Punt fix: constants conegudes a la sortida de cada bloc accessible
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : order) {
+                Map<String,String> values = meet(cfg, block, out);
+                transfer(block, values, false);
+                if (!values.equals(out.get(block))) {
+                    out.put(block, values);
+                    changed = true;
+                }
+            }
+        }
+
+        // 2) Reescriptura amb les constants de l'entrada de cada bloc
+        boolean modified = false;
+        for (BasicBlock block : order) {
+            modified |= transfer(block, meet(cfg, block, out), true);
+        }
+        if (modified) cfg.computeEdges();
+        return modified;
+    }
+
+    /**
+     * Constants a l'entrada d'un bloc: les que coincideixen a tots els predecessors ja visitats.
+     * A l'entrada de la funció no es coneix cap valor.
+     */
+    private Map<String,String> meet(ControlFlowGraph cfg, BasicBlock block, Map<BasicBlock,Map<String,String>> out) {
+        Map<String,String> values = null;
+        if (block == cfg.getEntry()) return new HashMap<>();
+
+        for (BasicBlock pred : block.getPredecessors()) {
+            Map<String,String> predOut = out.get(pred);
+            if (predOut == null) continue;
+            if (values == null) {
+                values = new HashMap<>(predOut);
+            } else {
+                values.entrySet().removeIf(e -> !e.getValue().equals(predOut.get(e.getKey())));
+            }
+        }
+        return values == null ? new HashMap<>() : values;
+    }
+
+    /**
+     * Recorre un bloc actualitzant les constants conegudes. Si rewrite és cert, substitueix els operands
+     * constants, plega les operacions i resol els salts condicionals.
+     *
+     * @return true si s'ha reescrit alguna instrucció
+     */
+    private boolean transfer(BasicBlock block, Map<String,String> values, boolean rewrite) {
+        List<TACInstruction> instructions = block.getInstructions();
+        boolean modified = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            TACInstruction ins = instructions.get(i);
+            String op = ins.getOp();
+            if ("label".equals(op) || "goto".equals(op) || "call".equals(op)) {
+                if ("call".equals(op) && ins.getDefinedName() != null) values.remove(ins.getDefinedName());
+                continue;
+            }
+
+            String a1 = substitute(ins.getArg1(), values);
+            String a2 = substitute(ins.getArg2(), values);
+
+            if ("ifFalse".equals(op)) {
+                String taken = ConstantFolder.fold("==", a1, "0");
+                if (rewrite && taken != null) {
+                    if ("1".equals(taken)) {
+                        instructions.set(i, new TACInstruction("goto", null, null, ins.getResult()));
+                    } else {
+                        instructions.remove(i--);
+                    }
+                    modified = true;
+                    continue;
+                }
+            }
+
+            String def = ins.getDefinedName();
+            String folded = def != null ? ConstantFolder.fold(op, a1, a2, types.isFloat(def)) : null;
+
+            if (rewrite) {
+                TACInstruction replacement = null;
+                if (folded != null && (!"=".equals(op) || !folded.equals(ins.getArg1()))) {
+                    replacement = new TACInstruction("=", folded, null, ins.getResult());
+                } else if (!Objects.equals(a1, ins.getArg1()) || !Objects.equals(a2, ins.getArg2())) {
+                    replacement = new TACInstruction(op, a1, a2, ins.getResult());
+                }
+                if (replacement != null) {
+                    instructions.set(i, replacement);
+                    modified = true;
+                }
+            }
+
+            if (def != null) {
+                if (folded != null) values.put(def, folded);
+                else values.remove(def);
+            }
+        }
+        return modified;
+    }
+
+    private String substitute(String operand, Map<String,String> values) {
+        if (operand == null) return null;
+        String value = values.get(operand);
+        return value != null ? value : operand;
+    }
+}
@@ -0,0 +1,165 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.*;
+
+public class ControlFlowSimplification implements OptimizationPass {
+
+    /**
+     * Neteja el graf de flux de control fins que no canvia: elimina els blocs inaccessibles, encadena els
+     * salts que van a un altre salt, treu els salts al bloc següent, fusiona els blocs en línia recta i
+     * esborra les etiquetes que ja no són destí de cap salt.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha modificat el graf
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        boolean modified = false;
+        boolean changed = true;
+        while (changed) {
+            changed = removeUnreachableBlocks(cfg);
+            changed |= threadJumps(cfg);
+            changed |= removeJumpsToNext(cfg);
+            changed |= mergeBlocks(cfg);
+            changed |= removeDeadLabels(cfg);
+            modified |= changed;
+        }
+        return modified;
+    }
+
+    private boolean removeUnreachableBlocks(ControlFlowGraph cfg) {
+        Set<BasicBlock> reachable = new HashSet<>(cfg.reversePostOrder());
+        boolean modified = cfg.getBlocks().removeIf(block -> !reachable.contains(block));
+        if (modified) cfg.computeEdges();
+        return modified;
+    }
+
+    /**
+     * Un salt cap a un bloc que només salta a un altre lloc va directament al destí final. Un goto cap a
+     * un bloc que només retorna es substitueix pel return.
+     */
+    private boolean threadJumps(ControlFlowGraph cfg) {
+        boolean modified = false;
+        for (BasicBlock block : cfg.getBlocks()) {
+            TACInstruction last = block.getTerminator();
+            if (last == null || "return".equals(last.getOp())) continue;
+
+            List<TACInstruction> instructions = block.getInstructions();
+            BasicBlock target = cfg.getBlock(last.getResult());
+            if ("goto".equals(last.getOp()) && target != null && target != block && isOnlyReturn(target)) {
+                instructions.set(instructions.size() - 1, target.getInstructions().get(1));
+                modified = true;
+                continue;
+            }
+
+            String label = finalTarget(cfg, last.getResult());
+            if (!label.equals(last.getResult())) {
+                instructions.set(instructions.size() - 1, new TACInstruction(last.getOp(), last.getArg1(), last.getArg2(), label));
+                modified = true;
+            }
+        }
+        if (modified) cfg.computeEdges();
+        return modified;
+    }
+
+    /**
+     * Segueix la cadena de blocs buits (només l'etiqueta i potser un goto) fins al primer que fa feina
+     */
+    private String finalTarget(ControlFlowGraph cfg, String label) {
+        Set<String> visited = new HashSet<>();
+        while (visited.add(label)) {
+            BasicBlock block = cfg.getBlock(label);
+            if (block == null) break;
+            List<TACInstruction> instructions = block.getInstructions();
+            if (instructions.size() == 2 && "goto".equals(instructions.get(1).getOp())) {
+                label = instructions.get(1).getResult();
+            } else if (instructions.size() == 1) {
+                List<BasicBlock> blocks = cfg.getBlocks();
+                int index = blocks.indexOf(block);
+                if (index + 1 >= blocks.size() || blocks.get(index + 1).getLabel() == null) break;
+                label = blocks.get(index + 1).getLabel();
+            } else {
+                break;
+            }
+        }
+        return label;
+    }
+
+    private boolean isOnlyReturn(BasicBlock block) {
+        List<TACInstruction> instructions = block.getInstructions();
+        return instructions.size() == 2 && block.getLabel() != null && "return".equals(instructions.get(1).getOp());
+    }
+
+    /**
+     * Un goto o un ifFalse cap al bloc que ve just després no fa res
+     */
+    private boolean removeJumpsToNext(ControlFlowGraph cfg) {
+        boolean modified = false;
+        List<BasicBlock> blocks = cfg.getBlocks();
+        for (int i = 0; i + 1 < blocks.size(); i++) {
+            TACInstruction last = blocks.get(i).getTerminator();
+            if (last == null || "return".equals(last.getOp())) continue;
+            if (last.getResult().equals(blocks.get(i + 1).getLabel())) {
+                List<TACInstruction> instructions = blocks.get(i).getInstructions();
+                instructions.remove(instructions.size() - 1);
+                modified = true;
+            }
+        }
+        if (modified) cfg.computeEdges();
+        return modified;
+    }
+
+    /**
+     * Fusiona un bloc amb el seu únic successor quan n'és l'únic predecessor. Si el successor no és
+     * el bloc següent, només es fusiona si no continua pel bloc que el segueix.
+     */
+    private boolean mergeBlocks(ControlFlowGraph cfg) {
+        boolean modified = false;
+        List<BasicBlock> blocks = cfg.getBlocks();
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            if (block.getSuccessors().size() != 1) continue;
+            BasicBlock succ = block.getSuccessors().get(0);
+            if (succ == block || succ == cfg.getEntry() || succ.getPredecessors().size() != 1) continue;
+
+            TACInstruction last = block.getTerminator();
+            boolean adjacent = i + 1 < blocks.size() && blocks.get(i + 1) == succ;
+            if (last != null && !"goto".equals(last.getOp())) continue;
+            if (!adjacent && (last == null || succ.fallsThrough())) continue;
+
+            List<TACInstruction> instructions = block.getInstructions();
+            if (last != null) instructions.remove(instructions.size() - 1);
+            List<TACInstruction> merged = succ.getInstructions();
+            instructions.addAll(succ.getLabel() != null ? merged.subList(1, merged.size()) : merged);
+            blocks.remove(succ);
+            cfg.computeEdges();
+            modified = true;
+            i--;
+        }
+        return modified;
+    }
+
+    /**
+     * Esborra les etiquetes que ja no són destí de cap salt (excepte la de la funció)
+     */
+    private boolean removeDeadLabels(ControlFlowGraph cfg) {
+        Set<String> targets = new HashSet<>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            TACInstruction last = block.getTerminator();
+            if (last != null && !"return".equals(last.getOp())) targets.add(last.getResult());
+        }
+
+        boolean modified = false;
+        for (BasicBlock block : cfg.getBlocks()) {
+            if (block == cfg.getEntry() || block.getLabel() == null || targets.contains(block.getLabel())) continue;
+            block.getInstructions().remove(0);
+            modified = true;
+        }
+        if (modified) cfg.computeEdges();
+        return modified;
+    }
+}
@@ -0,0 +1,166 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.*;
+
+public class CopyPropagation implements OptimizationPass {
+
+    private final SymbolTable symbolTable;
+    private TypeInference types;
+
+    /**
+     * Constructor de la classe CopyPropagation
+     *
+     * @param symbolTable Taula de símbols, per saber quines còpies converteixen entre int i flt
+     */
+    public CopyPropagation(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Elimina les còpies redundants en dues fases: primer fusiona "t = a op b; x = t" en "x = a op b"
+     * quan t només es fa servir a la còpia, i després substitueix els usos de cada còpia "x = y" per y
+     * allà on la còpia arriba per tots els camins. Les còpies que queden mortes les esborra la DCE.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha modificat alguna instrucció
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        types = new TypeInference(cfg.getFunctionName(), cfg.toInstructions(), symbolTable);
+        boolean modified = coalesceDefinitions(cfg);
+        modified |= propagateCopies(cfg);
+        return modified;
+    }
+
+    /**
+     * Reescriu "t = expr; x = t" com "x = expr" si t té una sola definició i un sol ús
+     */
+    private boolean coalesceDefinitions(ControlFlowGraph cfg) {
+        Map<String,Integer> defs = new HashMap<>();
+        Map<String,Integer> uses = new HashMap<>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            for (TACInstruction ins : block.getInstructions()) {
+                if (ins.getDefinedName() != null) defs.merge(ins.getDefinedName(), 1, Integer::sum);
+                for (String u : ins.getUses()) uses.merge(u, 1, Integer::sum);
+            }
+        }
+
+        boolean modified = false;
+        for (BasicBlock block : cfg.getBlocks()) {
+            List<TACInstruction> instructions = block.getInstructions();
+            for (int i = 0; i + 1 < instructions.size(); i++) {
+                TACInstruction def = instructions.get(i);
+                TACInstruction copy = instructions.get(i + 1);
+                String temp = def.getDefinedName();
+                if (temp == null || !"=".equals(copy.getOp()) || !temp.equals(copy.getArg1())) continue;
+                if (defs.get(temp) != 1 || uses.get(temp) != 1) continue;
+                if (!isPureCopy(copy.getResult(), temp)) continue;
+
+                instructions.set(i, new TACInstruction(def.getOp(), def.getArg1(), def.getArg2(), copy.getResult()));
+                instructions.remove(i + 1);
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Propagació de còpies global: flux de dades cap endavant de les còpies disponibles
+     */
+    private boolean propagateCopies(ControlFlowGraph cfg) {
+        List<BasicBlock> order = cfg.reversePostOrder();
+        Map<BasicBlock,Map<String,String>> out = new HashMap<>();
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : order) {
+                Map<String,String> copies = meet(cfg, block, out);
+                transfer(block, copies, false);
+                if (!copies.equals(out.get(block))) {
+                    out.put(block, copies);
+                    changed = true;
+                }
+            }
+        }
+
+        boolean modified = false;
+        for (BasicBlock block : order) {
+            modified |= transfer(block, meet(cfg, block, out), true);
+        }
+        return modified;
+    }
+
+    /**
+     * Còpies disponibles a l'entrada d'un bloc: les que arriben iguals per tots els predecessors visitats
+     */
+    private Map<String,String> meet(ControlFlowGraph cfg, BasicBlock block, Map<BasicBlock,Map<String,String>> out) {
+        Map<String,String> copies = null;
+        if (block == cfg.getEntry()) return new HashMap<>();
+
+        for (BasicBlock pred : block.getPredecessors()) {
+            Map<String,String> predOut = out.get(pred);
+            if (predOut == null) continue;
+            if (copies == null) {
+                copies = new HashMap<>(predOut);
+            } else {
+                copies.entrySet().removeIf(e -> !e.getValue().equals(predOut.get(e.getKey())));
+            }
+        }
+        return copies == null ? new HashMap<>() : copies;
+    }
+
+    private boolean transfer(BasicBlock block, Map<String,String> copies, boolean rewrite) {
+        List<TACInstruction> instructions = block.getInstructions();
+        boolean modified = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            TACInstruction ins = instructions.get(i);
+            String op = ins.getOp();
+
+            if (!"label".equals(op) && !"goto".equals(op) && !"call".equals(op)) {
+                String a1 = substitute(ins.getArg1(), copies);
+                String a2 = substitute(ins.getArg2(), copies);
+                if (!Objects.equals(a1, ins.getArg1()) || !Objects.equals(a2, ins.getArg2())) {
+                    ins = new TACInstruction(op, a1, a2, ins.getResult());
+                    if (rewrite) {
+                        instructions.set(i, ins);
+                        modified = true;
+                    }
+                }
+            }
+
+            // Una definició de v invalida la còpia cap a v i totes les que llegeixen v
+            String def = ins.getDefinedName();
+            if (def == null) continue;
+            copies.remove(def);
+            copies.values().removeIf(def::equals);
+
+            String source = ins.getArg1();
+            if ("=".equals(op) && !ConstantFolder.isConstant(source) && !source.equals(def) && isPureCopy(def, source)) {
+                copies.put(def, source);
+            }
+        }
+        return modified;
+    }
+
+    private String substitute(String operand, Map<String,String> copies) {
+        if (operand == null) return null;
+        String source = copies.get(operand);
+        return source != null ? source : operand;
+    }
+
+    /**
+     * Una còpia és pura si no converteix entre enter i real. Els paramN no es propaguen: només són
+     * vàlids a $a0-$a3 fins a la primera crida.
+     */
+    private boolean isPureCopy(String target, String source) {
+        if (source.matches("param\\d+")) return false;
+        return types.isFloat(target) == types.isFloat(source);
+    }
+}
@@ -0,0 +1,122 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.*;
+
+public class DeadCodeElimination implements OptimizationPass {
+
+    /**
+     * Elimina els blocs inaccessibles i les definicions que ningú no llegeix (temporals morts i
+     * assignacions sobreescrites). Les crides es mantenen pels seus efectes, però perden el resultat
+     * si aquest no es fa servir.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha eliminat alguna instrucció
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        boolean modified = removeUnreachableBlocks(cfg);
+        modified |= removeDeadDefinitions(cfg);
+        return modified;
+    }
+
+    private boolean removeUnreachableBlocks(ControlFlowGraph cfg) {
+        Set<BasicBlock> reachable = new HashSet<>(cfg.reversePostOrder());
+        boolean modified = cfg.getBlocks().removeIf(block -> !reachable.contains(block));
+        if (modified) cfg.computeEdges();
+        return modified;
+    }
+
+    private boolean removeDeadDefinitions(ControlFlowGraph cfg) {
+        List<BasicBlock> blocks = cfg.getBlocks();
+        Map<BasicBlock,Set<String>> liveIn = computeLiveIn(cfg);
+
+        // Recorregut cap enrere de cada bloc eliminant les definicions mortes
+        boolean modified = false;
+        for (BasicBlock block : blocks) {
+            Set<String> live = liveOut(block, liveIn);
+            List<TACInstruction> instructions = block.getInstructions();
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                TACInstruction ins = instructions.get(i);
+                String defined = ins.getDefinedName();
+                if (defined != null && !live.contains(defined)) {
+                    if ("call".equals(ins.getOp())) {
+                        instructions.set(i, new TACInstruction("call", ins.getArg1(), null, null));
+                    } else {
+                        instructions.remove(i);
+                    }
+                    modified = true;
+                    continue;
+                }
+                if (defined != null) live.remove(defined);
+                live.addAll(variablesRead(ins));
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Variables vives a l'entrada de cada bloc (flux de dades cap enrere fins al punt fix)
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return Conjunt de variables vives a l'entrada de cada bloc
+     */
+    static Map<BasicBlock,Set<String>> computeLiveIn(ControlFlowGraph cfg) {
+        List<BasicBlock> blocks = cfg.getBlocks();
+
+        // 1) Variables llegides abans de ser definides (use) i definides (def) a cada bloc
+        Map<BasicBlock,Set<String>> use = new HashMap<>();
+        Map<BasicBlock,Set<String>> def = new HashMap<>();
+        for (BasicBlock block : blocks) {
+            Set<String> blockUse = new HashSet<>();
+            Set<String> blockDef = new HashSet<>();
+            for (TACInstruction ins : block.getInstructions()) {
+                for (String u : variablesRead(ins)) {
+                    if (!blockDef.contains(u)) blockUse.add(u);
+                }
+                if (ins.getDefinedName() != null) blockDef.add(ins.getDefinedName());
+            }
+            use.put(block, blockUse);
+            def.put(block, blockDef);
+        }
+
+        // 2) Punt fix cap enrere: variables vives a l'entrada de cada bloc
+        Map<BasicBlock,Set<String>> liveIn = new HashMap<>();
+        for (BasicBlock block : blocks) liveIn.put(block, new HashSet<>());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = blocks.size() - 1; b >= 0; b--) {
+                BasicBlock block = blocks.get(b);
+                Set<String> in = liveOut(block, liveIn);
+                in.removeAll(def.get(block));
+                in.addAll(use.get(block));
+                if (!in.equals(liveIn.get(block))) {
+                    liveIn.put(block, in);
+                    changed = true;
+                }
+            }
+        }
+        return liveIn;
+    }
+
+    static Set<String> liveOut(BasicBlock block, Map<BasicBlock,Set<String>> liveIn) {
+        Set<String> out = new HashSet<>();
+        for (BasicBlock succ : block.getSuccessors()) out.addAll(liveIn.get(succ));
+        return out;
+    }
+
+    /**
+     * Operands de la instrucció que són variables o temporals (no literals)
+     */
+    static List<String> variablesRead(TACInstruction ins) {
+        List<String> vars = new ArrayList<>(2);
+        for (String u : ins.getUses()) {
+            if (!ConstantFolder.isConstant(u)) vars.add(u);
+        }
+        return vars;
+    }
+}
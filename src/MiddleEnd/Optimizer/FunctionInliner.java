@@ -0,0 +1,229 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.Symbol;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.CallGraph;
+
+import java.util.*;
+
+public class FunctionInliner {
+    /**
+     * Mida màxima (instruccions sense etiquetes) d'una funció que s'integra a totes les crides
+     */
+    private static final int MAX_CALLEE_SIZE = 12;
+    /**
+     * Mida màxima d'una funció que només es crida des d'un lloc: integrar-la no fa créixer el programa
+     */
+    private static final int MAX_SINGLE_CALL_SIZE = 40;
+    /**
+     * A partir d'aquesta mida la funció que crida ja no integra més crides
+     */
+    private static final int MAX_CALLER_SIZE = 300;
+
+    private final CallGraph callGraph;
+    private final SymbolTable symbolTable;
+    /**
+     * Cos ja optimitzat de les funcions que es poden integrar
+     */
+    private final Map<String,List<TACInstruction>> bodies = new HashMap<>();
+
+    private String caller;
+    private Set<String> usedLabels;
+    private int nextTemp;
+    private int nextLabel;
+
+    /**
+     * Constructor de la classe FunctionInliner
+     *
+     * @param callGraph   Graf de crides del programa
+     * @param symbolTable Taula de símbols, per conèixer els paràmetres i els tipus de cada funció
+     */
+    public FunctionInliner(CallGraph callGraph, SymbolTable symbolTable) {
+        this.callGraph = callGraph;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Fa disponible el cos d'una funció per integrar-lo a les que la criden. Les funcions s'han d'afegir
+     * en l'ordre del graf de crides (de les fulles cap amunt), un cop optimitzades.
+     *
+     * @param function Nom de la funció
+     * @param body     Instruccions TAC de la funció, començant per la seva etiqueta
+     */
+    public void addFunction(String function, List<TACInstruction> body) {
+        if (isInlinable(function, body)) bodies.put(function, body);
+    }
+
+    /**
+     * Substitueix les crides a funcions petites (o cridades des d'un sol lloc) pel seu cos. Els arguments
+     * passen a temporals i els paràmetres paramN del cos integrat es reemplacen per aquests temporals; les
+     * variables, temporals i etiquetes de la funció cridada es reanomenen perquè no xoquin amb les de la
+     * funció que crida. Cada return es converteix en una còpia al resultat de la crida i un salt al final.
+     *
+     * @param caller Nom de la funció que crida
+     * @param body   Instruccions TAC de la funció que crida
+     * @return Les instruccions amb les crides integrades
+     */
+    public List<TACInstruction> inline(String caller, List<TACInstruction> body) {
+        if (bodies.isEmpty()) return body;
+        TypeInference types = new TypeInference(caller, body, symbolTable);
+        this.caller = caller;
+        scanNames(body);
+
+        List<TACInstruction> code = new ArrayList<>();
+        for (TACInstruction ins : body) {
+            if (!"call".equals(ins.getOp()) || !shouldInline(ins.getArg1(), code.size())) {
+                code.add(ins);
+                continue;
+            }
+            List<Symbol> parameters = parametersOf(ins.getArg1());
+
+            // Els arguments són els param des de l'última crida dins del mateix bloc
+            List<Integer> params = new ArrayList<>();
+            for (int i = code.size() - 1; i >= 0 && !endsArguments(code.get(i)); i--) {
+                if ("param".equals(code.get(i).getOp())) params.add(0, i);
+            }
+            boolean intArguments = params.stream().allMatch(i -> "int".equals(types.typeOf(code.get(i).getArg1())));
+            if (params.size() != parameters.size() || !intArguments) {
+                code.add(ins);
+                continue;
+            }
+
+            Map<String,String> names = new HashMap<>();
+            for (int k = 0; k < params.size(); k++) {
+                String temp = newTemp();
+                code.set(params.get(k), new TACInstruction("=", code.get(params.get(k)).getArg1(), null, temp));
+                names.put("param" + (k + 1), temp);
+            }
+            code.addAll(instantiate(ins.getArg1(), names, ins.getResult()));
+        }
+        return code;
+    }
+
+    /**
+     * Copia el cos d'una funció amb noms nous
+     *
+     * @param function Funció cridada
+     * @param names    Nom nou de cada operand de la funció (inicialment, els paràmetres)
+     * @param result   On es deixa el valor retornat, o null si no s'aprofita
+     */
+    private List<TACInstruction> instantiate(String function, Map<String,String> names, String result) {
+        Map<String,String> labels = new HashMap<>();
+        String end = newLabel();
+        List<TACInstruction> code = new ArrayList<>();
+
+        for (TACInstruction ins : bodies.get(function)) {
+            String op = ins.getOp();
+            switch (op) {
+                case "label":
+                    if (ins.getResult().equals(function)) break;
+                    code.add(new TACInstruction(op, null, null, labels.computeIfAbsent(ins.getResult(), l -> newLabel())));
+                    break;
+                case "goto":
+                case "ifFalse":
+                    code.add(new TACInstruction(op, rename(ins.getArg1(), names), null,
+                            labels.computeIfAbsent(ins.getResult(), l -> newLabel())));
+                    break;
+                case "return":
+                    if (result != null && ins.getArg1() != null) {
+                        code.add(new TACInstruction("=", rename(ins.getArg1(), names), null, result));
+                    }
+                    code.add(new TACInstruction("goto", null, null, end));
+                    break;
+                case "call":
+                    code.add(new TACInstruction(op, ins.getArg1(), null, rename(ins.getResult(), names)));
+                    break;
+                default:
+                    code.add(new TACInstruction(op, rename(ins.getArg1(), names), rename(ins.getArg2(), names),
+                            rename(ins.getResult(), names)));
+            }
+        }
+        code.add(new TACInstruction("label", null, null, end));
+        return code;
+    }
+
+    private String rename(String operand, Map<String,String> names) {
+        if (operand == null || ConstantFolder.isConstant(operand)) return operand;
+        return names.computeIfAbsent(operand, n -> newTemp());
+    }
+
+    /**
+     * Una funció es pot integrar si no és main, no és recursiva i només treballa amb enters: els seus
+     * noms passen a ser temporals, que prenen el tipus de la instrucció que els defineix.
+     */
+    private boolean isInlinable(String function, List<TACInstruction> body) {
+        if ("main".equals(function) || callGraph.isRecursive(function)) return false;
+        Symbol symbol = symbolTable.getGlobalScope().lookupSymbol(function);
+        if (symbol == null || !symbol.isFunction()) return false;
+
+        String returnType = symbol.getReturnType();
+        if (returnType != null && !"int".equals(returnType) && !"void".equalsIgnoreCase(returnType)) return false;
+        for (Symbol parameter : parametersOf(function)) {
+            if (!"int".equals(parameter.getType())) return false;
+        }
+
+        TypeInference types = new TypeInference(function, body, symbolTable);
+        for (TACInstruction ins : body) {
+            if ((ins.getOp().equals("goto") || ins.getOp().equals("ifFalse")) && function.equals(ins.getResult())) return false;
+            if (ins.getDefinedName() != null && !"int".equals(types.typeOf(ins.getDefinedName()))) return false;
+            if ("return".equals(ins.getOp()) && ins.getArg1() != null && !"int".equals(types.typeOf(ins.getArg1()))) return false;
+        }
+        return true;
+    }
+
+    private boolean shouldInline(String callee, int callerSize) {
+        List<TACInstruction> body = bodies.get(callee);
+        if (body == null || callerSize > MAX_CALLER_SIZE) return false;
+        int size = (int) body.stream().filter(ins -> !"label".equals(ins.getOp())).count();
+        return size <= MAX_CALLEE_SIZE || (callGraph.getCallCount(callee) == 1 && size <= MAX_SINGLE_CALL_SIZE);
+    }
+
+    private static boolean endsArguments(TACInstruction ins) {
+        switch (ins.getOp()) {
+            case "call":
+            case "label":
+            case "goto":
+            case "ifFalse":
+            case "return":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private List<Symbol> parametersOf(String function) {
+        Symbol symbol = symbolTable.getGlobalScope().lookupSymbol(function);
+        return symbol != null && symbol.getParameters() != null ? symbol.getParameters() : List.of();
+    }
+
+    /**
+     * Recull els temporals i etiquetes de la funció que crida perquè els noms nous no hi coincideixin
+     */
+    private void scanNames(List<TACInstruction> body) {
+        usedLabels = new HashSet<>();
+        nextTemp = 0;
+        nextLabel = 0;
+        for (TACInstruction ins : body) {
+            if ("label".equals(ins.getOp())) usedLabels.add(ins.getResult());
+            for (String name : Arrays.asList(ins.getArg1(), ins.getArg2(), ins.getResult())) {
+                if (name != null && name.matches("t\\d+")) {
+                    nextTemp = Math.max(nextTemp, Integer.parseInt(name.substring(1)) + 1);
+                }
+            }
+        }
+    }
+
+    private String newTemp() {
+        return "t" + (nextTemp++);
+    }
+
+    private String newLabel() {
+        String label;
+        do {
+            label = caller + "_L" + (nextLabel++);
+        } while (usedLabels.contains(label));
+        usedLabels.add(label);
+        return label;
+    }
+}
@@ -0,0 +1,241 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.*;
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+
+public class InductionVariableReduction implements OptimizationPass {
+
+    private final SymbolTable symbolTable;
+    private TypeInference types;
+
+    /**
+     * Constructor de la classe InductionVariableReduction
+     *
+     * @param symbolTable Taula de símbols, per distingir les operacions enteres de les reals
+     */
+    public InductionVariableReduction(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Reducció de força de les variables d'inducció: si una variable i només canvia dins del bucle amb
+     * i = i + c, cada producte i * k es pot mantenir en un temporal que s'inicialitza a la preheader i
+     * augmenta c * k cada cop que augmenta i. La multiplicació del bucle passa a ser una còpia.
+     * Les actualitzacions fan servir una suma sense excepció de desbordament, com el mul original.
+     * Es fa una sola passada pels bucles, dels més interns als externs: cada bucle hereta dels fills els
+     * comptes de definicions, les variables d'inducció que encara ho són i els productes que no han pogut
+     * reduir, i només mira els productes de les seves pròpies variables d'inducció.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha reduït algun producte
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        DominatorTree dominators = new DominatorTree(cfg);
+        LoopInfo loopInfo = new LoopInfo(cfg, dominators);
+        if (loopInfo.getLoops().isEmpty()) return false;
+        types = new TypeInference(cfg.getFunctionName(), cfg.toInstructions(), symbolTable);
+
+        // Blocs de cada bucle que no són de cap bucle intern
+        Map<Loop,List<BasicBlock>> own = new HashMap<>();
+        for (Loop loop : loopInfo.getLoops()) own.put(loop, new ArrayList<>());
+        for (BasicBlock block : cfg.getBlocks()) {
+            Loop innermost = loopInfo.getLoopFor(block);
+            if (innermost != null) own.get(innermost).add(block);
+        }
+
+        // Els fills es processen abans que el pare
+        List<Loop> loops = new ArrayList<>(loopInfo.getLoops());
+        Collections.reverse(loops);
+        Map<Loop,Map<String,Integer>> definitions = new HashMap<>();
+        Map<Loop,Map<String,Occurrence>> inductions = new HashMap<>();
+        Map<Loop,Map<String,List<Occurrence>>> pending = new HashMap<>();
+        boolean modified = false;
+        for (Loop loop : loops) {
+            // Tot el que ve dels fills s'afegeix a la col·lecció més gran
+            Map<String,Integer> defined = new HashMap<>();
+            Map<String,Occurrence> updates = new HashMap<>();
+            Map<String,List<Occurrence>> products = new HashMap<>();
+            for (Loop child : loop.getChildren()) {
+                defined = mergeInto(defined, definitions.remove(child), Integer::sum);
+                updates = mergeInto(updates, inductions.remove(child), (a, b) -> a);
+                products = mergeInto(products, pending.remove(child), (a, b) -> {
+                    a.addAll(b);
+                    return a;
+                });
+            }
+
+            // Variables d'inducció bàsiques: una única definició al bucle, de la forma i = i +/- c
+            for (BasicBlock block : own.get(loop)) {
+                for (TACInstruction ins : block.getInstructions()) {
+                    String def = ins.getDefinedName();
+                    if (def == null) continue;
+                    defined.merge(def, 1, Integer::sum);
+                    if (step(ins) != null) updates.put(def, new Occurrence(block, ins));
+                    String variable = productVariable(ins);
+                    if (variable != null) {
+                        products.computeIfAbsent(variable, v -> new ArrayList<>()).add(new Occurrence(block, ins));
+                    }
+                }
+            }
+            // Els comptes només creixen cap enfora: una variable que aquí ja no és d'inducció no ho tornarà a ser
+            Map<String,Integer> counts = defined;
+            updates.keySet().removeIf(name -> counts.get(name) != 1);
+            definitions.put(loop, defined);
+            inductions.put(loop, updates);
+            pending.put(loop, products);
+
+            // Productes i * k dels blocs del bucle, agrupats per (i, k)
+            Map<String,List<Occurrence>> reducible = new TreeMap<>();
+            for (String variable : updates.keySet()) {
+                List<Occurrence> found = products.get(variable);
+                if (found == null) continue;
+                for (Occurrence product : found) {
+                    reducible.computeIfAbsent(variable + " " + factor(product.instruction), k -> new ArrayList<>())
+                            .add(product);
+                }
+            }
+            if (reducible.isEmpty()) continue;
+
+            // Sense preheader, els productes queden pendents i el pare els torna a provar
+            BasicBlock preheader = cfg.getPreheader(loop);
+            if (preheader == null) continue;
+            if (!dominators.isReachable(preheader)) {
+                // Bloc nou a l'aresta d'entrada: passa a ser un bloc propi del pare
+                dominators.insertDominator(preheader, loop.getHeader());
+                loopInfo.addBlock(preheader, loop.getParent());
+                if (loop.getParent() != null) own.get(loop.getParent()).add(preheader);
+            }
+            for (String variable : updates.keySet()) products.remove(variable);
+            reduce(cfg, preheader, reducible, updates, defined);
+            modified = true;
+        }
+        return modified;
+    }
+
+    /**
+     * Crea un temporal per a cada producte (i, k): s'inicialitza a la preheader, augmenta després de
+     * l'actualització de i i substitueix les multiplicacions. Els canvis de cada bloc es fan d'una passada.
+     */
+    private void reduce(ControlFlowGraph cfg, BasicBlock preheader, Map<String,List<Occurrence>> reducible,
+                        Map<String,Occurrence> updates, Map<String,Integer> defined) {
+        List<TACInstruction> initializations = new ArrayList<>();
+        Map<TACInstruction,List<TACInstruction>> insertAfter = new IdentityHashMap<>();
+        Map<TACInstruction,TACInstruction> replacements = new IdentityHashMap<>();
+        Set<BasicBlock> touched = new LinkedHashSet<>();
+        for (Map.Entry<String,List<Occurrence>> product : reducible.entrySet()) {
+            String[] parts = product.getKey().split(" ");
+            String variable = parts[0];
+            int factor = Integer.parseInt(parts[1]);
+            String reducedName = cfg.newTemp();
+
+            initializations.add(new TACInstruction("MULT", variable, Integer.toString(factor), reducedName));
+
+            Occurrence update = updates.get(variable);
+            String increment = Integer.toString(step(update.instruction) * factor);
+            insertAfter.computeIfAbsent(update.instruction, u -> new ArrayList<>())
+                    .add(new TACInstruction("ADDU", reducedName, increment, reducedName));
+            touched.add(update.block);
+            defined.merge(reducedName, 1, Integer::sum);
+            for (Occurrence occurrence : product.getValue()) {
+                replacements.put(occurrence.instruction,
+                        new TACInstruction("=", reducedName, null, occurrence.instruction.getResult()));
+                touched.add(occurrence.block);
+            }
+        }
+
+        for (BasicBlock block : touched) {
+            List<TACInstruction> rewritten = new ArrayList<>();
+            for (TACInstruction ins : block.getInstructions()) {
+                rewritten.add(replacements.getOrDefault(ins, ins));
+                rewritten.addAll(insertAfter.getOrDefault(ins, List.of()));
+            }
+            block.getInstructions().clear();
+            block.getInstructions().addAll(rewritten);
+        }
+
+        List<TACInstruction> instructions = preheader.getInstructions();
+        int position = preheader.getTerminator() != null ? instructions.size() - 1 : instructions.size();
+        instructions.addAll(position, initializations);
+    }
+
+    /**
+     * Afegeix la col·lecció petita a la gran, de manera que cada element es copia poques vegades
+     *
+     * @return La col·lecció resultant
+     */
+    private static <V> Map<String,V> mergeInto(Map<String,V> target, Map<String,V> source, BinaryOperator<V> combine) {
+        if (source.size() > target.size()) {
+            Map<String,V> smaller = target;
+            target = source;
+            source = smaller;
+        }
+        for (Map.Entry<String,V> entry : source.entrySet()) target.merge(entry.getKey(), entry.getValue(), combine);
+        return target;
+    }
+
+    /**
+     * Increment d'una actualització i = i + c, i = c + i o i = i - c
+     *
+     * @return El valor de c (negatiu si és una resta) o null si la instrucció no té aquesta forma
+     */
+    private Integer step(TACInstruction ins) {
+        String def = ins.getDefinedName();
+        if (def == null || !"int".equals(types.typeOf(def))) return null;
+        String a1 = ins.getArg1(), a2 = ins.getArg2();
+        try {
+            if ("SUM".equals(ins.getOp()) || "ADDU".equals(ins.getOp())) {
+                if (def.equals(a1) && ConstantFolder.isInt(a2)) return Integer.parseInt(a2);
+                if (def.equals(a2) && ConstantFolder.isInt(a1)) return Integer.parseInt(a1);
+            } else if ("SUB".equals(ins.getOp()) && def.equals(a1) && ConstantFolder.isInt(a2)) {
+                return Math.negateExact(Integer.parseInt(a2));
+            }
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Variable d'un producte enter entre una variable i un literal, candidat a la reducció si la variable
+     * resulta ser d'inducció
+     */
+    private String productVariable(TACInstruction ins) {
+        if (!"MULT".equals(ins.getOp()) || !"int".equals(types.typeOf(ins.getDefinedName()))) return null;
+        String a1 = ins.getArg1(), a2 = ins.getArg2();
+        if (ConstantFolder.isInt(a1)) {
+            String t = a1; a1 = a2; a2 = t;
+        }
+        if (a1 == null || ConstantFolder.isConstant(a1) || !ConstantFolder.isInt(a2)) return null;
+        // Multiplicar per 0 o per 1 ja ho simplifica la reducció de força local
+        if ("0".equals(a2) || "1".equals(a2)) return null;
+        return a1;
+    }
+
+    /**
+     * Literal k d'un producte i * k
+     */
+    private int factor(TACInstruction ins) {
+        return Integer.parseInt(ConstantFolder.isInt(ins.getArg1()) ? ins.getArg1() : ins.getArg2());
+    }
+
+    /**
+     * Instrucció i bloc on es troba
+     */
+    private static final class Occurrence {
+        private final BasicBlock block;
+        private final TACInstruction instruction;
+
+        /**
+         * Constructor de la classe Occurrence
+         */
+        private Occurrence(BasicBlock block, TACInstruction instruction) {
+            this.block = block;
+            this.instruction = instruction;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.*;
+
+public class LocalValueNumbering implements OptimizationPass {
+
+    private final SymbolTable symbolTable;
+    private TypeInference types;
+
+    /**
+     * Valor de cada variable i literal, expressions ja calculades i qui en guarda el resultat.
+     * Es reinicien a cada bloc.
+     */
+    private final Map<String,Integer> valueOf = new HashMap<>();
+    private final Map<String,Integer> expressions = new HashMap<>();
+    private final Map<Integer,String> holder = new HashMap<>();
+    private int nextValue;
+
+    /**
+     * Constructor de la classe LocalValueNumbering
+     *
+     * @param symbolTable Taula de símbols, per distingir les operacions enteres de les reals
+     */
+    public LocalValueNumbering(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Numeració de valors local: dins de cada bloc bàsic, una operació que ja s'ha calculat amb els mateixos
+     * valors d'entrada es substitueix per una còpia del nom que en guarda el resultat. És lineal en el
+     * nombre d'instruccions del bloc.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha modificat alguna instrucció
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        types = new TypeInference(cfg.getFunctionName(), cfg.toInstructions(), symbolTable);
+        boolean modified = false;
+        for (BasicBlock block : cfg.getBlocks()) {
+            modified |= numberBlock(block);
+        }
+        return modified;
+    }
+
+    private boolean numberBlock(BasicBlock block) {
+        valueOf.clear();
+        expressions.clear();
+        holder.clear();
+        nextValue = 0;
+
+        List<TACInstruction> instructions = block.getInstructions();
+        boolean modified = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            TACInstruction ins = instructions.get(i);
+            String def = ins.getDefinedName();
+            if (def == null) continue;
+
+            // Les crides només poden escriure el seu resultat: les variables locals no canvien
+            if ("call".equals(ins.getOp())) {
+                define(def, nextValue++);
+                continue;
+            }
+
+            int value;
+            if ("=".equals(ins.getOp())) {
+                String source = ins.getArg1();
+                boolean pure = !source.matches("param\\d+") && types.isFloat(def) == types.isFloat(source);
+                value = pure ? valueNumber(source) : nextValue++;
+            } else {
+                String key = expressionKey(ins, types.isFloat(def));
+                Integer known = expressions.get(key);
+                if (known == null) {
+                    value = nextValue++;
+                    expressions.put(key, value);
+                } else {
+                    value = known;
+                    String h = currentHolder(value);
+                    if (h != null && !h.equals(def) && types.isFloat(h) == types.isFloat(def)) {
+                        instructions.set(i, new TACInstruction("=", h, null, def));
+                        modified = true;
+                    }
+                }
+            }
+
+            // Si el destí ja conté aquest valor, la instrucció és redundant
+            if (Objects.equals(valueOf.get(def), value)) {
+                instructions.remove(i--);
+                modified = true;
+                continue;
+            }
+            define(def, value);
+        }
+        return modified;
+    }
+
+    private void define(String name, int value) {
+        valueOf.put(name, value);
+        if (currentHolder(value) == null) holder.put(value, name);
+    }
+
+    /**
+     * Nom que encara conté el valor indicat (pot haver estat sobreescrit)
+     */
+    private String currentHolder(int value) {
+        String name = holder.get(value);
+        return name != null && valueOf.get(name) == value ? name : null;
+    }
+
+    private int valueNumber(String operand) {
+        Integer value = valueOf.get(operand);
+        if (value == null) {
+            value = nextValue++;
+            valueOf.put(operand, value);
+            if (!ConstantFolder.isConstant(operand)) holder.put(value, operand);
+        }
+        return value;
+    }
+
+    /**
+     * Clau de l'expressió amb els operands canònics: les operacions commutatives ordenen els operands
+     * i les comparacions > i >= es giren a < i <=
+     */
+    private String expressionKey(TACInstruction ins, boolean real) {
+        String op = ins.getOp();
+        int v1 = valueNumber(ins.getArg1());
+        int v2 = ins.getArg2() != null ? valueNumber(ins.getArg2()) : -1;
+
+        switch (op) {
+            case ">":  op = "<";  { int t = v1; v1 = v2; v2 = t; } break;
+            case ">=": op = "<="; { int t = v1; v1 = v2; v2 = t; } break;
+            case "SUM":
+            case "ADDU":
+            case "MULT":
+            case "MULHI":
+            case "BAND":
+            case "==":
+            case "!=":
+            case "&&":
+            case "||":
+                if (v2 < v1) { int t = v1; v1 = v2; v2 = t; }
+                break;
+            default:
+                break;
+        }
+        return op + " " + v1 + " " + v2 + (real ? " flt" : "");
+    }
+}
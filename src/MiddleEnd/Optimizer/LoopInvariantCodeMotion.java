@@ -0,0 +1,199 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.*;
+
+import java.util.*;
+
+public class LoopInvariantCodeMotion implements OptimizationPass {
+    /**
+     * Operacions que es poden treure d'un bucle. Les crides no es mouen mai.
+     */
+    private static final Set<String> HOISTABLE = Set.of(
+            "=", "NOT", "SUM", "SUB", "MULT", "DIV", "MOD",
+            "ADDU", "SHL", "SHR", "SHRU", "BAND", "MULHI",
+            "&&", "||", "==", "!=", "<", "<=", ">", ">=");
+    /**
+     * Operacions que poden aturar el programa (desbordament de add/sub, divisió per zero): només es
+     * treuen del bucle si s'haurien executat igualment, és a dir, si dominen totes les sortides
+     */
+    private static final Set<String> MAY_TRAP = Set.of("SUM", "SUB", "DIV", "MOD");
+
+    /**
+     * Mou a la preheader de cada bucle les instruccions que calculen el mateix valor a totes les iteracions.
+     * Es fa una sola passada pels bucles, dels més interns als externs, de manera que una instrucció pot
+     * sortir de diversos nivells: la preheader d'un bucle és un bloc del seu pare, i el pare la torna a
+     * mirar. Els dominadors, els bucles i la vida de les variables es calculen un sol cop i s'actualitzen
+     * a cada preheader nova en lloc de tornar-los a calcular.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha mogut alguna instrucció
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        DominatorTree dominators = new DominatorTree(cfg);
+        LoopInfo loopInfo = new LoopInfo(cfg, dominators);
+        if (loopInfo.getLoops().isEmpty()) return false;
+        Map<BasicBlock,Set<String>> liveIn = DeadCodeElimination.computeLiveIn(cfg);
+
+        // Blocs de cada bucle que no són de cap bucle intern, i sortides: una aresta que surt de diversos
+        // bucles imbricats és una sortida de tots ells
+        Map<Loop,List<BasicBlock>> own = new HashMap<>();
+        Map<Loop,List<BasicBlock>> exits = new HashMap<>();
+        Map<Loop,Set<BasicBlock>> exitTargets = new HashMap<>();
+        for (Loop loop : loopInfo.getLoops()) {
+            own.put(loop, new ArrayList<>());
+            exits.put(loop, new ArrayList<>());
+            exitTargets.put(loop, new HashSet<>());
+        }
+        for (BasicBlock block : cfg.getBlocks()) {
+            Loop innermost = loopInfo.getLoopFor(block);
+            if (innermost == null) continue;
+            own.get(innermost).add(block);
+            for (BasicBlock succ : block.getSuccessors()) {
+                for (Loop loop = innermost; loop != null && !loop.contains(succ); loop = loop.getParent()) {
+                    exits.get(loop).add(block);
+                    exitTargets.get(loop).add(succ);
+                }
+            }
+        }
+
+        // Els fills es processen abans que el pare
+        List<Loop> loops = new ArrayList<>(loopInfo.getLoops());
+        Collections.reverse(loops);
+        Map<Loop,Map<String,Integer>> definitions = new HashMap<>();
+        Map<Loop,List<BasicBlock>> candidates = new HashMap<>();
+        boolean modified = false;
+        for (Loop loop : loops) {
+            // Definicions de cada nom dins del bucle: les dels fills (afegint les petites a la més gran)
+            // més les dels seus blocs propis
+            Map<String,Integer> defined = new HashMap<>();
+            List<BasicBlock> scan = new ArrayList<>(own.get(loop));
+            for (Loop child : loop.getChildren()) {
+                Map<String,Integer> childDefinitions = definitions.remove(child);
+                if (childDefinitions.size() > defined.size()) {
+                    Map<String,Integer> smaller = defined;
+                    defined = childDefinitions;
+                    childDefinitions = smaller;
+                }
+                for (Map.Entry<String,Integer> entry : childDefinitions.entrySet()) {
+                    defined.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+                // Si el fill no ha pogut treure res per falta de preheader, el pare ho torna a provar
+                List<BasicBlock> pending = candidates.remove(child);
+                if (pending != null) scan.addAll(pending);
+            }
+            for (BasicBlock block : own.get(loop)) {
+                for (TACInstruction ins : block.getInstructions()) {
+                    if (ins.getDefinedName() != null) defined.merge(ins.getDefinedName(), 1, Integer::sum);
+                }
+            }
+            definitions.put(loop, defined);
+
+            List<TACInstruction> invariants = findInvariants(loop, scan, defined, exits.get(loop),
+                    exitTargets.get(loop), dominators, liveIn);
+            if (invariants.isEmpty()) continue;
+
+            BasicBlock preheader = cfg.getPreheader(loop);
+            if (preheader == null) {
+                candidates.put(loop, scan);
+                continue;
+            }
+            if (!dominators.isReachable(preheader)) {
+                // Bloc nou a l'aresta d'entrada: passa a ser un bloc propi del pare
+                dominators.insertDominator(preheader, loop.getHeader());
+                loopInfo.addBlock(preheader, loop.getParent());
+                if (loop.getParent() != null) own.get(loop.getParent()).add(preheader);
+                liveIn.put(preheader, new HashSet<>(liveIn.get(loop.getHeader())));
+            }
+            hoist(loop, scan, preheader, invariants, defined, liveIn);
+            modified = true;
+        }
+        return modified;
+    }
+
+    /**
+     * Troba les instruccions invariants d'un bucle entre les dels blocs indicats
+     *
+     * @param scan    Blocs on es busquen (els interns ja han tret les seves invariants a les preheaders)
+     * @param defined Nombre de definicions de cada nom dins del bucle
+     * @return Invariants, en un ordre on cada una va després de les que llegeix
+     */
+    private List<TACInstruction> findInvariants(Loop loop, List<BasicBlock> scan, Map<String,Integer> defined,
+                                                List<BasicBlock> exits, Set<BasicBlock> exitTargets,
+                                                DominatorTree dominators, Map<BasicBlock,Set<String>> liveIn) {
+        Set<String> liveAtExits = new HashSet<>();
+        for (BasicBlock target : exitTargets) liveAtExits.addAll(liveIn.getOrDefault(target, Set.of()));
+        Set<String> liveAtHeader = liveIn.get(loop.getHeader());
+
+        // Punt fix: una instrucció és invariant si els seus operands són literals, no es defineixen al
+        // bucle o els defineix una altra instrucció invariant
+        List<TACInstruction> invariants = new ArrayList<>();
+        Set<TACInstruction> chosen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> invariantNames = new HashSet<>();
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (BasicBlock block : scan) {
+                for (TACInstruction ins : block.getInstructions()) {
+                    if (chosen.contains(ins) || !HOISTABLE.contains(ins.getOp())) continue;
+                    String def = ins.getDefinedName();
+                    if (def == null || defined.get(def) != 1 || liveAtHeader.contains(def)) continue;
+                    if (!operandsInvariant(ins, defined, invariantNames)) continue;
+
+                    // Si la instrucció no s'executa a totes les iteracions, moure-la no pot canviar res visible
+                    if (!dominatesAll(dominators, block, exits)
+                            && (MAY_TRAP.contains(ins.getOp()) || liveAtExits.contains(def))) continue;
+
+                    chosen.add(ins);
+                    invariants.add(ins);
+                    invariantNames.add(def);
+                    found = true;
+                }
+            }
+        }
+        return invariants;
+    }
+
+    /**
+     * Mou les invariants al final de la preheader. Les seves definicions passen a ser del pare (que les
+     * compta als seus blocs propis) i els operands que llegeixen passen a ser vius a la preheader.
+     */
+    private void hoist(Loop loop, List<BasicBlock> scan, BasicBlock preheader, List<TACInstruction> invariants,
+                       Map<String,Integer> defined, Map<BasicBlock,Set<String>> liveIn) {
+        Set<TACInstruction> chosen = Collections.newSetFromMap(new IdentityHashMap<>());
+        chosen.addAll(invariants);
+        for (BasicBlock block : scan) block.getInstructions().removeIf(chosen::contains);
+
+        List<TACInstruction> instructions = preheader.getInstructions();
+        int position = preheader.getTerminator() != null ? instructions.size() - 1 : instructions.size();
+        instructions.addAll(position, invariants);
+
+        Set<String> hoistedNames = new HashSet<>();
+        Set<String> live = liveIn.get(preheader);
+        for (TACInstruction ins : invariants) {
+            for (String operand : ins.getUses()) {
+                if (!ConstantFolder.isConstant(operand) && !hoistedNames.contains(operand)) live.add(operand);
+            }
+            hoistedNames.add(ins.getDefinedName());
+            defined.merge(ins.getDefinedName(), -1, (count, delta) -> count + delta == 0 ? null : count + delta);
+        }
+    }
+
+    private boolean operandsInvariant(TACInstruction ins, Map<String,Integer> definitions, Set<String> invariantNames) {
+        for (String operand : ins.getUses()) {
+            if (ConstantFolder.isConstant(operand)) continue;
+            // Els paràmetres només són vàlids als registres d'entrada fins a la primera crida
+            if (operand.matches("param\\d+")) return false;
+            if (definitions.containsKey(operand) && !invariantNames.contains(operand)) return false;
+        }
+        return true;
+    }
+
+    private boolean dominatesAll(DominatorTree dominators, BasicBlock block, List<BasicBlock> exits) {
+        for (BasicBlock exit : exits) {
+            if (!dominators.dominates(block, exit)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,13 @@
+package MiddleEnd.Optimizer;
+
+import MiddleEnd.CFG.ControlFlowGraph;
+
+public interface OptimizationPass {
+    /**
+     * Aplica la passada sobre el graf d'una funció
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha modificat alguna instrucció
+     */
+    boolean run(ControlFlowGraph cfg);
+}
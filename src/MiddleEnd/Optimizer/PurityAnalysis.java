@@ -0,0 +1,78 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.Symbol;
+import Global.SymbolTable.SymbolTable;
+
+import java.util.*;
+
+public class PurityAnalysis {
+    /**
+     * Funcions pures: el resultat només depèn dels arguments i no tenen cap altre efecte
+     */
+    private final Set<String> pure = new LinkedHashSet<>();
+
+    /**
+     * Constructor de la classe PurityAnalysis. Una funció és pura si els seus paràmetres i el seu
+     * resultat són enters o caràcters, només assigna variables locals i temporals i només crida
+     * funcions pures. Es parteix de suposar-les totes pures i es van descartant fins que no canvia res,
+     * de manera que les funcions recursives també poden ser pures.
+     *
+     * @param functions   Cos TAC de cada funció
+     * @param symbolTable Taula de símbols del programa
+     */
+    public PurityAnalysis(Map<String,List<TACInstruction>> functions, SymbolTable symbolTable) {
+        for (Map.Entry<String,List<TACInstruction>> function : functions.entrySet()) {
+            if (hasPureSignature(function.getKey(), symbolTable)
+                    && onlyLocalAssignments(function.getKey(), function.getValue(), symbolTable)) {
+                pure.add(function.getKey());
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = pure.removeIf(name -> callsImpure(functions.get(name)));
+        }
+    }
+
+    private static boolean hasPureSignature(String function, SymbolTable symbolTable) {
+        if ("main".equals(function)) return false;
+        Symbol symbol = symbolTable.getGlobalScope().lookupSymbol(function);
+        if (symbol == null || !symbol.isFunction() || !isIntegral(symbol.getReturnType())) return false;
+        if (symbol.getParameters() == null) return true;
+        for (Symbol parameter : symbol.getParameters()) {
+            if (!isIntegral(parameter.getType())) return false;
+        }
+        return true;
+    }
+
+    private static boolean onlyLocalAssignments(String function, List<TACInstruction> body, SymbolTable symbolTable) {
+        for (TACInstruction ins : body) {
+            if (ins.getDefinedName() == null) continue;
+            String def = TypeInference.baseName(ins.getDefinedName());
+            if (!def.matches("t\\d+") && symbolTable.lookupFunctionSymbol(function, def) == null) return false;
+        }
+        return true;
+    }
+
+    private boolean callsImpure(List<TACInstruction> body) {
+        for (TACInstruction ins : body) {
+            if ("call".equals(ins.getOp()) && !pure.contains(ins.getArg1())) return true;
+        }
+        return false;
+    }
+
+    private static boolean isIntegral(String type) {
+        return "int".equals(type) || "chr".equals(type);
+    }
+
+    /**
+     * Indica si una funció és pura
+     *
+     * @param function Nom de la funció
+     * @return true si el resultat només depèn dels arguments
+     */
+    public boolean isPure(String function) {
+        return pure.contains(function);
+    }
+}
@@ -0,0 +1,254 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+import MiddleEnd.SSA.PhiInstruction;
+
+import java.util.*;
+
+public class SparseConditionalConstantPropagation implements OptimizationPass {
+    /**
+     * Valor del reticle per als noms que no són constants. Els noms sense valor encara no s'han avaluat.
+     */
+    private static final String BOTTOM = "<bottom>";
+
+    private final SymbolTable symbolTable;
+    private TypeInference types;
+
+    private final Map<String,String> value = new HashMap<>();
+    private final Set<String> defined = new HashSet<>();
+    private final Map<String,List<TACInstruction>> usesOf = new HashMap<>();
+    private final Map<TACInstruction,BasicBlock> blockOf = new IdentityHashMap<>();
+    private final Map<BasicBlock,Set<BasicBlock>> executableEdges = new HashMap<>();
+    private final Set<BasicBlock> visited = new HashSet<>();
+    private final Deque<BasicBlock[]> flowWorklist = new ArrayDeque<>();
+    private final Deque<String> ssaWorklist = new ArrayDeque<>();
+    private ControlFlowGraph cfg;
+
+    /**
+     * Constructor de la classe SparseConditionalConstantPropagation
+     *
+     * @param symbolTable Taula de símbols, per plegar amb el tipus de cada resultat
+     */
+    public SparseConditionalConstantPropagation(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Propagació de constants condicional i dispersa (Wegman-Zadeck) sobre una funció en forma SSA.
+     * Només avalua els blocs als quals es pot arribar suposant que les condicions constants ho són,
+     * de manera que troba constants que la propagació clàssica perd (per exemple en bucles) i elimina
+     * les branques que mai no s'executen.
+     *
+     * @param cfg Graf de flux de control de la funció, en forma SSA
+     * @return true si s'ha modificat alguna instrucció
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        types = new TypeInference(cfg.getFunctionName(), cfg.toInstructions(), symbolTable);
+        initialize();
+        propagate();
+        return rewrite();
+    }
+
+    private void initialize() {
+        value.clear();
+        defined.clear();
+        usesOf.clear();
+        blockOf.clear();
+        executableEdges.clear();
+        visited.clear();
+        flowWorklist.clear();
+        ssaWorklist.clear();
+
+        for (BasicBlock block : cfg.getBlocks()) {
+            executableEdges.put(block, new HashSet<>());
+            for (TACInstruction ins : block.getInstructions()) {
+                blockOf.put(ins, block);
+                if (ins.getDefinedName() != null) defined.add(ins.getDefinedName());
+                for (String u : ins.getUses()) usesOf.computeIfAbsent(u, k -> new ArrayList<>()).add(ins);
+            }
+        }
+    }
+
+    private void propagate() {
+        flowWorklist.add(new BasicBlock[]{null, cfg.getEntry()});
+        while (!flowWorklist.isEmpty() || !ssaWorklist.isEmpty()) {
+            while (!flowWorklist.isEmpty()) {
+                BasicBlock[] edge = flowWorklist.poll();
+                BasicBlock block = edge[1];
+                if (edge[0] != null && !executableEdges.get(edge[0]).add(block)) continue;
+
+                // Una aresta nova pot canviar les phi; la primera visita avalua tot el bloc
+                boolean firstVisit = visited.add(block);
+                for (TACInstruction ins : block.getInstructions()) {
+                    if (PhiInstruction.isPhi(ins) || firstVisit) evaluate(ins);
+                }
+                if (firstVisit && block.getTerminator() == null) {
+                    for (BasicBlock succ : block.getSuccessors()) flowWorklist.add(new BasicBlock[]{block, succ});
+                }
+            }
+            while (!ssaWorklist.isEmpty()) {
+                String name = ssaWorklist.poll();
+                for (TACInstruction use : usesOf.getOrDefault(name, List.of())) {
+                    if (visited.contains(blockOf.get(use))) evaluate(use);
+                }
+            }
+        }
+    }
+
+    private void evaluate(TACInstruction ins) {
+        String op = ins.getOp();
+        BasicBlock block = blockOf.get(ins);
+
+        if ("goto".equals(op)) {
+            markEdge(block, cfg.getBlock(ins.getResult()));
+            return;
+        }
+        if ("ifFalse".equals(op)) {
+            String condition = valueOf(ins.getArg1());
+            if (condition == null) return;
+            BasicBlock target = cfg.getBlock(ins.getResult());
+            BasicBlock next = fallthrough(block, target);
+            if (BOTTOM.equals(condition)) {
+                markEdge(block, target);
+                markEdge(block, next);
+            } else {
+                markEdge(block, "1".equals(ConstantFolder.fold("==", condition, "0")) ? target : next);
+            }
+            return;
+        }
+
+        String def = ins.getDefinedName();
+        if (def == null) return;
+
+        String result;
+        if (PhiInstruction.isPhi(ins)) {
+            result = null;
+            for (Map.Entry<BasicBlock,String> operand : ((PhiInstruction) ins).getOperands().entrySet()) {
+                if (!executableEdges.get(operand.getKey()).contains(block)) continue;
+                String v = valueOf(operand.getValue());
+                if (v == null) continue;
+                if (!BOTTOM.equals(v)) v = orBottom(ConstantFolder.fold("=", v, null, types.isFloat(def)));
+                if (result == null) result = v;
+                else if (!result.equals(v)) result = BOTTOM;
+            }
+            if (result == null) return;
+        } else if ("call".equals(op)) {
+            result = BOTTOM;
+        } else {
+            String a1 = valueOf(ins.getArg1());
+            String a2 = ins.getArg2() != null ? valueOf(ins.getArg2()) : null;
+            if (a1 == null || (ins.getArg2() != null && a2 == null)) return;
+            if (BOTTOM.equals(a1) || BOTTOM.equals(a2)) {
+                result = BOTTOM;
+            } else {
+                result = orBottom(ConstantFolder.fold(op, a1, a2, types.isFloat(def)));
+            }
+        }
+        lower(def, result);
+    }
+
+    /**
+     * Valor actual d'un operand: el literal, la constant coneguda, BOTTOM o null si encara no se sap
+     */
+    private String valueOf(String operand) {
+        if (operand == null) return null;
+        if (ConstantFolder.isConstant(operand)) return operand;
+        if (!defined.contains(operand)) return BOTTOM; // paràmetres i valors d'entrada
+        return value.get(operand);
+    }
+
+    private void lower(String name, String newValue) {
+        String old = value.get(name);
+        if (BOTTOM.equals(old) || newValue.equals(old)) return;
+        value.put(name, old == null ? newValue : BOTTOM);
+        ssaWorklist.add(name);
+    }
+
+    private String orBottom(String folded) {
+        return folded != null ? folded : BOTTOM;
+    }
+
+    private void markEdge(BasicBlock from, BasicBlock to) {
+        if (to != null && !executableEdges.get(from).contains(to)) flowWorklist.add(new BasicBlock[]{from, to});
+    }
+
+    private BasicBlock fallthrough(BasicBlock block, BasicBlock target) {
+        for (BasicBlock succ : block.getSuccessors()) {
+            if (succ != target) return succ;
+        }
+        return target;
+    }
+
+    /**
+     * Substitueix els noms constants pels seus literals, elimina les seves definicions, resol els salts
+     * amb condició constant i esborra els blocs que no s'executen mai
+     */
+    private boolean rewrite() {
+        boolean modified = cfg.getBlocks().removeIf(block -> !visited.contains(block));
+
+        for (BasicBlock block : cfg.getBlocks()) {
+            List<TACInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                TACInstruction ins = instructions.get(i);
+                String def = ins.getDefinedName();
+                if (def != null && isConstant(def) && !"call".equals(ins.getOp())) {
+                    instructions.remove(i--);
+                    modified = true;
+                    continue;
+                }
+
+                if (PhiInstruction.isPhi(ins)) {
+                    for (Map.Entry<BasicBlock,String> operand : ((PhiInstruction) ins).getOperands().entrySet()) {
+                        if (isConstant(operand.getValue())) {
+                            operand.setValue(ConstantFolder.fold("=", value.get(operand.getValue()), null, types.isFloat(def)));
+                            modified = true;
+                        }
+                    }
+                    continue;
+                }
+
+                String op = ins.getOp();
+                if ("label".equals(op) || "goto".equals(op) || "call".equals(op)) continue;
+
+                String a1 = isConstant(ins.getArg1()) ? value.get(ins.getArg1()) : ins.getArg1();
+                String a2 = isConstant(ins.getArg2()) ? value.get(ins.getArg2()) : ins.getArg2();
+
+                if ("ifFalse".equals(op) && ConstantFolder.isConstant(a1)) {
+                    if ("1".equals(ConstantFolder.fold("==", a1, "0"))) {
+                        instructions.set(i, new TACInstruction("goto", null, null, ins.getResult()));
+                    } else {
+                        instructions.remove(i--);
+                    }
+                    modified = true;
+                } else if (!Objects.equals(a1, ins.getArg1()) || !Objects.equals(a2, ins.getArg2())) {
+                    instructions.set(i, new TACInstruction(op, a1, a2, ins.getResult()));
+                    modified = true;
+                }
+            }
+        }
+
+        if (modified) {
+            cfg.computeEdges();
+            // Les phi perden els operands de les arestes que han desaparegut
+            for (BasicBlock block : cfg.getBlocks()) {
+                for (TACInstruction ins : block.getInstructions()) {
+                    if (PhiInstruction.isPhi(ins)) {
+                        ((PhiInstruction) ins).getOperands().keySet().retainAll(block.getPredecessors());
+                    }
+                }
+            }
+        }
+        return modified;
+    }
+
+    private boolean isConstant(String name) {
+        if (name == null || ConstantFolder.isConstant(name)) return false;
+        String v = value.get(name);
+        return v != null && !BOTTOM.equals(v);
+    }
+}
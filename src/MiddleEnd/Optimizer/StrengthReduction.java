@@ -0,0 +1,191 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StrengthReduction implements OptimizationPass {
+
+    private final SymbolTable symbolTable;
+    private TypeInference types;
+    private ControlFlowGraph cfg;
+
+    /**
+     * Constructor de la classe StrengthReduction
+     *
+     * @param symbolTable Taula de símbols, per distingir les operacions enteres de les reals
+     */
+    public StrengthReduction(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Substitueix les multiplicacions, divisions i mòduls enters per una constant per operacions més
+     * barates: desplaçaments i màscares per a les potències de dos i multiplicació per la part alta
+     * (nombre màgic) per a la resta de divisors. Es respecta la divisió entera truncada cap a zero de MIPS.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha reescrit alguna instrucció
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        types = new TypeInference(cfg.getFunctionName(), cfg.toInstructions(), symbolTable);
+        boolean modified = false;
+
+        for (BasicBlock block : cfg.getBlocks()) {
+            List<TACInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                TACInstruction ins = instructions.get(i);
+                List<TACInstruction> replacement = reduce(ins);
+                if (replacement == null) continue;
+                instructions.remove(i);
+                instructions.addAll(i, replacement);
+                i += replacement.size() - 1;
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    private List<TACInstruction> reduce(TACInstruction ins) {
+        String op = ins.getOp();
+        if (!"MULT".equals(op) && !"DIV".equals(op) && !"MOD".equals(op)) return null;
+        String def = ins.getDefinedName();
+        String a1 = ins.getArg1();
+        String a2 = ins.getArg2();
+        if (!isInt(def) || !isInt(a1) || !isInt(a2)) return null;
+
+        // La multiplicació és commutativa: el literal passa a la dreta
+        if ("MULT".equals(op) && ConstantFolder.isInt(a1) && !ConstantFolder.isConstant(a2)) {
+            String t = a1; a1 = a2; a2 = t;
+        }
+        if (ConstantFolder.isConstant(a1) || !ConstantFolder.isInt(a2)) return null;
+
+        int k;
+        try {
+            k = Integer.parseInt(a2);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        switch (op) {
+            case "MULT": return reduceMultiply(a1, k, def);
+            case "DIV":  return reduceDivide(a1, k, def);
+            default:     return reduceModulo(a1, k, def);
+        }
+    }
+
+    private List<TACInstruction> reduceMultiply(String n, int k, String def) {
+        if (k == 0) return List.of(new TACInstruction("=", "0", null, def));
+        if (k == 1) return List.of(new TACInstruction("=", n, null, def));
+        if (!isPowerOfTwo(k)) return null;
+        return List.of(new TACInstruction("SHL", n, Integer.toString(log2(k)), def));
+    }
+
+    private List<TACInstruction> reduceDivide(String n, int k, String def) {
+        if (k == 1) return List.of(new TACInstruction("=", n, null, def));
+        if (k < 2) return null;
+
+        List<TACInstruction> code = new ArrayList<>();
+        if (isPowerOfTwo(k)) {
+            // (n + (n < 0 ? k - 1 : 0)) >> log2(k), per arrodonir cap a zero
+            String biased = roundTowardZero(n, log2(k), code);
+            code.add(new TACInstruction("SHR", biased, Integer.toString(log2(k)), def));
+            return code;
+        }
+
+        // Hacker's Delight, 10-4: q = hi(n * M) (+ n si M és negatiu) >> s, més 1 si n és negatiu
+        long[] magic = magic(k);
+        int multiplier = (int) magic[0];
+        int shift = (int) magic[1];
+        String q = cfg.newTemp();
+        code.add(new TACInstruction("MULHI", n, Integer.toString(multiplier), q));
+        if (multiplier < 0) {
+            String sum = cfg.newTemp();
+            code.add(new TACInstruction("ADDU", q, n, sum));
+            q = sum;
+        }
+        if (shift > 0) {
+            String shifted = cfg.newTemp();
+            code.add(new TACInstruction("SHR", q, Integer.toString(shift), shifted));
+            q = shifted;
+        }
+        String sign = cfg.newTemp();
+        code.add(new TACInstruction("SHRU", n, "31", sign));
+        code.add(new TACInstruction("ADDU", q, sign, def));
+        return code;
+    }
+
+    private List<TACInstruction> reduceModulo(String n, int k, String def) {
+        if (k == 1) return List.of(new TACInstruction("=", "0", null, def));
+        if (k < 2 || !isPowerOfTwo(k)) return null;
+
+        // n - ((n + bias) & -k): el residu conserva el signe del dividend, com el de div
+        List<TACInstruction> code = new ArrayList<>();
+        String biased = roundTowardZero(n, log2(k), code);
+        String masked = cfg.newTemp();
+        code.add(new TACInstruction("BAND", biased, Integer.toString(-k), masked));
+        code.add(new TACInstruction("SUB", n, masked, def));
+        return code;
+    }
+
+    /**
+     * Suma 2^shift - 1 al dividend si és negatiu, perquè el desplaçament aritmètic arrodoneixi cap a zero
+     *
+     * @return Nom del temporal amb el dividend ajustat
+     */
+    private String roundTowardZero(String n, int shift, List<TACInstruction> code) {
+        String bias = cfg.newTemp();
+        if (shift == 1) {
+            code.add(new TACInstruction("SHRU", n, "31", bias));
+        } else {
+            String sign = cfg.newTemp();
+            code.add(new TACInstruction("SHR", n, "31", sign));
+            code.add(new TACInstruction("SHRU", sign, Integer.toString(32 - shift), bias));
+        }
+        String biased = cfg.newTemp();
+        code.add(new TACInstruction("ADDU", n, bias, biased));
+        return biased;
+    }
+
+    /**
+     * Nombre màgic i desplaçament per dividir per una constant d >= 2 (Hacker's Delight, figura 10-1)
+     *
+     * @param d Divisor
+     * @return {multiplicador, desplaçament}
+     */
+    private static long[] magic(int d) {
+        final long two31 = 0x80000000L;
+        long anc = two31 - 1 - two31 % d;
+        int p = 31;
+        long q1 = two31 / anc, r1 = two31 - q1 * anc;
+        long q2 = two31 / d, r2 = two31 - q2 * d;
+        long delta;
+        do {
+            p++;
+            q1 = 2 * q1; r1 = 2 * r1;
+            if (r1 >= anc) { q1++; r1 -= anc; }
+            q2 = 2 * q2; r2 = 2 * r2;
+            if (r2 >= d) { q2++; r2 -= d; }
+            delta = d - r2;
+        } while (q1 < delta || (q1 == delta && r1 == 0));
+        return new long[]{(int) (q2 + 1), p - 32};
+    }
+
+    private boolean isInt(String operand) {
+        return "int".equals(types.typeOf(operand));
+    }
+
+    private static boolean isPowerOfTwo(int k) {
+        return k > 0 && (k & (k - 1)) == 0;
+    }
+
+    private static int log2(int k) {
+        return Integer.numberOfTrailingZeros(k);
+    }
+}
@@ -0,0 +1,126 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.Symbol;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.CallGraph;
+import MiddleEnd.CFG.ControlFlowGraph;
+import MiddleEnd.SSA.SSAConstruction;
+import MiddleEnd.SSA.SSADestruction;
+
+import java.util.*;
+
+public class TACOptimizer {
+    /**
+     * Nombre màxim de voltes del pipeline per funció
+     */
+    private static final int MAX_ROUNDS = 8;
+
+    private final List<TACInstruction> TACCode;
+    private final SymbolTable symbolTable;
+    private final List<TACInstruction> code = new ArrayList<>();
+    private int optimizationLevel = 1;
+
+    /**
+     * Constructor de la classe TACOptimizer
+     *
+     * @param TACCode     Codi TAC generat pel frontend
+     * @param symbolTable Taula de símbols del programa
+     */
+    public TACOptimizer(List<TACInstruction> TACCode, SymbolTable symbolTable) {
+        this.TACCode = TACCode;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Nivell d'optimització: 0 deixa el TAC intacte, a partir d'1 s'hi apliquen les passades del middle-end
+     */
+    public void setOptimizationLevel(int optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * Passades que s'apliquen a cada funció, en ordre
+     *
+     * @param evaluator Avaluació de crides en temps de compilació, compartida entre funcions
+     */
+    private List<OptimizationPass> createPasses(CallEvaluation evaluator) {
+        List<OptimizationPass> passes = new ArrayList<>();
+        passes.add(new TailRecursionElimination(symbolTable));
+        passes.add(new ConstantPropagation(symbolTable));
+        passes.add(evaluator);
+        passes.add(new LocalValueNumbering(symbolTable));
+        passes.add(new CopyPropagation(symbolTable));
+        passes.add(new LoopInvariantCodeMotion());
+        passes.add(new InductionVariableReduction(symbolTable));
+        passes.add(new StrengthReduction(symbolTable));
+        passes.add(new DeadCodeElimination());
+        passes.add(new ControlFlowSimplification());
+        return passes;
+    }
+
+    public void optimize() {
+        code.clear();
+        if (optimizationLevel <= 0) {
+            code.addAll(TACCode);
+            return;
+        }
+
+        Set<String> functionNames = new HashSet<>();
+        for (Symbol s : symbolTable.getGlobalScope().getSymbols().values()) {
+            if (s.isFunction()) functionNames.add(s.getName());
+        }
+
+        // Les funcions s'optimitzen de les fulles cap amunt, perquè cada una pugui integrar el cos ja
+        // optimitzat de les que crida
+        Map<String,List<TACInstruction>> functions = ControlFlowGraph.splitByFunction(TACCode, functionNames);
+        CallGraph callGraph = new CallGraph(functions);
+        FunctionInliner inliner = new FunctionInliner(callGraph, symbolTable);
+        Map<String,List<TACInstruction>> optimized = new HashMap<>();
+
+        CallEvaluation evaluator = new CallEvaluation(functions, symbolTable);
+        List<OptimizationPass> passes = createPasses(evaluator);
+        for (String function : callGraph.bottomUpOrder()) {
+            // Les crides amb arguments constants s'avaluen abans que la integració les faci desaparèixer
+            ControlFlowGraph cfg = new ControlFlowGraph(function, functions.get(function));
+            runPasses(List.of(new ConstantPropagation(symbolTable), evaluator), cfg);
+            cfg = new ControlFlowGraph(function, inliner.inline(function, cfg.toInstructions()));
+            runPasses(passes, cfg);
+
+            // La propagació condicional de constants treballa sobre SSA; després es torna a netejar el codi
+            if (new SSAConstruction(cfg).construct()) {
+                new SparseConditionalConstantPropagation(symbolTable).run(cfg);
+                new SSADestruction(cfg).destruct();
+                runPasses(passes, cfg);
+            }
+            optimized.put(function, cfg.toInstructions());
+            inliner.addFunction(function, optimized.get(function));
+        }
+        for (String function : functions.keySet()) code.addAll(optimized.get(function));
+    }
+
+    /**
+     * Repeteix les passades mentre alguna canviï el codi, fins a MAX_ROUNDS voltes
+     */
+    private void runPasses(List<OptimizationPass> passes, ControlFlowGraph cfg) {
+        boolean changed = true;
+        for (int round = 0; changed && round < MAX_ROUNDS; round++) {
+            changed = false;
+            for (OptimizationPass pass : passes) {
+                changed |= pass.run(cfg);
+            }
+        }
+    }
+
+    public List<TACInstruction> getCode() {
+        return code;
+    }
+
+    public void printTACCode() {
+        System.out.println("--- Optimized TAC Code ---");
+        for (TACInstruction tacInstruction : code) {
+            System.out.println(tacInstruction.toString());
+        }
+        System.out.println("--- End of Optimized TAC Code ---");
+    }
+}
@@ -0,0 +1,127 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.Symbol;
+import Global.SymbolTable.SymbolTable;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TailRecursionElimination implements OptimizationPass {
+
+    private final SymbolTable symbolTable;
+
+    /**
+     * Constructor de la classe TailRecursionElimination
+     *
+     * @param symbolTable Taula de símbols, per conèixer els paràmetres de la funció
+     */
+    public TailRecursionElimination(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Converteix les crides recursives en posició de cua (t = call f seguit de return t) en un bucle:
+     * els arguments es copien als paràmetres formals i se salta a l'inici del cos, just després de les
+     * còpies dels registres d'entrada. La pila ja no creix amb la recursió.
+     *
+     * @param cfg Graf de flux de control de la funció
+     * @return true si s'ha eliminat alguna crida
+     */
+    @Override
+    public boolean run(ControlFlowGraph cfg) {
+        Symbol function = symbolTable.getGlobalScope().lookupSymbol(cfg.getFunctionName());
+        if (function == null || !function.isFunction()) return false;
+        List<Symbol> parameters = function.getParameters() != null ? function.getParameters() : List.of();
+
+        String bodyLabel = null;
+        boolean modified = false;
+        for (BasicBlock block : new ArrayList<>(cfg.getBlocks())) {
+            int call = tailCall(block.getInstructions(), cfg.getFunctionName());
+            if (call < 0 || arguments(block.getInstructions(), call).size() != parameters.size()) continue;
+
+            if (bodyLabel == null) {
+                boolean inEntry = block == cfg.getEntry();
+                bodyLabel = splitEntry(cfg);
+                // Si la crida era al bloc d'entrada, ara és al bloc del cos i els índexs han canviat
+                if (inEntry) {
+                    block = cfg.getBlock(bodyLabel);
+                    call = tailCall(block.getInstructions(), cfg.getFunctionName());
+                }
+            }
+            List<TACInstruction> instructions = block.getInstructions();
+            List<Integer> params = arguments(instructions, call);
+
+            // Cada argument es guarda en un temporal on era el param: els formals canvien tots alhora
+            List<TACInstruction> assignments = new ArrayList<>();
+            for (int k = 0; k < params.size(); k++) {
+                String temp = cfg.newTemp();
+                instructions.set(params.get(k), new TACInstruction("=", instructions.get(params.get(k)).getArg1(), null, temp));
+                assignments.add(new TACInstruction("=", temp, null, parameters.get(k).getName()));
+            }
+            instructions.subList(call, instructions.size()).clear();
+            instructions.addAll(assignments);
+            instructions.add(new TACInstruction("goto", null, null, bodyLabel));
+            modified = true;
+        }
+        if (modified) cfg.computeEdges();
+        return modified;
+    }
+
+    /**
+     * Posició d'una crida a la funció mateixa seguida d'un return del seu resultat al final del bloc
+     *
+     * @return Índex de la crida o -1
+     */
+    private int tailCall(List<TACInstruction> instructions, String functionName) {
+        int n = instructions.size();
+        if (n < 2) return -1;
+        TACInstruction call = instructions.get(n - 2);
+        TACInstruction ret = instructions.get(n - 1);
+        if (!"call".equals(call.getOp()) || !functionName.equals(call.getArg1()) || !"return".equals(ret.getOp())) return -1;
+
+        String result = call.getResult();
+        boolean returnsResult = result != null && result.equals(ret.getArg1());
+        boolean returnsNothing = ret.getArg1() == null;
+        return returnsResult || returnsNothing ? n - 2 : -1;
+    }
+
+    /**
+     * Els arguments d'una crida són els últims param des de la crida anterior
+     *
+     * @return Índexs dels param, en ordre
+     */
+    private List<Integer> arguments(List<TACInstruction> instructions, int call) {
+        List<Integer> params = new ArrayList<>();
+        for (int i = call - 1; i >= 0 && !"call".equals(instructions.get(i).getOp()); i--) {
+            if ("param".equals(instructions.get(i).getOp())) params.add(0, i);
+        }
+        return params;
+    }
+
+    /**
+     * Separa les còpies dels registres de paràmetres (x = paramN) de la resta del bloc d'entrada,
+     * perquè el salt de la recursió no les torni a executar
+     *
+     * @return Etiqueta del nou inici del cos
+     */
+    private String splitEntry(ControlFlowGraph cfg) {
+        List<TACInstruction> entry = cfg.getEntry().getInstructions();
+        int start = entry.isEmpty() || !"label".equals(entry.get(0).getOp()) ? 0 : 1;
+        while (start < entry.size() && "=".equals(entry.get(start).getOp())
+                && entry.get(start).getArg1().matches("param\\d+")) {
+            start++;
+        }
+
+        String label = cfg.newLabel();
+        BasicBlock body = cfg.newBlock(1);
+        body.getInstructions().add(new TACInstruction("label", null, null, label));
+        List<TACInstruction> rest = entry.subList(start, entry.size());
+        body.getInstructions().addAll(rest);
+        rest.clear();
+        cfg.computeEdges();
+        return label;
+    }
+}
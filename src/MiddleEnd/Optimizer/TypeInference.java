@@ -0,0 +1,122 @@
+package MiddleEnd.Optimizer;
+
+import FrontEnd.TAC.TACInstruction;
+import Global.SymbolTable.Symbol;
+import Global.SymbolTable.SymbolTable;
+
+import java.util.*;
+
+public final class TypeInference {
+    /**
+     * Tipus de cada variable i temporal de la funció
+     */
+    private final Map<String,String> types = new HashMap<>();
+    private final String functionName;
+    private final Symbol functionSymbol;
+    private final SymbolTable symbolTable;
+
+    /**
+     * Dedueix el tipus de cada nom d'una funció: les variables prenen el tipus declarat i els temporals
+     * el de l'operació que els defineix, igual que fa el backend.
+     *
+     * @param functionName Nom de la funció
+     * @param body         Instruccions TAC de la funció
+     * @param symbolTable  Taula de símbols del programa
+     */
+    public TypeInference(String functionName, Collection<TACInstruction> body, SymbolTable symbolTable) {
+        this.functionName = functionName;
+        this.functionSymbol = symbolTable.getGlobalScope().lookupSymbol(functionName);
+        this.symbolTable = symbolTable;
+
+        List<TACInstruction> definitions = new ArrayList<>();
+        for (TACInstruction ins : body) {
+            String def = ins.getDefinedName();
+            if (def == null || types.containsKey(def)) continue;
+            Symbol s = symbolTable.lookupFunctionSymbol(functionName, baseName(def));
+            if (s != null && !s.isFunction()) {
+                types.put(def, s.getType());
+            } else {
+                definitions.add(ins);
+            }
+        }
+
+        // Els temporals poden dependre d'altres temporals: iterem fins que no canviï res
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (TACInstruction ins : definitions) {
+                String type = infer(ins);
+                if (!type.equals(types.put(ins.getDefinedName(), type))) changed = true;
+            }
+        }
+    }
+
+    private String infer(TACInstruction ins) {
+        switch (ins.getOp()) {
+            case "=":
+                return typeOf(ins.getArg1());
+            case "SUM":
+            case "SUB":
+            case "MULT":
+            case "DIV":
+            case "MOD":
+                return isFloat(ins.getArg1()) || isFloat(ins.getArg2()) ? "flt" : "int";
+            case "phi":
+                for (String operand : ins.getUses()) {
+                    if (isFloat(operand)) return "flt";
+                }
+                return "int";
+            case "call": {
+                Symbol callee = symbolTable.getGlobalScope().lookupSymbol(ins.getArg1());
+                String type = callee != null && callee.isFunction() ? callee.getReturnType() : null;
+                return type == null || "void".equalsIgnoreCase(type) ? "int" : type;
+            }
+            default:
+                return "int";
+        }
+    }
+
+    /**
+     * Retorna el tipus d'un operand (literal, paràmetre, variable o temporal)
+     *
+     * @param operand Operand TAC
+     * @return "int", "flt" o "chr"
+     */
+    public String typeOf(String operand) {
+        if (operand == null) return "int";
+        if (ConstantFolder.isFloat(operand)) return "flt";
+        if (ConstantFolder.isInt(operand)) return "int";
+        if (ConstantFolder.isChar(operand)) return "chr";
+
+        if (operand.matches("param\\d+") && functionSymbol != null && functionSymbol.isFunction()) {
+            int index = Integer.parseInt(operand.substring(5)) - 1;
+            List<Symbol> params = functionSymbol.getParameters();
+            if (params != null && index < params.size()) return params.get(index).getType();
+        }
+        String type = types.get(operand);
+        if (type == null) {
+            Symbol s = symbolTable.lookupFunctionSymbol(functionName, baseName(operand));
+            type = s != null && !s.isFunction() ? s.getType() : "int";
+        }
+        return type;
+    }
+
+    /**
+     * Nom original d'una versió SSA (x.3 -> x)
+     *
+     * @param name Nom, amb o sense sufix de versió
+     * @return El nom sense el sufix
+     */
+    public static String baseName(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0 || ConstantFolder.isConstant(name) || !name.substring(dot + 1).matches("\\d+")) return name;
+        return name.substring(0, dot);
+    }
+
+    /**
+     * Indica si un operand viu als registres de coma flotant
+     */
+    public boolean isFloat(String operand) {
+        return "flt".equals(typeOf(operand));
+    }
+}
@@ -0,0 +1,76 @@
+package MiddleEnd.SSA;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.BasicBlock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PhiInstruction extends TACInstruction {
+    /**
+     * Variable original de la qual la phi tria una versió
+     */
+    private final String variable;
+    /**
+     * Versió que defineix la phi
+     */
+    private String result;
+    /**
+     * Valor que arriba per cada predecessor del bloc
+     */
+    private final Map<BasicBlock,String> operands = new LinkedHashMap<>();
+
+    /**
+     * Constructor de la classe PhiInstruction
+     *
+     * @param variable Variable original
+     */
+    public PhiInstruction(String variable) {
+        super("phi", null, null, variable);
+        this.variable = variable;
+        this.result = variable;
+    }
+
+    /**
+     * Comprova si una instrucció és una phi
+     *
+     * @param ins Instrucció a comprovar
+     * @return true si és una PhiInstruction
+     */
+    public static boolean isPhi(TACInstruction ins) {
+        return ins instanceof PhiInstruction;
+    }
+
+    @Override
+    public String getDefinedName() {
+        return result;
+    }
+
+    @Override
+    public List<String> getUses() {
+        return new ArrayList<>(operands.values());
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<BasicBlock,String> e : operands.entrySet()) {
+            parts.add(e.getValue() + " [B" + e.getKey().getId() + "]");
+        }
+        return result + " = phi(" + String.join(", ", parts) + ")";
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * Getters
+     */
+    @Override
+    public String getResult()                  { return result;   }
+    public String getVariable()                { return variable; }
+    public Map<BasicBlock,String> getOperands() { return operands; }
+}
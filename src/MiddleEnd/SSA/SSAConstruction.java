@@ -0,0 +1,173 @@
+package MiddleEnd.SSA;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+import MiddleEnd.CFG.DominatorTree;
+import MiddleEnd.Optimizer.ConstantFolder;
+import MiddleEnd.Optimizer.TypeInference;
+
+import java.util.*;
+
+public class SSAConstruction {
+    /**
+     * Graf de la funció que es passa a SSA
+     */
+    private final ControlFlowGraph cfg;
+    /**
+     * Última versió assignada i pila de versions vigents de cada variable
+     */
+    private final Map<String,Integer> version = new HashMap<>();
+    private final Map<String,Deque<String>> stacks = new HashMap<>();
+
+    /**
+     * Constructor de la classe SSAConstruction
+     *
+     * @param cfg Graf de flux de control de la funció
+     */
+    public SSAConstruction(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+    }
+
+    /**
+     * Converteix la funció a forma SSA (Cytron et al.): col·loca les phi a la frontera de dominància
+     * iterada de les definicions i reanomena cada definició amb un sufix de versió (x.1, x.2...).
+     * Els valors que arriben a l'entrada sense definició conserven el nom original.
+     *
+     * @return false si la funció no es pot passar a SSA (l'entrada té predecessors) i no s'ha modificat
+     */
+    public boolean construct() {
+        if (!cfg.getEntry().getPredecessors().isEmpty()) return false;
+
+        // Els blocs inaccessibles no tenen dominadors: els eliminem abans de començar
+        Set<BasicBlock> reachable = new HashSet<>(cfg.reversePostOrder());
+        if (cfg.getBlocks().removeIf(block -> !reachable.contains(block))) cfg.computeEdges();
+
+        DominatorTree dominators = new DominatorTree(cfg);
+        insertPhis(dominators);
+        rename(dominators);
+        return true;
+    }
+
+    /**
+     * Col·loca phi només per a les variables globals (les que algun bloc llegeix abans de definir-les),
+     * és a dir, SSA semi-podada
+     */
+    private void insertPhis(DominatorTree dominators) {
+        Map<String,Set<BasicBlock>> definedIn = new LinkedHashMap<>();
+        Set<String> globals = new HashSet<>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            Set<String> killed = new HashSet<>();
+            for (TACInstruction ins : block.getInstructions()) {
+                for (String u : ins.getUses()) {
+                    if (!ConstantFolder.isConstant(u) && !killed.contains(u)) globals.add(u);
+                }
+                String def = ins.getDefinedName();
+                if (def != null) {
+                    killed.add(def);
+                    definedIn.computeIfAbsent(def, k -> new LinkedHashSet<>()).add(block);
+                }
+            }
+        }
+
+        for (Map.Entry<String,Set<BasicBlock>> entry : definedIn.entrySet()) {
+            String variable = entry.getKey();
+            if (!globals.contains(variable)) continue;
+
+            Set<BasicBlock> hasPhi = new HashSet<>();
+            Deque<BasicBlock> worklist = new ArrayDeque<>(entry.getValue());
+            Set<BasicBlock> queued = new HashSet<>(entry.getValue());
+            while (!worklist.isEmpty()) {
+                BasicBlock block = worklist.poll();
+                for (BasicBlock frontier : dominators.getDominanceFrontier(block)) {
+                    if (!hasPhi.add(frontier)) continue;
+                    List<TACInstruction> instructions = frontier.getInstructions();
+                    int position = frontier.getLabel() != null ? 1 : 0;
+                    instructions.add(position, new PhiInstruction(variable));
+                    if (queued.add(frontier)) worklist.add(frontier);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reanomena les definicions i els usos recorrent l'arbre de dominadors en preordre (de forma iterativa)
+     */
+    private void rename(DominatorTree dominators) {
+        Set<String> variables = new HashSet<>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            for (TACInstruction ins : block.getInstructions()) {
+                String def = ins.getDefinedName();
+                if (def == null) continue;
+                variables.add(def);
+                // Si el codi ja prové d'una SSA anterior, les versions noves continuen la numeració
+                String base = TypeInference.baseName(def);
+                if (!base.equals(def)) {
+                    version.merge(base, Integer.parseInt(def.substring(base.length() + 1)), Math::max);
+                }
+            }
+        }
+
+        // Cada entrada de la pila és un bloc per visitar o, si és null, el final de la visita del bloc de dalt
+        Deque<BasicBlock> pending = new LinkedList<>();
+        Deque<List<String>> pushed = new ArrayDeque<>();
+        pending.push(cfg.getEntry());
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.pop();
+            if (block == null) {
+                for (String variable : pushed.pop()) stacks.get(variable).pop();
+                continue;
+            }
+
+            List<String> definedHere = new ArrayList<>();
+            List<TACInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                TACInstruction ins = instructions.get(i);
+                if (PhiInstruction.isPhi(ins)) {
+                    PhiInstruction phi = (PhiInstruction) ins;
+                    phi.setResult(newVersion(phi.getVariable(), definedHere));
+                    continue;
+                }
+
+                String op = ins.getOp();
+                boolean readsArgs = !"label".equals(op) && !"goto".equals(op) && !"call".equals(op);
+                String a1 = readsArgs ? current(ins.getArg1(), variables) : ins.getArg1();
+                String a2 = readsArgs ? current(ins.getArg2(), variables) : ins.getArg2();
+                String def = ins.getDefinedName();
+                String result = def != null ? newVersion(def, definedHere) : ins.getResult();
+                instructions.set(i, new TACInstruction(op, a1, a2, result));
+            }
+
+            for (BasicBlock succ : block.getSuccessors()) {
+                for (TACInstruction ins : succ.getInstructions()) {
+                    if (!PhiInstruction.isPhi(ins)) continue;
+                    PhiInstruction phi = (PhiInstruction) ins;
+                    phi.getOperands().put(block, current(phi.getVariable(), variables));
+                }
+            }
+
+            pending.push(null);
+            pushed.push(definedHere);
+            List<BasicBlock> children = dominators.getChildren(block);
+            for (int c = children.size() - 1; c >= 0; c--) pending.push(children.get(c));
+        }
+    }
+
+    private String newVersion(String variable, List<String> definedHere) {
+        String base = TypeInference.baseName(variable);
+        int v = version.merge(base, 1, Integer::sum);
+        String name = base + "." + v;
+        stacks.computeIfAbsent(variable, k -> new ArrayDeque<>()).push(name);
+        definedHere.add(variable);
+        return name;
+    }
+
+    /**
+     * Versió vigent d'un operand (els literals i els noms sense cap definició no es reanomenen)
+     */
+    private String current(String operand, Set<String> variables) {
+        if (operand == null || !variables.contains(operand)) return operand;
+        Deque<String> stack = stacks.get(operand);
+        return stack == null || stack.isEmpty() ? operand : stack.peek();
+    }
+}
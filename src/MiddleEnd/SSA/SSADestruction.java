@@ -0,0 +1,258 @@
+package MiddleEnd.SSA;
+
+import FrontEnd.TAC.TACInstruction;
+import MiddleEnd.CFG.BasicBlock;
+import MiddleEnd.CFG.ControlFlowGraph;
+import MiddleEnd.Optimizer.ConstantFolder;
+import MiddleEnd.Optimizer.TypeInference;
+
+import java.util.*;
+
+public class SSADestruction {
+    /**
+     * Graf de la funció que surt de SSA
+     */
+    private final ControlFlowGraph cfg;
+    /**
+     * Variables vives a l'entrada (sense comptar les phi) i a la sortida de cada bloc
+     */
+    private final Map<BasicBlock,Set<String>> liveIn = new HashMap<>();
+    private final Map<BasicBlock,Set<String>> liveOut = new HashMap<>();
+    /**
+     * Última versió usada de cada variable, per crear temporals nous
+     */
+    private final Map<String,Integer> version = new HashMap<>();
+
+    /**
+     * Constructor de la classe SSADestruction
+     *
+     * @param cfg Graf de flux de control de la funció, en forma SSA
+     */
+    public SSADestruction(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+    }
+
+    /**
+     * Treu la funció de la forma SSA. Les variables amb versions que mai no són vives alhora recuperen
+     * el nom original; per a la resta es conserven les versions. Després, cada phi es substitueix per
+     * còpies al final dels predecessors (partint les arestes crítiques) i les còpies paral·leles de cada
+     * aresta es seqüencialitzen.
+     */
+    public void destruct() {
+        computeLiveness();
+        Set<String> interfering = findInterference();
+
+        // Les variables sense interferències tornen al nom original
+        for (BasicBlock block : cfg.getBlocks()) {
+            List<TACInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                TACInstruction ins = instructions.get(i);
+                if (PhiInstruction.isPhi(ins)) {
+                    PhiInstruction phi = (PhiInstruction) ins;
+                    phi.setResult(rename(phi.getResult(), interfering));
+                    phi.getOperands().replaceAll((pred, operand) -> rename(operand, interfering));
+                    continue;
+                }
+                String op = ins.getOp();
+                boolean readsArgs = !"label".equals(op) && !"goto".equals(op) && !"call".equals(op);
+                String a1 = readsArgs ? rename(ins.getArg1(), interfering) : ins.getArg1();
+                String a2 = readsArgs ? rename(ins.getArg2(), interfering) : ins.getArg2();
+                String result = ins.getDefinedName() != null ? rename(ins.getResult(), interfering) : ins.getResult();
+                instructions.set(i, new TACInstruction(op, a1, a2, result));
+            }
+        }
+
+        for (BasicBlock block : cfg.getBlocks()) {
+            for (TACInstruction ins : block.getInstructions()) {
+                String def = ins.getDefinedName();
+                if (def == null) continue;
+                String base = TypeInference.baseName(def);
+                if (!base.equals(def)) version.merge(base, Integer.parseInt(def.substring(base.length() + 1)), Math::max);
+            }
+        }
+
+        insertCopies();
+    }
+
+    private String rename(String name, Set<String> interfering) {
+        if (name == null || ConstantFolder.isConstant(name)) return name;
+        String base = TypeInference.baseName(name);
+        return interfering.contains(base) ? name : base;
+    }
+
+    /**
+     * Vivacitat amb la semàntica de les phi: els operands es llegeixen al final del predecessor
+     * i la definició es fa a l'inici del bloc
+     */
+    private void computeLiveness() {
+        Map<BasicBlock,Set<String>> uses = new HashMap<>();
+        Map<BasicBlock,Set<String>> defs = new HashMap<>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            Set<String> use = new HashSet<>();
+            Set<String> def = new HashSet<>();
+            for (TACInstruction ins : block.getInstructions()) {
+                if (PhiInstruction.isPhi(ins)) {
+                    def.add(ins.getDefinedName());
+                    continue;
+                }
+                for (String u : ins.getUses()) {
+                    if (!ConstantFolder.isConstant(u) && !def.contains(u)) use.add(u);
+                }
+                if (ins.getDefinedName() != null) def.add(ins.getDefinedName());
+            }
+            uses.put(block, use);
+            defs.put(block, def);
+            liveIn.put(block, new HashSet<>());
+            liveOut.put(block, new HashSet<>());
+        }
+
+        List<BasicBlock> order = new ArrayList<>(cfg.getBlocks());
+        Collections.reverse(order);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock block : order) {
+                Set<String> out = new HashSet<>();
+                for (BasicBlock succ : block.getSuccessors()) {
+                    out.addAll(liveIn.get(succ));
+                    for (TACInstruction ins : succ.getInstructions()) {
+                        if (!PhiInstruction.isPhi(ins)) continue;
+                        String operand = ((PhiInstruction) ins).getOperands().get(block);
+                        if (operand != null && !ConstantFolder.isConstant(operand)) out.add(operand);
+                    }
+                }
+                Set<String> in = new HashSet<>(out);
+                in.removeAll(defs.get(block));
+                in.addAll(uses.get(block));
+                if (!out.equals(liveOut.get(block)) || !in.equals(liveIn.get(block))) {
+                    liveOut.put(block, out);
+                    liveIn.put(block, in);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Variables originals amb dues versions diferents vives alhora: no poden compartir el nom
+     */
+    private Set<String> findInterference() {
+        Set<String> interfering = new HashSet<>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            List<TACInstruction> instructions = block.getInstructions();
+            Set<String> live = new HashSet<>(liveOut.get(block));
+            List<PhiInstruction> phis = new ArrayList<>();
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                TACInstruction ins = instructions.get(i);
+                if (PhiInstruction.isPhi(ins)) {
+                    phis.add((PhiInstruction) ins);
+                    continue;
+                }
+                String def = ins.getDefinedName();
+                if (def != null) {
+                    checkConflict(def, live, interfering);
+                    live.remove(def);
+                }
+                for (String u : ins.getUses()) {
+                    if (!ConstantFolder.isConstant(u)) live.add(u);
+                }
+            }
+
+            // A l'inici del bloc conviuen les destinacions de les phi i els valors que el travessen
+            Map<String,String> seen = new HashMap<>();
+            for (String name : live) {
+                String other = seen.put(TypeInference.baseName(name), name);
+                if (other != null) interfering.add(TypeInference.baseName(name));
+            }
+
+            // La còpia de cada phi es fa al final del predecessor, on poden ser vives altres versions
+            for (PhiInstruction phi : phis) {
+                for (BasicBlock pred : phi.getOperands().keySet()) {
+                    Set<String> across = new HashSet<>();
+                    for (BasicBlock succ : pred.getSuccessors()) across.addAll(liveIn.get(succ));
+                    // L'operand mateix pot seguir viu: amb el mateix nom la còpia desapareix
+                    across.remove(phi.getOperands().get(pred));
+                    checkConflict(phi.getDefinedName(), across, interfering);
+                }
+            }
+        }
+        return interfering;
+    }
+
+    private void checkConflict(String def, Set<String> live, Set<String> interfering) {
+        String base = TypeInference.baseName(def);
+        for (String name : live) {
+            if (!name.equals(def) && TypeInference.baseName(name).equals(base)) {
+                interfering.add(base);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Substitueix les phi per còpies a les arestes d'entrada del bloc
+     */
+    private void insertCopies() {
+        for (BasicBlock block : new ArrayList<>(cfg.getBlocks())) {
+            List<PhiInstruction> phis = new ArrayList<>();
+            for (TACInstruction ins : block.getInstructions()) {
+                if (PhiInstruction.isPhi(ins)) phis.add((PhiInstruction) ins);
+            }
+            if (phis.isEmpty()) continue;
+            block.getInstructions().removeIf(PhiInstruction::isPhi);
+
+            Set<BasicBlock> preds = new LinkedHashSet<>();
+            for (PhiInstruction phi : phis) preds.addAll(phi.getOperands().keySet());
+
+            for (BasicBlock pred : preds) {
+                Map<String,String> copies = new LinkedHashMap<>();
+                for (PhiInstruction phi : phis) {
+                    String source = phi.getOperands().get(pred);
+                    if (source != null && !source.equals(phi.getDefinedName())) copies.put(phi.getDefinedName(), source);
+                }
+                if (copies.isEmpty()) continue;
+
+                // Si el predecessor té més d'una sortida, les còpies van a un bloc nou a l'aresta
+                BasicBlock target = pred;
+                TACInstruction terminator = pred.getTerminator();
+                if (pred.getSuccessors().size() > 1 || (terminator != null && "ifFalse".equals(terminator.getOp()))) {
+                    target = cfg.splitEdge(pred, block);
+                }
+                List<TACInstruction> instructions = target.getInstructions();
+                int position = target.getTerminator() != null ? instructions.size() - 1 : instructions.size();
+                instructions.addAll(position, sequentialize(copies));
+            }
+        }
+        cfg.computeEdges();
+    }
+
+    /**
+     * Ordena un conjunt de còpies paral·leles (destí -> origen) perquè cap còpia sobreescrigui un valor que
+     * una altra encara ha de llegir. Els cicles es trenquen amb un temporal nou.
+     */
+    private List<TACInstruction> sequentialize(Map<String,String> copies) {
+        List<TACInstruction> sequence = new ArrayList<>();
+        Map<String,String> pending = new LinkedHashMap<>(copies);
+        while (!pending.isEmpty()) {
+            String ready = null;
+            for (String dest : pending.keySet()) {
+                if (!pending.containsValue(dest)) {
+                    ready = dest;
+                    break;
+                }
+            }
+            if (ready != null) {
+                sequence.add(new TACInstruction("=", pending.remove(ready), null, ready));
+                continue;
+            }
+
+            // Tots els destins es llegeixen encara: es guarda un d'ells en un temporal
+            String dest = pending.keySet().iterator().next();
+            String base = TypeInference.baseName(dest);
+            String temp = base + "." + version.merge(base, 1, Integer::sum);
+            sequence.add(new TACInstruction("=", dest, null, temp));
+            pending.replaceAll((d, source) -> source.equals(dest) ? temp : source);
+        }
+        return sequence;
+    }
+}